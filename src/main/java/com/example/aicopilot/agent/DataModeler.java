@@ -12,7 +12,8 @@ import dev.langchain4j.service.spring.AiService;
 @AiService
 public interface DataModeler {
 
-    @SystemMessage("""
+    // Shared by the map-based and the outline-based (speculative) modeling
+    String SYSTEM_PROMPT = """
         You are a generic Data Architect extracting granular data requirements from a Business Process.
         
         ### GOAL
@@ -44,7 +45,9 @@ public interface DataModeler {
         - `alias`: UpperCamelCase (e.g., `StartDate`).
         - `type`: Use precise types (`date`, `number`, `lookup`, `boolean`).
         - `lookupData`: If type is `lookup`, provide realistic items (e.g., LeaveType: Annual, Sick, Unpaid).
-    """)
+    """;
+
+    @SystemMessage(SYSTEM_PROMPT)
     @UserMessage("""
         Here is the user request and the designed process structure.
         Analyze them to extract atomic data entities.
@@ -94,4 +97,25 @@ public interface DataModeler {
             @V("processContext") String processContext,
             @V("existingData") String existingData
     );
-}
\ No newline at end of file
+
+    // [Speculative] Models data from the outline while the map is still being generated
+    @SystemMessage(SYSTEM_PROMPT)
+    @UserMessage("""
+        Here is the user request and the step list (outline) of the process. The detailed process map is not available yet.
+        Analyze them to extract atomic data entities.
+
+        ### Lineage Rule for this request
+        - Set `sourceNodeId` to `node_{stepId}` of the step that captures or produces the data (e.g., step "3" -> `node_3`).
+        - Use ONLY stepIds from the list; Global Constants -> null.
+
+        [User Request]
+        {{userRequest}}
+
+        [Process Definition List (JSON)]
+        {{definitionJson}}
+        """)
+    DataEntitiesResponse designDataModelFromOutline(
+            @V("userRequest") String userRequest,
+            @V("definitionJson") String definitionJson
+    );
+}
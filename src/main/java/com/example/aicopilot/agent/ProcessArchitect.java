@@ -13,7 +13,8 @@ import dev.langchain4j.service.spring.AiService;
 @AiService
 public interface ProcessArchitect {
 
-    @SystemMessage("""
+    // Shared by the whole-map and the section transformation
+    String SYSTEM_PROMPT = """
         You are a 'System Architect'.
         Your goal is to **TRANSFORM** a linear 'Process Definition List' into a sophisticated **Process Map**.
 
@@ -79,7 +80,9 @@ public interface ProcessArchitect {
 
         ### Input Data
         Process Definition List (JSON)
-    """)
+    """;
+
+    @SystemMessage(SYSTEM_PROMPT)
     @UserMessage("""
         Transform this definition into a Process Map.
         **REMEMBER:** 1. **Rejection Logic:** If a proposal is rejected, the Employee usually needs to modify and resubmit it. Link the 'Reject Notification' back to the 'Submit Proposal' step (node_1...).
@@ -118,4 +121,76 @@ public interface ProcessArchitect {
             @V("invalidMapJson") String invalidMapJson,
             @V("errorMessage") String errorMessage
     );
-}
\ No newline at end of file
+
+    // [Targeted Self-Correction] Repairs only the broken part of the map
+    @UserMessage("""
+        Some nodes of a Process Map have structural errors. You receive ONLY the affected nodes and their direct neighbours.
+        
+        ### Errors (one per line)
+        {{errorMessages}}
+        
+        ### Instruction for FIX
+        1. Fix EVERY listed error in one pass.
+        2. A reference MUST point to an ID from the [Existing Node Index] or to `"node_end"`. Do NOT create a physical node with id `"node_end"`.
+        3. Terminal nodes point `nextActivityId` to `"node_end"`. Gateways keep `nextActivityId` null and define all paths in `conditions`.
+        4. Keep node IDs unchanged. Only create a new node if a referenced step is genuinely missing; follow the `node_{stepId}_{suffix}` pattern.
+        5. **Preserve `sourceRef`, `configuration` and all other fields** that are not part of the fix.
+        6. Use the [Definition Steps] as the source of truth for roles, step types and branch conditions.
+        
+        ### Definition Steps (the steps behind the affected nodes)
+        {{definitionStepsJson}}
+        
+        ### Existing Node Index (id -> label)
+        {{nodeIndexJson}}
+        
+        ### Affected Nodes and Neighbours
+        {{subgraphJson}}
+        
+        Return a JSON object whose `activities` contains ONLY the nodes you changed or created, each as a complete node.
+    """)
+    ProcessResponse repairSubgraph(
+            @V("errorMessages") String errorMessages,
+            @V("definitionStepsJson") String definitionStepsJson,
+            @V("nodeIndexJson") String nodeIndexJson,
+            @V("subgraphJson") String subgraphJson
+    );
+
+    // [Chunked Transformation] One section of a large definition; stitched together by the orchestrator
+    @SystemMessage(SYSTEM_PROMPT)
+    @UserMessage("""
+        Transform ONE SECTION of a larger process into Process Map nodes.
+        
+        ### Section Rules
+        1. Generate nodes ONLY for these steps: {{sectionStepIds}}
+        2. The other steps in the list are CONTEXT from neighbouring sections. Do NOT generate nodes for them.
+           To link to a context step (or to any step outside this list), use exactly `node_{stepId}` as the target ID; it is resolved when the sections are merged.
+        3. Position of this section: {{sectionPosition}}. Only the final step of the WHOLE process points to `"node_end"`.
+        4. Apply all other rules as usual (rejection loop-back, gateway conditions, sourceRef).
+
+        [Process Definition List - Section with Context]
+        {{definitionJson}}
+    """)
+    ProcessResponse transformSection(
+            @V("definitionJson") String definitionJson,
+            @V("sectionStepIds") String sectionStepIds,
+            @V("sectionPosition") String sectionPosition
+    );
+
+    // [Candidate Race] Alternative transformation; the focus makes each candidate an independent attempt
+    @SystemMessage(SYSTEM_PROMPT)
+    @UserMessage("""
+        Transform this definition into a Process Map.
+        **Design focus for this attempt:** {{candidateFocus}}
+        1. **Implicit End:** Do not create a node object for End. Just point `nextActivityId` to `"node_end"` where the flow should stop.
+        2. **Gateway Config:** For gateways, set `nextActivityId` to `null` and define all paths in `conditions`.
+        3. **References:** Every `nextActivityId` / `targetActivityId` MUST be the ID of a node you generate, or `"node_end"`.
+        4. **Source Ref:** Preserve `sourceRef` from input steps to output activities.
+
+        [Process Definition List]
+        {{definitionJson}}
+    """)
+    ProcessResponse transformCandidate(
+            @V("definitionJson") String definitionJson,
+            @V("candidateFocus") String candidateFocus
+    );
+}
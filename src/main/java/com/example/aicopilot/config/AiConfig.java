@@ -1,29 +1,237 @@
 package com.example.aicopilot.config;
 
+import com.example.aicopilot.llm.AdaptiveRateLimiter;
+import com.example.aicopilot.llm.BulkheadChatLanguageModel;
+import com.example.aicopilot.llm.CachingChatLanguageModel;
+import com.example.aicopilot.llm.CoalescingChatLanguageModel;
+import com.example.aicopilot.llm.ProviderBulkhead;
+import com.example.aicopilot.llm.RateLimitedChatLanguageModel;
+import com.example.aicopilot.llm.RoutingChatLanguageModel;
+import com.example.aicopilot.llm.StreamingAgentInvoker;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.chat.StreamingChatLanguageModel;
 import dev.langchain4j.model.openai.OpenAiChatModel;
+import dev.langchain4j.model.openai.OpenAiStreamingChatModel;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.nio.file.Path;
 import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Configuration
 public class AiConfig {
 
+    private static final String MODEL_NAME = "gpt-4o-mini";
+    private static final double TEMPERATURE = 0.0;
+    private static final double TOP_P = 0.9;
+    private static final String RESPONSE_FORMAT = "json_object";
+
     @Value("${openai.api-key}")
     private String apiKey;
 
+    // --- Response cache ---
+    @Value("${copilot.llm.cache.enabled:true}")
+    private boolean cacheEnabled;
+
+    @Value("${copilot.llm.cache.ttl:6h}")
+    private Duration cacheTtl;
+
+    @Value("${copilot.llm.cache.max-bytes:67108864}") // 64MB
+    private long cacheMaxBytes;
+
+    @Value("${copilot.llm.cache.max-entry-bytes:1048576}") // 1MB
+    private long cacheMaxEntryBytes;
+
+    @Value("${copilot.llm.cache.disk-dir:}") // Empty = memory only
+    private String cacheDiskDir;
+
+    @Value("${copilot.llm.cache.max-disk-bytes:536870912}") // 512MB; oldest files are deleted beyond it
+    private long cacheMaxDiskBytes;
+
+    @Value("${copilot.llm.cache.disk-sweep-interval:10m}") // Expired files are deleted in the background
+    private Duration cacheDiskSweepInterval;
+
+    @Value("${copilot.llm.cache.disabled-agents:}") // e.g. SuggestionAgent,ProcessOutliner.suggestSingleStep
+    private String cacheDisabledAgents;
+
+    // --- Request coalescing (single-flight) ---
+    @Value("${copilot.llm.coalesce.enabled:true}")
+    private boolean coalesceEnabled;
+
+    // --- Provider concurrency cap (shared by blocking and streaming calls) ---
+    @Value("${copilot.llm.openai.max-concurrency:64}")
+    private int openAiMaxConcurrency;
+
+    @Value("${copilot.llm.openai.acquire-timeout:120s}")
+    private Duration openAiAcquireTimeout;
+
+    // --- Client-side rate limiting (RPM/TPM budgets + adaptive concurrency) ---
+    @Value("${copilot.llm.rate-limit.enabled:true}")
+    private boolean rateLimitEnabled;
+
+    @Value("${copilot.llm.openai.rpm:500}")
+    private int openAiRequestsPerMinute;
+
+    @Value("${copilot.llm.openai.tpm:200000}")
+    private int openAiTokensPerMinute;
+
+    @Value("${copilot.llm.openai.initial-concurrency:8}")
+    private int openAiInitialConcurrency;
+
+    @Value("${copilot.llm.expected-output-tokens:1500}") // Completion reserve for the TPM estimate
+    private int expectedOutputTokens;
+
+    @Value("${copilot.llm.rate-limit.background-agents:DataModeler,FormUXDesigner}") // Served after interactive calls
+    private String backgroundAgents;
+
+    // --- Multi-model routing ---
+    @Value("${copilot.llm.routing.pools:default=" + MODEL_NAME + "}") // e.g. default=gpt-4o-mini;fast=gpt-4o-mini;accurate=gpt-4o,gpt-4o-mini
+    private String routingPools;
+
+    @Value("${copilot.llm.routing.bindings:}") // e.g. SuggestionAgent=fast,ProcessArchitect.transformToMap=accurate
+    private String routingBindings;
+
+    @Value("${copilot.llm.routing.max-error-rate:0.2}")
+    private double routingMaxErrorRate;
+
+    @Value("${copilot.llm.routing.max-p95:45s}")
+    private Duration routingMaxP95;
+
+    @Value("${copilot.llm.routing.cool-down:60s}")
+    private Duration routingCoolDown;
+
+    @Value("${copilot.llm.routing.window:50}") // Rolling window (calls) per model
+    private int routingWindow;
+
+    @Bean
+    ProviderBulkhead openAiBulkhead(MeterRegistry meterRegistry) {
+        return new ProviderBulkhead("openai", openAiMaxConcurrency, openAiAcquireTimeout, meterRegistry);
+    }
+
     @Bean
-    ChatLanguageModel chatLanguageModel() {
+    AdaptiveRateLimiter openAiRateLimiter(MeterRegistry meterRegistry) {
+        return new AdaptiveRateLimiter("openai", openAiRequestsPerMinute, openAiTokensPerMinute,
+                openAiInitialConcurrency, openAiMaxConcurrency,
+                splitNames(backgroundAgents), openAiAcquireTimeout, meterRegistry);
+    }
+
+    @Bean
+    ChatLanguageModel chatLanguageModel(ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                                        ProviderBulkhead openAiBulkhead, AdaptiveRateLimiter openAiRateLimiter) {
+        // Per-agent model pools (latency-critical suggestions vs. accuracy-critical transformation).
+        // Bulkhead and rate limiter sit under the router, so a failover attempt takes (and is counted as) a new call
+        ChatLanguageModel model = modelRouter(meterRegistry, openAiBulkhead, openAiRateLimiter);
+
+        if (coalesceEnabled) {
+            // Double-submits and parallel tabs polling the same graph share one provider call
+            model = new CoalescingChatLanguageModel(model, modelFingerprint(), meterRegistry);
+        }
+
+        if (cacheEnabled) {
+            // [Optimization] temperature 0.0 makes responses reproducible -> identical prompts are served from cache
+            model = new CachingChatLanguageModel(
+                    model,
+                    modelFingerprint(),
+                    cacheTtl,
+                    cacheMaxBytes,
+                    cacheMaxEntryBytes,
+                    splitNames(cacheDisabledAgents),
+                    cacheDiskDir.isBlank() ? null : Path.of(cacheDiskDir),
+                    cacheMaxDiskBytes,
+                    cacheDiskSweepInterval,
+                    objectMapper
+            );
+        }
+        return model;
+    }
+
+    private ChatLanguageModel modelRouter(MeterRegistry meterRegistry,
+                                          ProviderBulkhead openAiBulkhead, AdaptiveRateLimiter openAiRateLimiter) {
+        Map<String, RoutingChatLanguageModel.Candidate> candidatesByModel = new HashMap<>();
+        Map<String, List<RoutingChatLanguageModel.Candidate>> pools = new LinkedHashMap<>();
+
+        RoutingChatLanguageModel.parsePools(routingPools).forEach((pool, models) -> pools.put(pool, models.stream()
+                .map(model -> {
+                    // One client and one health window per model, shared by every pool that lists it
+                    RoutingChatLanguageModel.Candidate shared = candidatesByModel.computeIfAbsent(model.getKey(),
+                            name -> new RoutingChatLanguageModel.Candidate(name, Long.MAX_VALUE, openAiChatModel(name),
+                                    provider -> admission(provider, openAiBulkhead, openAiRateLimiter),
+                                    new RoutingChatLanguageModel.RollingStats(routingWindow, routingMaxErrorRate, routingMaxP95, routingCoolDown),
+                                    meterRegistry));
+                    return shared.withMaxInputTokens(model.getValue());
+                })
+                .toList()));
+
+        return new RoutingChatLanguageModel(pools, RoutingChatLanguageModel.parseBindings(routingBindings), meterRegistry);
+    }
+
+    private ChatLanguageModel admission(ChatLanguageModel provider,
+                                        ProviderBulkhead openAiBulkhead, AdaptiveRateLimiter openAiRateLimiter) {
+        // Jobs on virtual threads may number in the thousands; only N of them talk to OpenAI at once
+        ChatLanguageModel model = new BulkheadChatLanguageModel(provider, openAiBulkhead);
+        if (rateLimitEnabled) {
+            // [Optimization] Stay under the provider's RPM/TPM instead of collecting 429s; /suggest/* goes first
+            model = new RateLimitedChatLanguageModel(model, openAiRateLimiter, expectedOutputTokens);
+        }
+        return model;
+    }
+
+    private ChatLanguageModel openAiChatModel(String modelName) {
         return OpenAiChatModel.builder()
                 .apiKey(apiKey)
-                .modelName("gpt-4o-mini") // Fast and cost-effective model
-                .temperature(0.0) // [Optimization] Deterministic response -> Speed improvement
-                .topP(0.9) // [Optimization] Limit token selection range
+                .modelName(modelName) // Default pool: fast and cost-effective model
+                .temperature(TEMPERATURE) // [Optimization] Deterministic response -> Speed improvement
+                .topP(TOP_P) // [Optimization] Limit token selection range
                 .timeout(Duration.ofSeconds(60)) // Sufficient timeout
                 // [Fix] Force JSON output mode to prevent markdown formatting errors
-                .responseFormat("json_object")
+                .responseFormat(RESPONSE_FORMAT)
                 .build();
     }
-}
\ No newline at end of file
+
+    /**
+     * Token streaming model used by the streaming artifact mode (copilot.streaming.enabled).
+     */
+    @Bean
+    StreamingChatLanguageModel streamingChatLanguageModel() {
+        return OpenAiStreamingChatModel.builder()
+                .apiKey(apiKey)
+                .modelName(MODEL_NAME)
+                .temperature(TEMPERATURE)
+                .topP(TOP_P)
+                .timeout(Duration.ofSeconds(60))
+                .responseFormat(RESPONSE_FORMAT)
+                .build();
+    }
+
+    @Bean
+    StreamingAgentInvoker streamingAgentInvoker(StreamingChatLanguageModel streamingChatLanguageModel,
+                                                ProviderBulkhead openAiBulkhead, AdaptiveRateLimiter openAiRateLimiter) {
+        return new StreamingAgentInvoker(streamingChatLanguageModel, Duration.ofSeconds(120), openAiBulkhead,
+                rateLimitEnabled ? openAiRateLimiter : null, expectedOutputTokens);
+    }
+
+    // Routing config is part of the fingerprint: re-binding an agent to another model must not serve old answers.
+    // Also a bean, so caches of derived results (AnalysisCache) are versioned by the same model config
+    @Bean
+    String modelFingerprint() {
+        return String.format("%s|t=%s|p=%s|fmt=%s|pools=%s|bind=%s",
+                MODEL_NAME, TEMPERATURE, TOP_P, RESPONSE_FORMAT, routingPools, routingBindings);
+    }
+
+    static Set<String> splitNames(String csv) {
+        return Arrays.stream(csv.split(","))
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .collect(Collectors.toSet());
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.aicopilot.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executor for the @Async job pipeline (runQuickStartJob, runTransformationJob, handleProcessGenerated).
+ * Each stage mostly blocks on the LLM, so on Java 21+ every job gets its own virtual thread and the
+ * real limit is the per-provider bulkhead (copilot.llm.openai.max-concurrency). On older runtimes a bounded
+ * platform pool is used instead. Both drain in-flight jobs on shutdown.
+ */
+@Slf4j
+@Configuration
+public class AsyncConfig {
+
+    @Value("${copilot.jobs.executor.virtual-threads:true}") // Effective only on Java 21+
+    private boolean virtualThreads;
+
+    @Value("${copilot.jobs.executor.pool-size:32}") // Platform-thread fallback
+    private int poolSize;
+
+    @Value("${copilot.jobs.executor.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${copilot.jobs.executor.shutdown-timeout:60s}") // How long in-flight jobs may finish on shutdown
+    private Duration shutdownTimeout;
+
+    // Destroyed before the job store, so stages finishing during the drain are still persisted
+    @Bean(name = "taskExecutor")
+    @DependsOn("jobStore")
+    AsyncTaskExecutor taskExecutor(MeterRegistry meterRegistry) {
+        AtomicInteger queued = new AtomicInteger();
+        AtomicInteger active = new AtomicInteger();
+        meterRegistry.gauge("copilot.jobs.executor.queued", queued);
+        meterRegistry.gauge("copilot.jobs.executor.active", active);
+
+        TaskDecorator metrics = task -> {
+            queued.incrementAndGet();
+            return () -> {
+                queued.decrementAndGet();
+                active.incrementAndGet();
+                try {
+                    task.run();
+                } finally {
+                    active.decrementAndGet();
+                }
+            };
+        };
+
+        if (virtualThreads && Runtime.version().feature() >= 21) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("job-");
+            executor.setVirtualThreads(true);
+            executor.setTaskDecorator(metrics);
+            executor.setTaskTerminationTimeout(shutdownTimeout.toMillis());
+            log.info("Job pipeline runs on virtual threads");
+            return executor;
+        }
+        if (virtualThreads) {
+            log.info("Virtual threads need Java 21+ (running {}); using a pool of {} platform threads", Runtime.version(), poolSize);
+        }
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("job-");
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setTaskDecorator(metrics);
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationMillis(shutdownTimeout.toMillis());
+        return executor;
+    }
+}
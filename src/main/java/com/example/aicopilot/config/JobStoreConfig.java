@@ -0,0 +1,42 @@
+package com.example.aicopilot.config;
+
+import com.example.aicopilot.store.FileJobStore;
+import com.example.aicopilot.store.JobStore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+@Configuration
+public class JobStoreConfig {
+
+    @Value("${copilot.jobs.store.enabled:false}") // Opt-in; off = memory-only job state
+    private boolean enabled;
+
+    @Value("${copilot.jobs.store.dir:}") // Required when enabled; an absolute path avoids depending on the working directory
+    private String dir;
+
+    @Value("${copilot.jobs.store.retention:24h}") // Finished jobs are dropped on compaction after this
+    private Duration retention;
+
+    @Value("${copilot.jobs.store.compact-bytes:134217728}") // 128MB
+    private long compactBytes;
+
+    @Value("${copilot.jobs.store.group-commit-window:20ms}")
+    private Duration groupCommitWindow;
+
+    @Bean
+    JobStore jobStore(ObjectMapper objectMapper) {
+        if (!enabled) {
+            return JobStore.NONE;
+        }
+        if (dir == null || dir.isBlank()) {
+            throw new IllegalStateException("copilot.jobs.store.enabled=true requires copilot.jobs.store.dir");
+        }
+        // Durable job state so in-flight jobs resume after a restart (see JobRecoveryService)
+        return new FileJobStore(Path.of(dir), objectMapper, retention, compactBytes, groupCommitWindow);
+    }
+}
@@ -1,15 +1,17 @@
 package com.example.aicopilot.controller;
 
 import com.example.aicopilot.agent.DataModeler;
-import com.example.aicopilot.agent.FlowAnalyst;
 import com.example.aicopilot.agent.FormUXDesigner;
 import com.example.aicopilot.agent.ProcessOutliner;
 import com.example.aicopilot.agent.SuggestionAgent;
+import com.example.aicopilot.dto.JobInput;
 import com.example.aicopilot.dto.JobStatus;
-import com.example.aicopilot.dto.analysis.AnalysisReport;
 import com.example.aicopilot.dto.analysis.AnalysisResult;
+import com.example.aicopilot.dto.analysis.AnalysisSessionDelta;
+import com.example.aicopilot.dto.analysis.AnalysisSessionState;
 import com.example.aicopilot.dto.analysis.AssetAnalysisResponse; // Kept for reference if needed
 import com.example.aicopilot.dto.analysis.FixGraphRequest;
+import com.example.aicopilot.dto.analysis.GraphPatchRequest;
 import com.example.aicopilot.dto.analysis.GraphStructure;
 import com.example.aicopilot.dto.dataEntities.DataEntitiesResponse;
 import com.example.aicopilot.dto.definition.ProcessDefinition;
@@ -18,21 +20,38 @@ import com.example.aicopilot.dto.form.FormDefinitions;
 import com.example.aicopilot.dto.form.FormResponse;
 import com.example.aicopilot.dto.suggestion.AutoDiscoveryRequest;
 import com.example.aicopilot.dto.suggestion.SuggestionResponse;
+import com.example.aicopilot.service.AnalysisSessionService;
 import com.example.aicopilot.service.AssetAnalysisService;
 import com.example.aicopilot.service.DataContextService;
+import com.example.aicopilot.service.GraphSnapshot;
+import com.example.aicopilot.service.GraphSnapshotReader;
+import com.example.aicopilot.service.JobAdmissionController;
+import com.example.aicopilot.service.JobCancellationRegistry;
 import com.example.aicopilot.service.JobRepository;
+import com.example.aicopilot.service.JobStatusBroadcaster;
+import com.example.aicopilot.service.WorkflowAnalyzerService;
 import com.example.aicopilot.service.WorkflowOrchestrator;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
+import java.security.Principal;
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
@@ -45,51 +64,211 @@ public class CopilotController {
     private final JobRepository jobRepository;
     private final SuggestionAgent suggestionAgent;
     private final ProcessOutliner processOutliner;
-    private final FlowAnalyst flowAnalyst;
     private final DataModeler dataModeler;
     private final FormUXDesigner formUXDesigner;
     private final DataContextService dataContextService;
     private final AssetAnalysisService assetAnalysisService;
     private final ObjectMapper objectMapper;
+    private final JobStatusBroadcaster jobStatusBroadcaster;
+    private final JobAdmissionController admissionController;
+    private final JobCancellationRegistry jobCancellation;
+    private final WorkflowAnalyzerService workflowAnalyzerService;
+    private final AnalysisSessionService analysisSessions;
+
+    private static final long MAX_LONG_POLL_MILLIS = 60_000;
+    private static final long ANALYSIS_STREAM_TIMEOUT_MILLIS = 180_000;
+    private static final String TENANT_HEADER = "X-Tenant-Id"; // Selects per-tenant pipeline settings (e.g. candidate race)
+
+    // Only when an authenticating gateway in front of us sets (and strips client-sent) X-Tenant-Id
+    @Value("${copilot.tenant.trust-header:false}")
+    private boolean trustTenantHeader;
 
     // ... (Existing methods: startJob, transformJob, getStatus, suggestNextNode, suggestLegacy, suggestOutline, suggestStepDetail)
 
     @PostMapping("/start")
-    public ResponseEntity<?> startJob(@RequestBody Map<String, String> request) {
+    public ResponseEntity<?> startJob(@RequestBody Map<String, String> request,
+                                      @RequestParam(required = false) Long deadlineSeconds,
+                                      @RequestHeader(value = TENANT_HEADER, required = false) String tenantHeader,
+                                      Principal principal) {
+        String tenantId = tenantOf(principal, tenantHeader);
         String prompt = request.get("userPrompt");
         String jobId = UUID.randomUUID().toString();
-        jobRepository.initJob(jobId);
-        orchestrator.runQuickStartJob(jobId, prompt);
-        return ResponseEntity.accepted().body(Map.of("jobId", jobId, "message", "Mode A Started"));
+        JobAdmissionController.Decision decision = admissionController.tryAdmit(jobId);
+        if (!decision.admitted()) return tooManyJobs(decision);
+
+        submit(jobId, JobInput.quickStart(prompt, tenantId), decision, deadlineSeconds, () -> orchestrator.runQuickStartJob(jobId, prompt, tenantId));
+        return ResponseEntity.accepted().body(accepted(jobId, "Mode A Started", decision));
     }
 
     @PostMapping("/transform")
-    public ResponseEntity<?> transformJob(@RequestBody ProcessDefinition definition) {
+    public ResponseEntity<?> transformJob(@RequestBody ProcessDefinition definition,
+                                          @RequestParam(required = false) Long deadlineSeconds,
+                                          @RequestHeader(value = TENANT_HEADER, required = false) String tenantHeader,
+                                          Principal principal) {
+        String tenantId = tenantOf(principal, tenantHeader);
         String jobId = UUID.randomUUID().toString();
+        String definitionJson;
         try {
-            String definitionJson = objectMapper.writeValueAsString(definition);
-            jobRepository.initJob(jobId);
-            orchestrator.runTransformationJob(jobId, definitionJson);
-            return ResponseEntity.accepted().body(Map.of("jobId", jobId, "message", "Mode B Started"));
+            definitionJson = objectMapper.writeValueAsString(definition);
         } catch (Exception e) {
             return ResponseEntity.badRequest().body("Invalid Definition");
         }
+        JobAdmissionController.Decision decision = admissionController.tryAdmit(jobId);
+        if (!decision.admitted()) return tooManyJobs(decision);
+
+        submit(jobId, JobInput.transformation(definitionJson, tenantId), decision, deadlineSeconds, () -> orchestrator.runTransformationJob(jobId, definitionJson, tenantId));
+        return ResponseEntity.accepted().body(accepted(jobId, "Mode B Started", decision));
+    }
+
+    /**
+     * Tenant settings cost tokens (K race candidates), so the tenant comes from the authenticated principal;
+     * the header is only honoured behind a trusted gateway (copilot.tenant.trust-header). Otherwise: default tenant.
+     */
+    private String tenantOf(Principal principal, String tenantHeader) {
+        if (principal != null) {
+            return principal.getName();
+        }
+        return trustTenantHeader && tenantHeader != null && !tenantHeader.isBlank() ? tenantHeader.trim() : null;
+    }
+
+    // deadlineSeconds: optional, capped at copilot.jobs.deadline
+    private void submit(String jobId, JobInput input, JobAdmissionController.Decision decision, Long deadlineSeconds, Runnable start) {
+        try {
+            jobRepository.initJob(jobId, input, decision.queuePosition());
+        } catch (RuntimeException e) {
+            admissionController.release(jobId);
+            throw e;
+        }
+        jobCancellation.register(jobId, deadlineSeconds != null ? Duration.ofSeconds(Math.max(1, deadlineSeconds)) : null);
+        admissionController.dispatch(jobId, start);
+    }
+
+    private static Map<String, Object> accepted(String jobId, String message, JobAdmissionController.Decision decision) {
+        return Map.of(
+                "jobId", jobId,
+                "message", message,
+                "queuePosition", decision.queuePosition(),
+                "estimatedWaitSeconds", TimeUnit.MILLISECONDS.toSeconds(decision.estimatedWaitMillis())
+        );
     }
 
+    // Over capacity: fail fast with a hint instead of queueing a job that would miss the SLA
+    private static ResponseEntity<?> tooManyJobs(JobAdmissionController.Decision decision) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(decision.retryAfterSeconds()))
+                .body(Map.of(
+                        "error", "TooManyJobs",
+                        "message", "The job queue is full. Please retry later.",
+                        "estimatedWaitSeconds", TimeUnit.MILLISECONDS.toSeconds(decision.estimatedWaitMillis()),
+                        "retryAfterSeconds", decision.retryAfterSeconds()
+                ));
+    }
+
+    /**
+     * Cancels a queued or running job: it becomes CANCELLED immediately, and its in-flight waits for the
+     * model are interrupted. Answers 409 with the final status if the job had already finished.
+     */
+    @DeleteMapping("/jobs/{jobId}")
+    public ResponseEntity<?> cancelJob(@PathVariable String jobId) {
+        JobStatus status = jobCancellation.cancel(jobId, "Job was cancelled by the user.");
+        if (status == null) return ResponseEntity.notFound().build();
+        if (status.state() != JobStatus.State.CANCELLED) return ResponseEntity.status(HttpStatus.CONFLICT).body(status);
+        return ResponseEntity.ok(status);
+    }
+
+    /**
+     * @param since Version the client already holds; artifacts unchanged since then are omitted (null)
+     *              and the client keeps its copy, guided by artifactVersions.
+     */
     @GetMapping("/status/{jobId}")
-    public ResponseEntity<?> getStatus(@PathVariable String jobId) {
+    public ResponseEntity<?> getStatus(@PathVariable String jobId,
+                                       @RequestParam(required = false) Long since,
+                                       @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         JobStatus status = jobRepository.findById(jobId);
         if (status == null) return ResponseEntity.notFound().build();
-        String etag = "\"" + status.version() + "\"";
+        return statusResponse(status, since, ifNoneMatch);
+    }
+
+    /**
+     * Long-poll mode: parks the request (servlet async, no thread held) until the job reaches
+     * {@code waitForVersion} or a terminal state, or until {@code timeout} ms elapse.
+     * A timeout of 0 or less answers right away with the current status (for DeferredResult, 0 would mean "no timeout").
+     */
+    @GetMapping(value = "/status/{jobId}", params = "waitForVersion")
+    public DeferredResult<ResponseEntity<?>> waitForStatus(@PathVariable String jobId,
+                                                           @RequestParam long waitForVersion,
+                                                           @RequestParam(defaultValue = "30000") long timeout,
+                                                           @RequestParam(required = false) Long since,
+                                                           @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        DeferredResult<ResponseEntity<?>> result = new DeferredResult<>(Math.min(Math.max(timeout, 1), MAX_LONG_POLL_MILLIS));
+        if (timeout <= 0) {
+            result.setResult(currentStatus(jobId, since, ifNoneMatch));
+            return result;
+        }
+        CompletableFuture<JobStatus> ready = jobStatusBroadcaster.awaitVersion(jobId, waitForVersion);
+
+        ready.thenAccept(status -> result.setResult(status == null
+                ? ResponseEntity.notFound().build()
+                : statusResponse(status, since, ifNoneMatch)));
+        result.onTimeout(() -> {
+            ready.cancel(false);
+            result.setResult(currentStatus(jobId, since, ifNoneMatch));
+        });
+        return result;
+    }
+
+    private ResponseEntity<?> currentStatus(String jobId, Long since, String ifNoneMatch) {
+        JobStatus current = jobRepository.findById(jobId);
+        return current == null ? ResponseEntity.notFound().build() : statusResponse(current, since, ifNoneMatch);
+    }
+
+    // ETag = job version (+ the since base for delta bodies, so a delta and the full status never share a tag);
+    // an unchanged representation is answered with 304 and no body
+    private ResponseEntity<?> statusResponse(JobStatus status, Long since, String ifNoneMatch) {
+        String etag = "\"" + status.version() + (since != null ? "-since-" + since : "") + "\"";
+        CacheControl cacheControl = CacheControl.maxAge(0, TimeUnit.SECONDS).cachePrivate().mustRevalidate();
+        if (etagMatches(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(cacheControl).build();
+        }
         return ResponseEntity.ok()
                 .eTag(etag)
-                .cacheControl(CacheControl.maxAge(0, TimeUnit.SECONDS).cachePrivate().mustRevalidate())
-                .body(status);
+                .cacheControl(cacheControl)
+                .body(since != null ? status.since(since) : status);
     }
 
+    private static boolean etagMatches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) return false;
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) tag = tag.substring(2);
+            if (tag.equals("*") || tag.equals(etag)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Push channel alternative to polling: emits a "status" event (id = version) only when the job changes.
+     * Reconnecting clients send Last-Event-ID and receive only what they missed.
+     */
+    @GetMapping(value = "/status/{jobId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamStatus(@PathVariable String jobId,
+                                                   @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        SseEmitter emitter = jobStatusBroadcaster.subscribe(jobId, lastEventId);
+        if (emitter == null) return ResponseEntity.notFound().build();
+        return ResponseEntity.ok(emitter);
+    }
+
+    /**
+     * @param request currentGraphJson, or sessionId of an analysis session to read the graph from
+     */
     @PostMapping("/suggest/graph")
-    public ResponseEntity<SuggestionResponse> suggestNextNode(@RequestBody Map<String, String> request) {
+    public ResponseEntity<SuggestionResponse> suggestNextNode(@RequestBody Map<String, String> request) throws IOException {
         String currentGraphJson = request.get("currentGraphJson");
+        String sessionId = request.get("sessionId");
+        if (currentGraphJson == null && sessionId != null) {
+            currentGraphJson = analysisSessions.graphJson(sessionId);
+            if (currentGraphJson == null) return ResponseEntity.notFound().build();
+        }
         String focusNodeId = request.get("focusNodeId");
         String jobId = request.get("jobId");
 
@@ -114,7 +293,7 @@ public class CopilotController {
     }
 
     @PostMapping("/suggest")
-    public ResponseEntity<SuggestionResponse> suggestLegacy(@RequestBody Map<String, String> request) {
+    public ResponseEntity<SuggestionResponse> suggestLegacy(@RequestBody Map<String, String> request) throws IOException {
         return suggestNextNode(request);
     }
 
@@ -156,25 +335,126 @@ public class CopilotController {
     }
 
     @PostMapping("/analyze")
-    public ResponseEntity<?> analyzeProcess(@RequestBody Map<String, Object> graphSnapshot) {
+    public ResponseEntity<?> analyzeProcess(@RequestBody String body) {
         try {
-            if (flowAnalyst == null) {
-                throw new IllegalStateException("FlowAnalyst bean is not initialized.");
-            }
+            // Single streaming pass: CSR graph + cache fingerprint + prompt JSON sliced from the body
+            GraphSnapshot graphSnapshot = GraphSnapshotReader.read(body);
+            requireGraph(graphSnapshot);
 
-            Object nodesObj = graphSnapshot.get("nodes");
-            Object edgesObj = graphSnapshot.get("edges");
+            // Hybrid: local rules + FlowAnalyst, run concurrently
+            return ResponseEntity.ok(workflowAnalyzerService.analyze(graphSnapshot));
+        } catch (Exception e) {
+            e.printStackTrace();
+            return ResponseEntity.internalServerError().body(Map.of(
+                    "error", e.getClass().getSimpleName(),
+                    "message", e.getMessage() != null ? e.getMessage() : "Unknown Error"
+            ));
+        }
+    }
 
-            if (nodesObj == null || edgesObj == null) {
-                throw new IllegalArgumentException("'nodes' or 'edges' data is missing.");
+    /**
+     * Streaming variant of /analyze (SSE): a "rules" event with the local rule results right away, one "ai" event
+     * per FlowAnalyst finding as the model completes it, then "done" (or "ai-error" if the AI layer failed).
+     */
+    @PostMapping(value = "/analyze/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> analyzeProcessStream(@RequestBody String body) {
+        GraphSnapshot graphSnapshot;
+        try {
+            graphSnapshot = GraphSnapshotReader.read(body);
+            requireGraph(graphSnapshot);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        SseEmitter emitter = new SseEmitter(ANALYSIS_STREAM_TIMEOUT_MILLIS);
+        // "rules" is sent on this thread before the AI call starts; after that only the AI thread sends
+        CompletableFuture<List<AnalysisResult>> aiResults = workflowAnalyzerService.analyzeStreaming(graphSnapshot,
+                rules -> sendEvent(emitter, "rules", rules),
+                finding -> sendEvent(emitter, "ai", finding));
+        aiResults.whenComplete((results, error) -> {
+            if (error instanceof CancellationException) {
+                return; // The client went away
+            }
+            if (error != null) {
+                Throwable cause = error.getCause() != null ? error.getCause() : error;
+                sendEvent(emitter, "ai-error", Map.of("message", cause.getMessage() != null ? cause.getMessage() : "Unknown Error"));
+            } else {
+                sendEvent(emitter, "done", Map.of("aiResults", results.size()));
             }
+            emitter.complete();
+        });
+        // Disconnect, timeout or a failed send: stop the AI call instead of streaming into the void
+        emitter.onCompletion(() -> aiResults.cancel(true));
+        emitter.onTimeout(() -> aiResults.cancel(true));
+        emitter.onError(e -> aiResults.cancel(true));
+        return ResponseEntity.ok(emitter);
+    }
+
+    private static void requireGraph(GraphSnapshot graphSnapshot) {
+        if (!graphSnapshot.hasGraph()) {
+            throw new IllegalArgumentException("'nodes' or 'edges' data is missing.");
+        }
+    }
 
-            String nodesJson = objectMapper.writeValueAsString(nodesObj);
-            String edgesJson = objectMapper.writeValueAsString(edgesObj);
+    // A client that went away only loses the rest of the stream
+    private static void sendEvent(SseEmitter emitter, String name, Object data) {
+        try {
+            emitter.send(SseEmitter.event().name(name).data(data, MediaType.APPLICATION_JSON));
+        } catch (IOException | IllegalStateException e) {
+            emitter.completeWithError(e);
+        }
+    }
 
-            AnalysisReport report = flowAnalyst.analyzeGraph(nodesJson, edgesJson);
+    /**
+     * Opens an incremental analysis session from a full snapshot; returns sessionId, version 0 and the rule findings.
+     * Afterwards the editor only sends its edits (PATCH) instead of re-uploading the graph.
+     */
+    @PostMapping("/analyze/sessions")
+    public ResponseEntity<?> openAnalysisSession(@RequestBody String body) {
+        try {
+            return ResponseEntity.status(HttpStatus.CREATED).body(analysisSessions.open(body));
+        } catch (IllegalArgumentException | IOException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", "InvalidSnapshot", "message", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/analyze/sessions/{sessionId}")
+    public ResponseEntity<AnalysisSessionState> getAnalysisSession(@PathVariable String sessionId) {
+        AnalysisSessionState state = analysisSessions.get(sessionId);
+        if (state == null) return ResponseEntity.notFound().build();
+        return ResponseEntity.ok(state);
+    }
 
-            return ResponseEntity.ok(report.results());
+    /**
+     * Applies graph edits (see {@link GraphPatchRequest}) and answers with the findings that appeared or were resolved.
+     * 409 with the current version if baseVersion is stale, 400 if an operation does not fit the session graph.
+     */
+    @PatchMapping("/analyze/sessions/{sessionId}")
+    public ResponseEntity<?> patchAnalysisSession(@PathVariable String sessionId, @RequestBody GraphPatchRequest request) {
+        try {
+            AnalysisSessionDelta delta = analysisSessions.patch(sessionId, request);
+            if (delta == null) return ResponseEntity.notFound().build();
+            return ResponseEntity.ok(delta);
+        } catch (AnalysisSessionService.VersionConflictException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of(
+                    "error", "VersionConflict",
+                    "message", e.getMessage(),
+                    "currentVersion", e.getCurrentVersion()
+            ));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", "InvalidPatch", "message", e.getMessage()));
+        }
+    }
+
+    /**
+     * Full hybrid analysis (local rules + FlowAnalyst, cached by content) of the session's current graph.
+     */
+    @PostMapping("/analyze/sessions/{sessionId}/analyze")
+    public ResponseEntity<?> analyzeSession(@PathVariable String sessionId) {
+        try {
+            String graphJson = analysisSessions.graphJson(sessionId);
+            if (graphJson == null) return ResponseEntity.notFound().build();
+            return ResponseEntity.ok(workflowAnalyzerService.analyze(GraphSnapshotReader.read(graphJson)));
         } catch (Exception e) {
             e.printStackTrace();
             return ResponseEntity.internalServerError().body(Map.of(
@@ -184,19 +464,16 @@ public class CopilotController {
         }
     }
 
+    @DeleteMapping("/analyze/sessions/{sessionId}")
+    public ResponseEntity<Void> closeAnalysisSession(@PathVariable String sessionId) {
+        return analysisSessions.close(sessionId) ? ResponseEntity.noContent().build() : ResponseEntity.notFound().build();
+    }
+
     @PostMapping("/analyze/fix")
     public ResponseEntity<GraphStructure> fixError(@RequestBody FixGraphRequest request) {
         try {
-            // Serialize graph for AI
-            String graphJson = objectMapper.writeValueAsString(request.graphSnapshot());
-            AnalysisResult error = request.error();
-
-            GraphStructure fixedGraph = flowAnalyst.fixGraph(
-                    graphJson,
-                    error.type(),
-                    error.targetNodeId(),
-                    error.suggestion()
-            );
+            // Same graph content + same finding is served from the analysis cache
+            GraphStructure fixedGraph = workflowAnalyzerService.fixGraph(request.graphSnapshot(), request.error());
 
             return ResponseEntity.ok(fixedGraph);
         } catch (Exception e) {
@@ -218,7 +495,7 @@ public class CopilotController {
     @PostMapping("/suggest/data-model/auto-discovery")
     public ResponseEntity<DataEntitiesResponse> suggestMissingEntities(@RequestBody AutoDiscoveryRequest request) {
         try {
-            String processJson = objectMapper.writeValueAsString(request.processContext());
+            String processJson = request.processContext() != null ? request.processContext() : "null";
             String dataJson = objectMapper.writeValueAsString(request.existingEntities());
 
             DataEntitiesResponse suggestions = dataModeler.suggestMissingEntities(processJson, dataJson);
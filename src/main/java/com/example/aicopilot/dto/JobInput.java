@@ -0,0 +1,27 @@
+package com.example.aicopilot.dto;
+
+/**
+ * Original input of a generation job, persisted so an interrupted job can be resumed after a restart.
+ */
+public record JobInput(
+        Mode mode,
+        String userRequest, // Mode A prompt (null for Mode B)
+        String definitionJson, // Mode B step list (null for Mode A)
+        String tenantId // Tenant of the submitter, authenticated or from a trusted gateway (null = default tenant)
+) {
+    public enum Mode {
+        QUICK_START, TRANSFORMATION
+    }
+
+    public static JobInput quickStart(String userRequest) {
+        return quickStart(userRequest, null);
+    }
+
+    public static JobInput quickStart(String userRequest, String tenantId) {
+        return new JobInput(Mode.QUICK_START, userRequest, null, tenantId);
+    }
+
+    public static JobInput transformation(String definitionJson, String tenantId) {
+        return new JobInput(Mode.TRANSFORMATION, null, definitionJson, tenantId);
+    }
+}
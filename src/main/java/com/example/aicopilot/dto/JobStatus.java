@@ -18,15 +18,33 @@ public record JobStatus(
         Map<String, Long> stageDurations, // Duration per stage (ms)
         long totalElapsedMillis, // Total elapsed time
 
+        // Admission: jobs ahead of this one waiting to start (0 = next); null once the job is running
+        Integer queuePosition,
+
+        // Job version at which each artifact last changed (keys: ARTIFACT_*), used for ?since=N deltas
+        Map<String, Long> artifactVersions,
+
         ProcessResponse processResponse,
         DataEntitiesResponse dataEntitiesResponse,
         FormResponse formResponse
 ) {
+    public static final String ARTIFACT_PROCESS = "process";
+    public static final String ARTIFACT_DATA = "data";
+    public static final String ARTIFACT_FORM = "form";
+
     public enum State {
-        PENDING, PROCESSING, COMPLETED, FAILED
+        PENDING, PROCESSING, COMPLETED, FAILED, CANCELLED;
+
+        public boolean isTerminal() {
+            return this == COMPLETED || this == FAILED || this == CANCELLED;
+        }
     }
 
     public static JobStatus init(String jobId) {
+        return init(jobId, null);
+    }
+
+    public static JobStatus init(String jobId, Integer queuePosition) {
         return new JobStatus(
                 jobId,
                 State.PENDING,
@@ -36,7 +54,27 @@ public record JobStatus(
                 System.currentTimeMillis(),
                 Map.of(),
                 0L,
+                queuePosition,
+                Map.of(),
                 null, null, null
         );
     }
+
+    /**
+     * Delta view for a client that already holds version {@code sinceVersion}:
+     * state fields are always included, artifacts only if they changed after that version (others are null).
+     */
+    public JobStatus since(long sinceVersion) {
+        return new JobStatus(
+                jobId, state, message, lastUpdatedStage, version,
+                startTime, stageDurations, totalElapsedMillis, queuePosition, artifactVersions,
+                changedSince(ARTIFACT_PROCESS, sinceVersion) ? processResponse : null,
+                changedSince(ARTIFACT_DATA, sinceVersion) ? dataEntitiesResponse : null,
+                changedSince(ARTIFACT_FORM, sinceVersion) ? formResponse : null
+        );
+    }
+
+    private boolean changedSince(String artifact, long sinceVersion) {
+        return artifactVersions.getOrDefault(artifact, 0L) > sinceVersion;
+    }
 }
\ No newline at end of file
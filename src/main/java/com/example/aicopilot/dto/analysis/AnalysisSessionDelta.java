@@ -0,0 +1,16 @@
+package com.example.aicopilot.dto.analysis;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * Result of one patch: only the findings that appeared or went away, so the response stays as small as the edit.
+ */
+public record AnalysisSessionDelta(
+        @JsonProperty("sessionId") String sessionId,
+        @JsonProperty("version") long version,
+        @JsonProperty("added") List<AnalysisResult> added,
+        @JsonProperty("resolved") List<AnalysisResult> resolved,
+        @JsonProperty("rechecked") int rechecked // Nodes whose rules were re-evaluated
+) {}
@@ -0,0 +1,14 @@
+package com.example.aicopilot.dto.analysis;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * All current rule findings of an analysis session.
+ */
+public record AnalysisSessionState(
+        @JsonProperty("sessionId") String sessionId,
+        @JsonProperty("version") long version,
+        @JsonProperty("findings") List<AnalysisResult> findings
+) {}
@@ -1,18 +1,17 @@
 package com.example.aicopilot.dto.analysis;
 
+import com.example.aicopilot.dto.common.RawJsonDeserializer;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
-import java.util.List;
-import java.util.Map;
+import com.fasterxml.jackson.annotation.JsonRawValue;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 
 @JsonIgnoreProperties(ignoreUnknown = true)
 public record FixGraphRequest(
-        @JsonProperty("graphSnapshot") GraphSnapshot graphSnapshot,
+        @JsonProperty("graphSnapshot")
+        @JsonDeserialize(using = RawJsonDeserializer.class)
+        @JsonRawValue
+        String graphSnapshot, // Raw JSON; read in one streaming pass by the service (GraphSnapshotReader)
+
         @JsonProperty("error") AnalysisResult error
-) {
-    @JsonIgnoreProperties(ignoreUnknown = true)
-    public record GraphSnapshot(
-            @JsonProperty("nodes") List<Map<String, Object>> nodes,
-            @JsonProperty("edges") List<Map<String, Object>> edges
-    ) {}
-}
\ No newline at end of file
+) {}
\ No newline at end of file
@@ -0,0 +1,27 @@
+package com.example.aicopilot.dto.analysis;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.List;
+
+/**
+ * JSON Patch-style edit of an analysis session's graph (paths address elements by id, not by array index):
+ * - add / remove:  /nodes/{id}, /edges/{id} (value = the ReactFlow node or edge; "-" takes the id from the value)
+ *   Added nodes and edges must carry an id (in the path or the value); later edits address them by it.
+ * - replace:       /nodes/{id}/label, /edges/{id}/label, /nodes/{id}/position (position is view state, not re-checked)
+ * Ids containing '/' or '~' are escaped as in JSON Pointer (~1, ~0).
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record GraphPatchRequest(
+        @JsonProperty("baseVersion") Long baseVersion, // Session version the edit was made on; null = skip the check
+        @JsonProperty("ops") List<Operation> ops
+) {
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record Operation(
+            @JsonProperty("op") String op,
+            @JsonProperty("path") String path,
+            @JsonProperty("value") JsonNode value
+    ) {}
+}
@@ -0,0 +1,29 @@
+package com.example.aicopilot.dto.common;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+/**
+ * Keeps a JSON value of a request DTO as compact JSON text (token copy, no Map/JsonNode tree), for fields the
+ * service parses itself, e.g. graph snapshots read by GraphSnapshotReader.
+ */
+public class RawJsonDeserializer extends StdDeserializer<String> {
+
+    public RawJsonDeserializer() {
+        super(String.class);
+    }
+
+    @Override
+    public String deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+        StringWriter out = new StringWriter();
+        try (JsonGenerator generator = parser.getCodec().getFactory().createGenerator(out)) {
+            generator.copyCurrentStructure(parser);
+        }
+        return out.toString();
+    }
+}
@@ -1,7 +1,10 @@
 package com.example.aicopilot.dto.suggestion;
 
+import com.example.aicopilot.dto.common.RawJsonDeserializer;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonRawValue;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 
 import java.util.List;
 import java.util.Map;
@@ -9,7 +12,9 @@ import java.util.Map;
 @JsonIgnoreProperties(ignoreUnknown = true)
 public record AutoDiscoveryRequest(
         @JsonProperty("processContext")
-        Map<String, Object> processContext, // JSON Object of nodes/edges
+        @JsonDeserialize(using = RawJsonDeserializer.class)
+        @JsonRawValue
+        String processContext, // JSON Object of nodes/edges, kept as compact JSON for the prompt
 
         @JsonProperty("existingEntities")
         List<Map<String, Object>> existingEntities // Simplified list of current entities
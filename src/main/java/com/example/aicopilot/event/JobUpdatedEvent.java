@@ -0,0 +1,24 @@
+package com.example.aicopilot.event;
+
+import com.example.aicopilot.dto.JobStatus;
+import lombok.Getter;
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * 작업 상태(JobStatus)가 갱신되어 version이 올라갈 때마다 발행되는 이벤트.
+ * 상태 구독자(SSE 등)는 이 이벤트를 받아 변경분만 푸시합니다.
+ * 갱신 후 상태(state)를 함께 실어, 종료 여부만 보는 구독자가 작업을 다시 조회하지 않아도 되게 합니다.
+ */
+@Getter
+public class JobUpdatedEvent extends ApplicationEvent {
+    private final String jobId;
+    private final long version;
+    private final JobStatus.State state;
+
+    public JobUpdatedEvent(Object source, String jobId, long version, JobStatus.State state) {
+        super(source);
+        this.jobId = jobId;
+        this.version = version;
+        this.state = state;
+    }
+}
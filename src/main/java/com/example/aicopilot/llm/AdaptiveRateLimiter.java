@@ -0,0 +1,277 @@
+package com.example.aicopilot.llm;
+
+import dev.ai4j.openai4j.OpenAiHttpException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Client-side admission control for one LLM provider.
+ * - Token buckets for the provider's requests-per-minute and tokens-per-minute budgets
+ *   (tokens are estimated up front and corrected with the reported usage afterwards).
+ * - AIMD concurrency limit: grows by ~1 per window of fast successes, shrinks on slow responses
+ *   and halves on a 429, so we back off before the provider starts rejecting. "Slow" is judged against a latency
+ *   baseline per agent method, since a large transformation is normally much slower than a short suggestion.
+ * - Waiters are served by priority (interactive before background agents), and within a priority
+ *   by start-time fair queuing across agents, so one agent flooding the queue cannot starve the others.
+ */
+public class AdaptiveRateLimiter {
+
+    public enum Priority {
+        INTERACTIVE, BACKGROUND
+    }
+
+    private static final double DECREASE_ON_SLOW = 0.9;
+    private static final double DECREASE_ON_THROTTLE = 0.5;
+    private static final double SLOW_LATENCY_FACTOR = 2.0; // "slow" = 2x the observed baseline
+    private static final double BASELINE_DRIFT = 0.01; // Lets the baseline follow the model getting slower
+    private static final int TOO_MANY_REQUESTS = 429;
+
+    private final String provider;
+    private final Set<String> backgroundAgents;
+    private final Duration acquireTimeout;
+    private final double minLimit = 1;
+    private final double maxLimit;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final PriorityQueue<Waiter> queue = new PriorityQueue<>(
+            Comparator.comparing(Waiter::priority).thenComparingLong(Waiter::tag).thenComparingLong(Waiter::seq));
+    private final Map<String, Long> lastTagByAgent = new HashMap<>();
+    private long virtualTime = 0;
+    private long seq = 0;
+
+    private final TokenBucket requestBucket;
+    private final TokenBucket tokenBucket;
+    private double limit;
+    private int inFlight = 0;
+    private final Map<String, Double> baselineLatencyMillis = new HashMap<>(); // Per agent method
+
+    private final Counter throttled;
+    private final Counter rejected;
+    private final Timer waitTimer;
+
+    private record Waiter(Priority priority, long tag, long seq, long tokens, Condition ready) {
+    }
+
+    /**
+     * Handed out by {@link #acquire}; must be released exactly once with the call's outcome.
+     */
+    public final class Permit {
+        private final long estimatedTokens;
+        private final String callName;
+        private final long startNanos = System.nanoTime();
+        private boolean released;
+
+        private Permit(long estimatedTokens, String callName) {
+            this.estimatedTokens = estimatedTokens;
+            this.callName = callName;
+        }
+
+        /**
+         * @param actualTokens Reported token usage, or null if unknown
+         * @param error        Failure of the call, or null on success
+         */
+        public void release(Integer actualTokens, Throwable error) {
+            lock.lock();
+            try {
+                if (released) {
+                    return;
+                }
+                released = true;
+                inFlight--;
+                if (actualTokens != null) {
+                    tokenBucket.take(actualTokens - estimatedTokens); // Correct the estimate (negative = refund)
+                }
+                if (isThrottle(error)) {
+                    throttled.increment();
+                    limit = Math.max(minLimit, limit * DECREASE_ON_THROTTLE);
+                    requestBucket.drain(); // Pause briefly; the bucket refills at the configured rate
+                } else if (error == null) {
+                    adjustForLatency(callName, (System.nanoTime() - startNanos) / 1_000_000.0);
+                }
+                signalHead();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    public AdaptiveRateLimiter(String provider, int requestsPerMinute, int tokensPerMinute,
+                               int initialConcurrency, int maxConcurrency,
+                               Set<String> backgroundAgents, Duration acquireTimeout, MeterRegistry meterRegistry) {
+        this.provider = provider;
+        this.backgroundAgents = backgroundAgents;
+        this.acquireTimeout = acquireTimeout;
+        this.maxLimit = maxConcurrency;
+        this.limit = Math.min(initialConcurrency, maxConcurrency);
+        this.requestBucket = new TokenBucket(requestsPerMinute);
+        this.tokenBucket = new TokenBucket(tokensPerMinute);
+
+        Tags tags = Tags.of("provider", provider);
+        meterRegistry.gauge("copilot.llm.ratelimit.limit", tags, this, locked(l -> l.limit));
+        meterRegistry.gauge("copilot.llm.ratelimit.inflight", tags, this, locked(l -> l.inFlight));
+        meterRegistry.gauge("copilot.llm.ratelimit.queued", tags, this, locked(l -> l.queue.size()));
+        this.throttled = meterRegistry.counter("copilot.llm.ratelimit.throttled", tags);
+        this.rejected = meterRegistry.counter("copilot.llm.ratelimit.rejected", tags);
+        this.waitTimer = meterRegistry.timer("copilot.llm.ratelimit.wait", tags);
+    }
+
+    // Gauge reads take the lock too: limit, inFlight and the queue are only guarded by it
+    private static ToDoubleFunction<AdaptiveRateLimiter> locked(ToDoubleFunction<AdaptiveRateLimiter> read) {
+        return limiter -> {
+            limiter.lock.lock();
+            try {
+                return read.applyAsDouble(limiter);
+            } finally {
+                limiter.lock.unlock();
+            }
+        };
+    }
+
+    public Priority priorityOf(AgentContext.AgentCall call) {
+        return call != null && call.matches(backgroundAgents) ? Priority.BACKGROUND : Priority.INTERACTIVE;
+    }
+
+    /**
+     * Blocks until the call may be sent (priority order, concurrency limit, RPM and TPM budgets).
+     */
+    public Permit acquire(long estimatedTokens, AgentContext.AgentCall call) {
+        long start = System.nanoTime();
+        long deadline = start + acquireTimeout.toNanos();
+        String agent = call != null ? call.agent() : "unknown";
+
+        lock.lock();
+        try {
+            long tag = Math.max(virtualTime, lastTagByAgent.getOrDefault(agent, 0L)) + 1;
+            lastTagByAgent.put(agent, tag);
+            Waiter me = new Waiter(priorityOf(call), tag, seq++, estimatedTokens, lock.newCondition());
+            queue.add(me);
+
+            while (true) {
+                long waitNanos = deadline - System.nanoTime();
+                if (queue.peek() == me) {
+                    if (inFlight < Math.floor(limit) && requestBucket.tryTake(1)) {
+                        if (tokenBucket.tryTake(Math.min(estimatedTokens, tokenBucket.capacity))) {
+                            queue.poll();
+                            virtualTime = me.tag();
+                            inFlight++;
+                            signalHead(); // The next waiter may fit as well
+                            waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                            return new Permit(estimatedTokens, call != null ? call.qualifiedName() : agent);
+                        }
+                        requestBucket.take(-1); // Give the request slot back
+                    }
+                    if (inFlight < Math.floor(limit)) {
+                        // Only the budgets are short: sleep until they have refilled enough
+                        waitNanos = Math.min(waitNanos, Math.max(requestBucket.nanosUntil(1),
+                                tokenBucket.nanosUntil(Math.min(estimatedTokens, tokenBucket.capacity))));
+                    }
+                }
+                if (deadline - System.nanoTime() <= 0) {
+                    queue.remove(me);
+                    signalHead();
+                    rejected.increment();
+                    throw new ProviderCapacityException(String.format(
+                            "LLM provider '%s' rate limit: no capacity within %ds", provider, acquireTimeout.toSeconds()));
+                }
+                me.ready().awaitNanos(Math.max(waitNanos, 1_000_000));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for LLM provider '" + provider + "'", e);
+        } finally {
+            if (lock.isHeldByCurrentThread()) {
+                lock.unlock();
+            }
+        }
+    }
+
+    // Must hold the lock
+    private void adjustForLatency(String callName, double latencyMillis) {
+        Double previous = baselineLatencyMillis.get(callName);
+        double baseline = previous == null || latencyMillis < previous ? latencyMillis
+                : previous + (latencyMillis - previous) * BASELINE_DRIFT;
+        baselineLatencyMillis.put(callName, baseline);
+        if (latencyMillis > baseline * SLOW_LATENCY_FACTOR) {
+            limit = Math.max(minLimit, limit * DECREASE_ON_SLOW);
+        } else {
+            limit = Math.min(maxLimit, limit + 1.0 / limit);
+        }
+    }
+
+    // Must hold the lock; only the head can make progress, so only it is woken
+    private void signalHead() {
+        Waiter head = queue.peek();
+        if (head != null) {
+            head.ready().signal();
+        }
+    }
+
+    // HTTP 429 from the provider (possibly wrapped by the model's retry or streaming layer)
+    static boolean isThrottle(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof OpenAiHttpException http && http.code() == TOO_MANY_REQUESTS) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Per-minute budget refilled continuously. Guarded by the limiter's lock.
+     */
+    private static final class TokenBucket {
+        final long capacity;
+        final double refillPerNano;
+        double available;
+        long lastRefill = System.nanoTime();
+
+        TokenBucket(long perMinute) {
+            this.capacity = perMinute;
+            this.refillPerNano = perMinute / (double) TimeUnit.MINUTES.toNanos(1);
+            this.available = perMinute;
+        }
+
+        boolean tryTake(long amount) {
+            refill();
+            if (available >= amount) {
+                available -= amount;
+                return true;
+            }
+            return false;
+        }
+
+        void take(long amount) {
+            refill();
+            available = Math.min(capacity, available - amount);
+        }
+
+        void drain() {
+            refill();
+            available = Math.min(available, 0);
+        }
+
+        long nanosUntil(long amount) {
+            refill();
+            return available >= amount ? 0 : (long) Math.ceil((amount - available) / refillPerNano);
+        }
+
+        private void refill() {
+            long now = System.nanoTime();
+            available = Math.min(capacity, available + (now - lastRefill) * refillPerNano);
+            lastRefill = now;
+        }
+    }
+}
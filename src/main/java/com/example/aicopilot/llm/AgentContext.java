@@ -0,0 +1,51 @@
+package com.example.aicopilot.llm;
+
+import java.util.Set;
+
+/**
+ * Thread-bound record of which agent method is currently calling the model.
+ * Populated by {@link AgentContextPostProcessor} around every @AiService invocation so that
+ * model decorators can apply per-agent policies without changing the agent interfaces.
+ */
+public final class AgentContext {
+
+    private static final ThreadLocal<AgentCall> CURRENT = new ThreadLocal<>();
+
+    private AgentContext() {
+    }
+
+    public record AgentCall(String agent, String method) {
+        public String qualifiedName() {
+            return agent + "." + method;
+        }
+
+        /**
+         * True if the given name set contains either the agent (e.g. "SuggestionAgent")
+         * or the fully qualified method (e.g. "ProcessOutliner.suggestSteps").
+         */
+        public boolean matches(Set<String> names) {
+            return names.contains(agent) || names.contains(qualifiedName());
+        }
+    }
+
+    /**
+     * @return the current agent call, or null for direct ChatLanguageModel usage (e.g. AssetAnalysisService).
+     */
+    public static AgentCall current() {
+        return CURRENT.get();
+    }
+
+    static AgentCall enter(AgentCall call) {
+        AgentCall previous = CURRENT.get();
+        CURRENT.set(call);
+        return previous;
+    }
+
+    static void restore(AgentCall previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+}
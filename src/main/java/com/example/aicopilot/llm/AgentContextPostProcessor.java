@@ -0,0 +1,42 @@
+package com.example.aicopilot.llm;
+
+import dev.langchain4j.service.spring.AiService;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+
+/**
+ * Wraps every @AiService proxy so that each invocation runs inside an {@link AgentContext}.
+ */
+@Component
+public class AgentContextPostProcessor implements BeanPostProcessor {
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        Class<?> agentInterface = Arrays.stream(bean.getClass().getInterfaces())
+                .filter(i -> i.isAnnotationPresent(AiService.class))
+                .findFirst()
+                .orElse(null);
+        if (agentInterface == null) {
+            return bean;
+        }
+
+        return Proxy.newProxyInstance(agentInterface.getClassLoader(), new Class<?>[]{agentInterface}, (proxy, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                return method.invoke(bean, args);
+            }
+            AgentContext.AgentCall previous = AgentContext.enter(
+                    new AgentContext.AgentCall(agentInterface.getSimpleName(), method.getName()));
+            try {
+                return method.invoke(bean, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            } finally {
+                AgentContext.restore(previous);
+            }
+        });
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.aicopilot.llm;
+
+import dev.langchain4j.agent.tool.ToolSpecification;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.output.Response;
+
+import java.util.List;
+
+/**
+ * Runs every provider call through the provider's {@link ProviderBulkhead}.
+ * Innermost decorator of every stack, so it also reports the provider's token usage to an open {@link TokenTally}.
+ */
+public class BulkheadChatLanguageModel extends ChatModelDecorator {
+
+    private final ProviderBulkhead bulkhead;
+
+    public BulkheadChatLanguageModel(ChatLanguageModel delegate, ProviderBulkhead bulkhead) {
+        super(delegate);
+        this.bulkhead = bulkhead;
+    }
+
+    @Override
+    public Response<AiMessage> generate(List<ChatMessage> messages) {
+        Response<AiMessage> response = bulkhead.call(() -> delegate.generate(messages));
+        TokenTally.record(RateLimitedChatLanguageModel.totalTokens(response.tokenUsage()));
+        return response;
+    }
+
+    @Override
+    public Response<AiMessage> generate(List<ChatMessage> messages, List<ToolSpecification> toolSpecifications) {
+        return bulkhead.call(() -> delegate.generate(messages, toolSpecifications));
+    }
+
+    @Override
+    public Response<AiMessage> generate(List<ChatMessage> messages, ToolSpecification toolSpecification) {
+        return bulkhead.call(() -> delegate.generate(messages, toolSpecification));
+    }
+}
@@ -0,0 +1,369 @@
+package com.example.aicopilot.llm;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.output.FinishReason;
+import dev.langchain4j.model.output.Response;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressed response cache in front of the provider model.
+ * The key is a SHA-256 of the normalized message list plus the model parameters, so identical prompts
+ * (demo tenants re-running the same request, repeated outline suggestions) skip the round trip entirely.
+ * Memory is bounded by LRU + TTL + total bytes; entries can optionally be persisted to disk to survive restarts.
+ * The disk tier has its own byte budget (oldest files are deleted on write) and a background sweep that deletes
+ * expired files; at startup the directory is indexed from file attributes on the sweeper thread, without parsing.
+ */
+@Slf4j
+public class CachingChatLanguageModel extends ChatModelDecorator {
+
+    private final String modelFingerprint;
+    private final Duration ttl;
+    private final long maxBytes;
+    private final long maxEntryBytes;
+    private final Set<String> disabledAgents;
+    private final Path diskDir; // null = memory only
+    private final long maxDiskBytes;
+    private final ObjectMapper objectMapper;
+    private final ScheduledExecutorService diskSweeper; // null = memory only
+
+    // Access-ordered map acts as the LRU list (guarded by 'this')
+    private final LinkedHashMap<String, CachedResponse> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long currentBytes = 0;
+
+    // Files on disk in write order (oldest first), guarded by itself
+    private final LinkedHashMap<String, DiskEntry> diskIndex = new LinkedHashMap<>();
+    private long diskBytes = 0;
+
+    private record DiskEntry(long bytes, long writtenAt) {
+    }
+
+    /**
+     * Serialized form of a cached response (also the on-disk format).
+     */
+    record CachedResponse(String text, FinishReason finishReason, long createdAt) {
+        long estimatedBytes() {
+            return 64L + (long) text.length() * 2;
+        }
+    }
+
+    public CachingChatLanguageModel(ChatLanguageModel delegate, String modelFingerprint, Duration ttl,
+                                    long maxBytes, long maxEntryBytes, Set<String> disabledAgents,
+                                    Path diskDir, long maxDiskBytes, Duration diskSweepInterval,
+                                    ObjectMapper objectMapper) {
+        super(delegate);
+        this.modelFingerprint = modelFingerprint;
+        this.ttl = ttl;
+        this.maxBytes = maxBytes;
+        this.maxEntryBytes = maxEntryBytes;
+        this.disabledAgents = disabledAgents;
+        this.diskDir = diskDir;
+        this.maxDiskBytes = maxDiskBytes;
+        this.objectMapper = objectMapper;
+        this.diskSweeper = diskDir != null ? startDiskSweeper(diskSweepInterval) : null;
+    }
+
+    @Override
+    public Response<AiMessage> generate(List<ChatMessage> messages) {
+        String key = isCacheable(messages) ? PromptKey.of(modelFingerprint, messages) : null;
+        if (key == null) {
+            return delegate.generate(messages);
+        }
+
+        CachedResponse cached = lookup(key);
+        if (cached != null) {
+            log.debug("LLM cache hit [{}] {}", describeCaller(), key);
+            return Response.from(AiMessage.from(cached.text()), null, cached.finishReason());
+        }
+
+        Response<AiMessage> response = delegate.generate(messages);
+        // Only complete text answers are reusable (truncated or tool-call responses are not)
+        if (response != null && response.content() != null && response.content().text() != null
+                && (response.finishReason() == null || response.finishReason() == FinishReason.STOP)) {
+            store(key, new CachedResponse(response.content().text(), response.finishReason(), System.currentTimeMillis()));
+        }
+        return response;
+    }
+
+    private boolean isCacheable(List<ChatMessage> messages) {
+        AgentContext.AgentCall call = AgentContext.current();
+        if (call != null && call.matches(disabledAgents)) {
+            return false;
+        }
+        // Multimodal prompts (e.g. uploaded images) are effectively unique; keeping them would only waste memory
+        return PromptKey.isTextOnly(messages);
+    }
+
+    private CachedResponse lookup(String key) {
+        synchronized (this) {
+            CachedResponse entry = entries.get(key);
+            if (entry != null) {
+                if (!isExpired(entry)) {
+                    return entry;
+                }
+                removeEntry(key);
+            }
+        }
+
+        CachedResponse fromDisk = readFromDisk(key);
+        if (fromDisk != null) {
+            putInMemory(key, fromDisk);
+        }
+        return fromDisk;
+    }
+
+    private void store(String key, CachedResponse entry) {
+        if (entry.estimatedBytes() > maxEntryBytes) {
+            return;
+        }
+        putInMemory(key, entry);
+        writeToDisk(key, entry);
+    }
+
+    private synchronized void putInMemory(String key, CachedResponse entry) {
+        if (entry.estimatedBytes() > maxEntryBytes) {
+            return;
+        }
+        removeEntry(key);
+        entries.put(key, entry);
+        currentBytes += entry.estimatedBytes();
+
+        // Evict least-recently-used entries until we are back under budget
+        Iterator<Map.Entry<String, CachedResponse>> it = entries.entrySet().iterator();
+        while (currentBytes > maxBytes && it.hasNext()) {
+            Map.Entry<String, CachedResponse> eldest = it.next();
+            currentBytes -= eldest.getValue().estimatedBytes();
+            it.remove();
+        }
+    }
+
+    private void removeEntry(String key) {
+        CachedResponse removed = entries.remove(key);
+        if (removed != null) {
+            currentBytes -= removed.estimatedBytes();
+        }
+    }
+
+    private boolean isExpired(CachedResponse entry) {
+        return System.currentTimeMillis() - entry.createdAt() > ttl.toMillis();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long retainedBytes() {
+        return currentBytes;
+    }
+
+    public long diskBytes() {
+        synchronized (diskIndex) {
+            return diskBytes;
+        }
+    }
+
+    /**
+     * Stops the disk sweep (called by Spring when this is the outermost model bean).
+     */
+    public void close() {
+        if (diskSweeper != null) {
+            diskSweeper.shutdownNow();
+        }
+    }
+
+    // ---------------------------------------------------------
+    // Optional disk tier
+    // ---------------------------------------------------------
+
+    private ScheduledExecutorService startDiskSweeper(Duration interval) {
+        try {
+            Files.createDirectories(diskDir);
+        } catch (IOException e) {
+            log.warn("LLM cache directory {} is not usable: {}", diskDir, e.getMessage());
+        }
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("llm-cache-disk-sweeper-");
+        threadFactory.setDaemon(true);
+        ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        sweeper.execute(this::indexDiskDir);
+        long sweepMillis = Math.max(1, interval.toMillis());
+        sweeper.scheduleWithFixedDelay(this::expireDiskEntries, sweepMillis, sweepMillis, TimeUnit.MILLISECONDS);
+        return sweeper;
+    }
+
+    // Startup: index the files left by the previous run from their attributes (oldest first), then apply TTL and budget
+    private void indexDiskDir() {
+        List<Map.Entry<String, DiskEntry>> found = new ArrayList<>();
+        try (Stream<Path> files = Files.list(diskDir)) {
+            files.forEach(file -> {
+                String name = file.getFileName().toString();
+                if (name.endsWith(".tmp")) {
+                    deleteQuietly(file); // Left behind by a crash between write and rename
+                } else if (name.endsWith(".json")) {
+                    try {
+                        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                        found.add(Map.entry(name.substring(0, name.length() - ".json".length()),
+                                new DiskEntry(attributes.size(), attributes.lastModifiedTime().toMillis())));
+                    } catch (IOException ignored) {
+                    }
+                }
+            });
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to index LLM cache directory {}: {}", diskDir, e.getMessage());
+            return;
+        }
+        found.sort(Comparator.comparingLong(entry -> entry.getValue().writtenAt()));
+
+        List<String> evicted;
+        synchronized (diskIndex) {
+            // Files written since startup are already indexed (and newer)
+            LinkedHashMap<String, DiskEntry> written = new LinkedHashMap<>(diskIndex);
+            diskIndex.clear();
+            diskBytes = 0;
+            for (Map.Entry<String, DiskEntry> entry : found) {
+                if (!written.containsKey(entry.getKey())) {
+                    indexFile(entry.getKey(), entry.getValue());
+                }
+            }
+            written.forEach(this::indexFile);
+            evicted = evictDiskEntries();
+        }
+        evicted.forEach(key -> deleteQuietly(diskDir.resolve(key + ".json")));
+        expireDiskEntries();
+    }
+
+    private void expireDiskEntries() {
+        try {
+            long cutoff = System.currentTimeMillis() - ttl.toMillis();
+            List<String> expired = new ArrayList<>();
+            synchronized (diskIndex) {
+                Iterator<Map.Entry<String, DiskEntry>> it = diskIndex.entrySet().iterator();
+                while (it.hasNext()) {
+                    Map.Entry<String, DiskEntry> oldest = it.next();
+                    if (oldest.getValue().writtenAt() >= cutoff) {
+                        break; // Write order: everything after is newer
+                    }
+                    diskBytes -= oldest.getValue().bytes();
+                    it.remove();
+                    expired.add(oldest.getKey());
+                }
+            }
+            expired.forEach(key -> deleteQuietly(diskDir.resolve(key + ".json")));
+        } catch (RuntimeException e) {
+            log.warn("LLM cache disk sweep failed", e);
+        }
+    }
+
+    // Caller holds diskIndex
+    private void indexFile(String key, DiskEntry entry) {
+        DiskEntry previous = diskIndex.remove(key);
+        if (previous != null) {
+            diskBytes -= previous.bytes();
+        }
+        diskIndex.put(key, entry);
+        diskBytes += entry.bytes();
+    }
+
+    // Caller holds diskIndex; returns the keys whose files should be deleted
+    private List<String> evictDiskEntries() {
+        List<String> evicted = new ArrayList<>();
+        Iterator<Map.Entry<String, DiskEntry>> it = diskIndex.entrySet().iterator();
+        while (diskBytes > maxDiskBytes && it.hasNext()) {
+            Map.Entry<String, DiskEntry> oldest = it.next();
+            diskBytes -= oldest.getValue().bytes();
+            it.remove();
+            evicted.add(oldest.getKey());
+        }
+        return evicted;
+    }
+
+    private CachedResponse readFromDisk(String key) {
+        if (diskDir == null) {
+            return null;
+        }
+        Path file = diskDir.resolve(key + ".json");
+        if (!Files.exists(file)) {
+            return null;
+        }
+        CachedResponse entry = readFile(file);
+        if (entry == null || isExpired(entry)) {
+            synchronized (diskIndex) {
+                DiskEntry removed = diskIndex.remove(key);
+                if (removed != null) {
+                    diskBytes -= removed.bytes();
+                }
+            }
+            deleteQuietly(file);
+            return null;
+        }
+        return entry;
+    }
+
+    private CachedResponse readFile(Path file) {
+        try {
+            return objectMapper.readValue(file.toFile(), CachedResponse.class);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private void writeToDisk(String key, CachedResponse entry) {
+        if (diskDir == null) {
+            return;
+        }
+        Path tmp = null;
+        try {
+            // Write-then-rename so a crash never leaves a half-written entry behind
+            tmp = Files.createTempFile(diskDir, key, ".tmp");
+            objectMapper.writeValue(tmp.toFile(), entry);
+            Path file = diskDir.resolve(key + ".json");
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            tmp = null;
+
+            List<String> evicted;
+            synchronized (diskIndex) {
+                indexFile(key, new DiskEntry(Files.size(file), entry.createdAt()));
+                evicted = evictDiskEntries();
+            }
+            evicted.forEach(oldKey -> deleteQuietly(diskDir.resolve(oldKey + ".json")));
+        } catch (IOException e) {
+            log.warn("Failed to persist LLM cache entry {}: {}", key, e.getMessage());
+        } finally {
+            if (tmp != null) {
+                deleteQuietly(tmp);
+            }
+        }
+    }
+
+    private void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static String describeCaller() {
+        AgentContext.AgentCall call = AgentContext.current();
+        return call != null ? call.qualifiedName() : "direct";
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.aicopilot.llm;
+
+import dev.langchain4j.agent.tool.ToolSpecification;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.output.Response;
+
+import java.util.List;
+
+/**
+ * Base class for ChatLanguageModel decorators stacked in front of the provider model.
+ * Subclasses intercept the plain message-list call used by every @AiService agent;
+ * tool-calling requests are passed straight through to the delegate.
+ */
+public abstract class ChatModelDecorator implements ChatLanguageModel {
+
+    protected final ChatLanguageModel delegate;
+
+    protected ChatModelDecorator(ChatLanguageModel delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public abstract Response<AiMessage> generate(List<ChatMessage> messages);
+
+    @Override
+    public Response<AiMessage> generate(List<ChatMessage> messages, List<ToolSpecification> toolSpecifications) {
+        return delegate.generate(messages, toolSpecifications);
+    }
+
+    @Override
+    public Response<AiMessage> generate(List<ChatMessage> messages, ToolSpecification toolSpecification) {
+        return delegate.generate(messages, toolSpecification);
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.aicopilot.llm;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.output.Response;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Single-flight layer: concurrent identical requests share one in-flight provider call.
+ * The first caller (leader) performs the call; followers block on the leader's future and receive
+ * the same response, or the same exception if the leader fails.
+ * A leader that is interrupted (its job was cancelled) only fails itself: its followers elect a new leader
+ * among themselves and issue the call again.
+ */
+@Slf4j
+public class CoalescingChatLanguageModel extends ChatModelDecorator {
+
+    private final String modelFingerprint;
+    private final Map<String, CompletableFuture<Response<AiMessage>>> inFlight = new ConcurrentHashMap<>();
+
+    private final Counter leaderCalls;
+    private final Counter coalescedCalls;
+    private final Counter leaderFailures;
+    private final Counter leaderHandoffs;
+
+    // Completes the future of an interrupted leader; waiting followers retry instead of failing with it
+    private static final class LeaderInterrupted extends RuntimeException {
+        LeaderInterrupted() {
+            super("Coalesced LLM request leader was interrupted", null, false, false);
+        }
+    }
+
+    public CoalescingChatLanguageModel(ChatLanguageModel delegate, String modelFingerprint, MeterRegistry meterRegistry) {
+        super(delegate);
+        this.modelFingerprint = modelFingerprint;
+        this.leaderCalls = meterRegistry.counter("copilot.llm.coalesce.calls", "role", "leader");
+        this.coalescedCalls = meterRegistry.counter("copilot.llm.coalesce.calls", "role", "coalesced");
+        this.leaderFailures = meterRegistry.counter("copilot.llm.coalesce.leader.failures");
+        this.leaderHandoffs = meterRegistry.counter("copilot.llm.coalesce.leader.handoffs");
+        meterRegistry.gauge("copilot.llm.coalesce.inflight", inFlight, Map::size);
+    }
+
+    @Override
+    public Response<AiMessage> generate(List<ChatMessage> messages) {
+        String key = PromptKey.of(modelFingerprint, messages);
+
+        boolean coalesced = false;
+        while (true) {
+            CompletableFuture<Response<AiMessage>> mine = new CompletableFuture<>();
+            CompletableFuture<Response<AiMessage>> existing = inFlight.putIfAbsent(key, mine);
+            if (existing != null) {
+                if (!coalesced) {
+                    coalesced = true;
+                    coalescedCalls.increment();
+                    log.debug("Coalesced identical in-flight LLM request {}", key);
+                }
+                try {
+                    return await(existing);
+                } catch (LeaderInterrupted e) {
+                    continue; // The leader's job was cancelled; race for the leader role again
+                }
+            }
+
+            leaderCalls.increment();
+            try {
+                Response<AiMessage> response = delegate.generate(messages);
+                mine.complete(response);
+                return response;
+            } catch (RuntimeException | Error e) {
+                if (RoutingChatLanguageModel.isInterrupt(e)) {
+                    // Our own cancellation must not fail the followers: hand the call over to one of them
+                    leaderHandoffs.increment();
+                    inFlight.remove(key, mine);
+                    mine.completeExceptionally(new LeaderInterrupted());
+                } else {
+                    leaderFailures.increment();
+                    mine.completeExceptionally(e);
+                }
+                throw e;
+            } finally {
+                // Remove only our own future; later identical requests start a fresh call
+                inFlight.remove(key, mine);
+            }
+        }
+    }
+
+    private Response<AiMessage> await(CompletableFuture<Response<AiMessage>> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for coalesced LLM request", e);
+        } catch (ExecutionException e) {
+            // Rethrow the leader's failure as-is so waiters see the same error type as the leader
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtimeException) { // Including LeaderInterrupted
+                throw runtimeException;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException("Coalesced LLM request failed", cause);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.aicopilot.llm;
+
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * Incremental parser for streamed JSON objects.
+ * Tokens are fed as they arrive; whenever an element of one of the watched top-level arrays
+ * (e.g. "activities", "entities") is complete, its raw JSON text is emitted to the listener.
+ * Anything outside the root object (markdown fences, chatter) is ignored.
+ */
+public class IncrementalJsonParser {
+
+    private final Set<String> watchedArrays;
+    private final BiConsumer<String, String> onElement; // (arrayField, elementJson)
+
+    private final StringBuilder buffer = new StringBuilder();
+    private int depth = 0;
+    private boolean inString = false;
+    private boolean escaped = false;
+
+    // Root-level key tracking (depth 1)
+    private boolean expectingKey = false;
+    private int keyStart = -1;
+    private String lastKey = null;
+
+    // Current watched array (entered at depth 2) and element boundaries
+    private String activeArray = null;
+    private int elementStart = -1;
+
+    public IncrementalJsonParser(Set<String> watchedArrays, BiConsumer<String, String> onElement) {
+        this.watchedArrays = watchedArrays;
+        this.onElement = onElement;
+    }
+
+    public void feed(String token) {
+        for (int i = 0; i < token.length(); i++) {
+            buffer.append(token.charAt(i));
+            consume(buffer.length() - 1);
+        }
+    }
+
+    /**
+     * @return everything received so far (used for the final full parse).
+     */
+    public String text() {
+        return buffer.toString();
+    }
+
+    private void consume(int pos) {
+        char c = buffer.charAt(pos);
+
+        if (inString) {
+            if (escaped) {
+                escaped = false;
+            } else if (c == '\\') {
+                escaped = true;
+            } else if (c == '"') {
+                inString = false;
+                if (keyStart >= 0) {
+                    lastKey = buffer.substring(keyStart, pos);
+                    keyStart = -1;
+                }
+            }
+            return;
+        }
+
+        switch (c) {
+            case '"' -> {
+                inString = true;
+                if (depth == 1 && expectingKey) {
+                    keyStart = pos + 1;
+                    expectingKey = false;
+                }
+            }
+            case '{', '[' -> {
+                if (depth == 0 && c != '{') {
+                    return; // Not inside the root object yet
+                }
+                if (depth == 1 && c == '[' && lastKey != null && watchedArrays.contains(lastKey)) {
+                    activeArray = lastKey;
+                }
+                if (depth == 2 && activeArray != null) {
+                    elementStart = pos;
+                }
+                depth++;
+                if (depth == 1) {
+                    expectingKey = true;
+                }
+            }
+            case '}', ']' -> {
+                if (depth == 0) {
+                    return;
+                }
+                depth--;
+                if (depth == 2 && activeArray != null && elementStart >= 0) {
+                    onElement.accept(activeArray, buffer.substring(elementStart, pos + 1));
+                    elementStart = -1;
+                } else if (depth == 1 && activeArray != null) {
+                    activeArray = null;
+                }
+            }
+            case ',' -> {
+                if (depth == 1) {
+                    expectingKey = true;
+                }
+            }
+            default -> {
+                // Scalars and whitespace carry no structure
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.aicopilot.llm;
+
+import dev.langchain4j.data.image.Image;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.Content;
+import dev.langchain4j.data.message.ImageContent;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.TextContent;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Content address of a model request: SHA-256 over the model parameters, message roles and normalized content.
+ * Shared by the response cache and the request coalescer so both agree on what "the same prompt" means.
+ * Every field is length-prefixed and tagged, so text that contains separator bytes cannot shift content across
+ * field or message boundaries.
+ */
+final class PromptKey {
+
+    private PromptKey() {
+    }
+
+    static String of(String modelFingerprint, List<ChatMessage> messages) {
+        MessageDigest digest = sha256();
+        update(digest, modelFingerprint);
+        for (ChatMessage message : messages) {
+            digest.update((byte) 'M');
+            update(digest, message.type().name());
+            if (message instanceof UserMessage userMessage) {
+                for (Content content : userMessage.contents()) {
+                    if (content instanceof TextContent textContent) {
+                        digest.update((byte) 'T');
+                        update(digest, normalize(textContent.text()));
+                    } else if (content instanceof ImageContent imageContent) {
+                        digest.update((byte) 'I');
+                        updateImage(digest, imageContent.image());
+                    } else {
+                        digest.update((byte) 'O');
+                        update(digest, content.toString());
+                    }
+                }
+            } else {
+                String text = text(message);
+                digest.update((byte) 'T');
+                update(digest, normalize(text != null ? text : ""));
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    static boolean isTextOnly(List<ChatMessage> messages) {
+        for (ChatMessage message : messages) {
+            if (message instanceof UserMessage userMessage) {
+                for (Content content : userMessage.contents()) {
+                    if (!(content instanceof TextContent)) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Text of a non-user message through its typed accessor (ChatMessage.text() is deprecated); null if it has none,
+     * e.g. an AiMessage that only requests tool calls.
+     */
+    static String text(ChatMessage message) {
+        if (message instanceof SystemMessage systemMessage) {
+            return systemMessage.text();
+        } else if (message instanceof AiMessage aiMessage) {
+            return aiMessage.text();
+        } else if (message instanceof ToolExecutionResultMessage toolResult) {
+            return toolResult.text();
+        }
+        return null;
+    }
+
+    // Line endings and trailing whitespace differ between clients but never change the meaning of a prompt
+    static String normalize(String text) {
+        String[] lines = text.replace("\r\n", "\n").split("\n", -1);
+        StringBuilder sb = new StringBuilder(text.length());
+        for (String line : lines) {
+            sb.append(line.stripTrailing()).append('\n');
+        }
+        return sb.toString().strip();
+    }
+
+    private static void updateImage(MessageDigest digest, Image image) {
+        update(digest, image.mimeType());
+        update(digest, image.url() != null ? image.url().toString() : null);
+        update(digest, image.base64Data());
+    }
+
+    // Length prefix (-1 = null), then the UTF-8 bytes
+    private static void update(MessageDigest digest, String value) {
+        byte[] bytes = value != null ? value.getBytes(StandardCharsets.UTF_8) : new byte[0];
+        int length = value != null ? bytes.length : -1;
+        digest.update(new byte[]{(byte) (length >>> 24), (byte) (length >>> 16), (byte) (length >>> 8), (byte) length});
+        digest.update(bytes);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.aicopilot.llm;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Caps the number of in-flight calls to one LLM provider (fair semaphore).
+ * With virtual-thread job execution, thousands of jobs can wait here cheaply instead of
+ * all hitting the provider at once; waiting callers are served in arrival order.
+ */
+public class ProviderBulkhead {
+
+    private final String provider;
+    private final int maxConcurrency;
+    private final Duration acquireTimeout;
+    private final Semaphore permits;
+
+    public ProviderBulkhead(String provider, int maxConcurrency, Duration acquireTimeout, MeterRegistry meterRegistry) {
+        this.provider = provider;
+        this.maxConcurrency = maxConcurrency;
+        this.acquireTimeout = acquireTimeout;
+        this.permits = new Semaphore(maxConcurrency, true);
+
+        meterRegistry.gauge("copilot.llm.bulkhead.active", Tags.of("provider", provider),
+                permits, p -> maxConcurrency - p.availablePermits());
+        meterRegistry.gauge("copilot.llm.bulkhead.waiting", Tags.of("provider", provider),
+                permits, Semaphore::getQueueLength);
+    }
+
+    public <T> T call(Supplier<T> action) {
+        acquire();
+        try {
+            return action.get();
+        } finally {
+            release();
+        }
+    }
+
+    /**
+     * For asynchronous (streaming) calls: the caller must {@link #release()} when the call completes.
+     */
+    public void acquire() {
+        try {
+            if (!permits.tryAcquire(acquireTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                throw new ProviderCapacityException(String.format(
+                        "LLM provider '%s' is saturated (%d calls in flight, waited %ds)",
+                        provider, maxConcurrency, acquireTimeout.toSeconds()));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for LLM provider '" + provider + "'", e);
+        }
+    }
+
+    public void release() {
+        permits.release();
+    }
+}
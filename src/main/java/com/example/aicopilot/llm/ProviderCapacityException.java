@@ -0,0 +1,12 @@
+package com.example.aicopilot.llm;
+
+/**
+ * No local capacity for another provider call ({@link ProviderBulkhead} or {@link AdaptiveRateLimiter} wait ran out).
+ * The provider itself was never asked, so this says nothing about the health of the model.
+ */
+public class ProviderCapacityException extends IllegalStateException {
+
+    public ProviderCapacityException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.aicopilot.llm;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.Content;
+import dev.langchain4j.data.message.TextContent;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.output.Response;
+import dev.langchain4j.model.output.TokenUsage;
+
+import java.util.List;
+
+/**
+ * Sends every call through the provider's {@link AdaptiveRateLimiter}, prioritized by the calling agent.
+ */
+public class RateLimitedChatLanguageModel extends ChatModelDecorator {
+
+    private final AdaptiveRateLimiter limiter;
+    private final int expectedOutputTokens;
+
+    public RateLimitedChatLanguageModel(ChatLanguageModel delegate, AdaptiveRateLimiter limiter, int expectedOutputTokens) {
+        super(delegate);
+        this.limiter = limiter;
+        this.expectedOutputTokens = expectedOutputTokens;
+    }
+
+    @Override
+    public Response<AiMessage> generate(List<ChatMessage> messages) {
+        AdaptiveRateLimiter.Permit permit = limiter.acquire(
+                estimateTokens(messages, expectedOutputTokens), AgentContext.current());
+        try {
+            Response<AiMessage> response = delegate.generate(messages);
+            permit.release(totalTokens(response.tokenUsage()), null);
+            return response;
+        } catch (RuntimeException | Error e) {
+            permit.release(null, e);
+            throw e;
+        }
+    }
+
+    // Vision input is billed per image tile; a high-detail page is roughly this many tokens
+    private static final long TOKENS_PER_IMAGE = 1000;
+
+    /**
+     * Prompt size (~4 characters per token for English/JSON) plus the expected completion.
+     */
+    public static long estimateTokens(List<ChatMessage> messages, int expectedOutputTokens) {
+        long chars = 0;
+        long images = 0;
+        for (ChatMessage message : messages) {
+            if (message instanceof UserMessage userMessage) {
+                for (Content content : userMessage.contents()) {
+                    if (content instanceof TextContent textContent) {
+                        chars += textContent.text().length();
+                    } else {
+                        images++;
+                    }
+                }
+            } else if (PromptKey.text(message) != null) {
+                chars += PromptKey.text(message).length();
+            }
+        }
+        return chars / 4 + images * TOKENS_PER_IMAGE + expectedOutputTokens;
+    }
+
+    public static Integer totalTokens(TokenUsage usage) {
+        return usage != null ? usage.totalTokenCount() : null;
+    }
+}
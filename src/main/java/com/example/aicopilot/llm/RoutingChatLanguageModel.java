@@ -0,0 +1,360 @@
+package com.example.aicopilot.llm;
+
+import dev.langchain4j.agent.tool.ToolSpecification;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.output.Response;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Routes each call to a named model pool chosen by the calling agent (Agent.method binding first, then Agent).
+ * A pool is an ordered list of candidates (preference order). The first candidate that
+ * - accepts the estimated input size (optional per-candidate max input tokens), and
+ * - is healthy (rolling error rate and p95 latency under the thresholds)
+ * is used; a call that fails on one candidate is retried once on the next eligible one.
+ * A candidate that breaches a threshold is skipped for a cool-down, then gets live traffic again.
+ * Each attempt passes the candidate's own admission (bulkhead/rate limiter), so a failover takes a new permit;
+ * interrupts and local capacity errors are rethrown as-is and never fail over.
+ */
+@Slf4j
+public class RoutingChatLanguageModel implements ChatLanguageModel {
+
+    public static final String DEFAULT_POOL = "default";
+
+    private final Map<String, List<Candidate>> pools;
+    private final Map<String, String> bindings; // "Agent" or "Agent.method" -> pool
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * One model in a pool, with its rolling health window.
+     */
+    public static final class Candidate {
+        private final String model;
+        private final long maxInputTokens; // Long.MAX_VALUE = any size
+        private final ChatLanguageModel chatModel;
+        private final RollingStats stats;
+
+        public Candidate(String model, long maxInputTokens, ChatLanguageModel chatModel, RollingStats stats, MeterRegistry meterRegistry) {
+            this(model, maxInputTokens, chatModel, UnaryOperator.identity(), stats, meterRegistry);
+        }
+
+        /**
+         * @param admission wraps the provider model per attempt (bulkhead, rate limiter); only the provider call
+         *                  itself counts towards the health window, never the wait for a permit
+         */
+        public Candidate(String model, long maxInputTokens, ChatLanguageModel chatModel,
+                         UnaryOperator<ChatLanguageModel> admission, RollingStats stats, MeterRegistry meterRegistry) {
+            this(model, maxInputTokens,
+                    admission.apply(new Measured(chatModel, stats, meterRegistry.timer("copilot.llm.route.latency", "model", model))),
+                    stats);
+            meterRegistry.gauge("copilot.llm.route.p95", Tags.of("model", model), stats, RollingStats::p95Millis);
+            meterRegistry.gauge("copilot.llm.route.error.rate", Tags.of("model", model), stats, RollingStats::errorRate);
+        }
+
+        private Candidate(String model, long maxInputTokens, ChatLanguageModel chatModel, RollingStats stats) {
+            this.model = model;
+            this.maxInputTokens = maxInputTokens;
+            this.chatModel = chatModel;
+            this.stats = stats;
+        }
+
+        /**
+         * Same model (client, health window, metrics) with a pool-specific input size limit.
+         */
+        public Candidate withMaxInputTokens(long limit) {
+            return new Candidate(model, limit, chatModel, stats);
+        }
+    }
+
+    public RoutingChatLanguageModel(Map<String, List<Candidate>> pools, Map<String, String> bindings, MeterRegistry meterRegistry) {
+        if (!pools.containsKey(DEFAULT_POOL)) {
+            throw new IllegalArgumentException("Model routing needs a '" + DEFAULT_POOL + "' pool");
+        }
+        this.pools = pools;
+        this.bindings = bindings;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Response<AiMessage> generate(List<ChatMessage> messages) {
+        return route(messages, model -> model.generate(messages));
+    }
+
+    @Override
+    public Response<AiMessage> generate(List<ChatMessage> messages, List<ToolSpecification> toolSpecifications) {
+        return route(messages, model -> model.generate(messages, toolSpecifications));
+    }
+
+    @Override
+    public Response<AiMessage> generate(List<ChatMessage> messages, ToolSpecification toolSpecification) {
+        return route(messages, model -> model.generate(messages, toolSpecification));
+    }
+
+    private Response<AiMessage> route(List<ChatMessage> messages, Function<ChatLanguageModel, Response<AiMessage>> call) {
+        String pool = poolFor(AgentContext.current());
+        List<Candidate> candidates = pools.getOrDefault(pool, pools.get(DEFAULT_POOL));
+        long inputTokens = RateLimitedChatLanguageModel.estimateTokens(messages, 0);
+
+        List<Candidate> order = new ArrayList<>(2);
+        String reason = select(candidates, inputTokens, order);
+
+        RuntimeException lastError = null;
+        for (int i = 0; i < order.size(); i++) {
+            Candidate candidate = order.get(i);
+            meterRegistry.counter("copilot.llm.route.decisions",
+                    "pool", pool, "model", candidate.model, "reason", i == 0 ? reason : "failover").increment();
+            try {
+                return call.apply(candidate.chatModel);
+            } catch (RuntimeException e) {
+                if (isInterrupt(e)) {
+                    // The caller gave up (job cancelled): another model would only be asked in vain
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+                if (e instanceof ProviderCapacityException) {
+                    throw e; // Every candidate shares the same provider limits
+                }
+                lastError = e;
+                if (i + 1 < order.size()) {
+                    log.warn("Model {} failed for pool {}, failing over to {}: {}",
+                            candidate.model, pool, order.get(i + 1).model, e.getMessage());
+                }
+            }
+        }
+        throw lastError;
+    }
+
+    // Not InterruptedIOException: HTTP clients use it (and SocketTimeoutException) for plain timeouts
+    static boolean isInterrupt(Throwable error) {
+        if (Thread.currentThread().isInterrupted()) {
+            return true;
+        }
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof InterruptedException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Innermost wrapper of a candidate: records the provider call (inside any admission) in the health window.
+     */
+    private static final class Measured implements ChatLanguageModel {
+        private final ChatLanguageModel delegate;
+        private final RollingStats stats;
+        private final Timer latency;
+
+        Measured(ChatLanguageModel delegate, RollingStats stats, Timer latency) {
+            this.delegate = delegate;
+            this.stats = stats;
+            this.latency = latency;
+        }
+
+        @Override
+        public Response<AiMessage> generate(List<ChatMessage> messages) {
+            return measure(() -> delegate.generate(messages));
+        }
+
+        @Override
+        public Response<AiMessage> generate(List<ChatMessage> messages, List<ToolSpecification> toolSpecifications) {
+            return measure(() -> delegate.generate(messages, toolSpecifications));
+        }
+
+        @Override
+        public Response<AiMessage> generate(List<ChatMessage> messages, ToolSpecification toolSpecification) {
+            return measure(() -> delegate.generate(messages, toolSpecification));
+        }
+
+        private Response<AiMessage> measure(Supplier<Response<AiMessage>> call) {
+            long start = System.nanoTime();
+            try {
+                Response<AiMessage> response = call.get();
+                long elapsed = System.nanoTime() - start;
+                latency.record(elapsed, TimeUnit.NANOSECONDS);
+                stats.record(elapsed / 1_000_000, true);
+                return response;
+            } catch (RuntimeException e) {
+                if (!isInterrupt(e)) {
+                    stats.record((System.nanoTime() - start) / 1_000_000, false);
+                }
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Fills {@code order} with the chosen candidate and (if any) one failover target.
+     * @return why the first candidate was chosen (metric tag)
+     */
+    private String select(List<Candidate> candidates, long inputTokens, List<Candidate> order) {
+        Candidate firstBySize = null;
+        boolean skippedForSize = false;
+        boolean skippedForHealth = false;
+
+        for (Candidate candidate : candidates) {
+            if (inputTokens > candidate.maxInputTokens) {
+                skippedForSize = true;
+                continue;
+            }
+            if (firstBySize == null) {
+                firstBySize = candidate;
+            }
+            if (!candidate.stats.isHealthy()) {
+                skippedForHealth = true;
+                continue;
+            }
+            order.add(candidate);
+            if (order.size() == 2) {
+                break; // Chosen model + one failover target
+            }
+        }
+
+        if (order.isEmpty()) {
+            // Nothing healthy (or nothing large enough): fall back to the best size match, else the last resort
+            order.add(firstBySize != null ? firstBySize : candidates.get(candidates.size() - 1));
+            return "degraded";
+        }
+        if (skippedForHealth && order.get(0) != firstBySize) {
+            return "fallback";
+        }
+        return skippedForSize ? "size" : "primary";
+    }
+
+    private String poolFor(AgentContext.AgentCall call) {
+        if (call == null) {
+            return DEFAULT_POOL;
+        }
+        String pool = bindings.get(call.qualifiedName());
+        if (pool == null) {
+            pool = bindings.get(call.agent());
+        }
+        return pool != null ? pool : DEFAULT_POOL;
+    }
+
+    // ------------------------------------------------------------------
+    // Configuration parsing
+    // ------------------------------------------------------------------
+
+    /**
+     * Parses "fast=gpt-4o-mini:8000,gpt-4o;accurate=gpt-4o,gpt-4o-mini" into pool -> [(model, maxInputTokens)].
+     */
+    public static Map<String, List<Map.Entry<String, Long>>> parsePools(String spec) {
+        Map<String, List<Map.Entry<String, Long>>> pools = new LinkedHashMap<>();
+        for (String pool : spec.split(";")) {
+            if (pool.isBlank()) {
+                continue;
+            }
+            String[] nameAndModels = pool.split("=", 2);
+            if (nameAndModels.length != 2) {
+                throw new IllegalArgumentException("Invalid model pool definition: " + pool);
+            }
+            List<Map.Entry<String, Long>> models = new ArrayList<>();
+            for (String model : nameAndModels[1].split(",")) {
+                String[] parts = model.trim().split(":", 2);
+                long maxInput = parts.length == 2 ? Long.parseLong(parts[1].trim()) : Long.MAX_VALUE;
+                models.add(Map.entry(parts[0].trim(), maxInput));
+            }
+            pools.put(nameAndModels[0].trim(), models);
+        }
+        return pools;
+    }
+
+    /**
+     * Parses "SuggestionAgent=fast,ProcessArchitect.transformToMap=accurate".
+     */
+    public static Map<String, String> parseBindings(String spec) {
+        Map<String, String> bindings = new LinkedHashMap<>();
+        Arrays.stream(spec.split(","))
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .forEach(binding -> {
+                    String[] parts = binding.split("=", 2);
+                    if (parts.length != 2) {
+                        throw new IllegalArgumentException("Invalid model binding: " + binding);
+                    }
+                    bindings.put(parts[0].trim(), parts[1].trim());
+                });
+        return bindings;
+    }
+
+    /**
+     * Rolling window of the last N outcomes of one model (latency + success), with a simple breaker:
+     * once the error rate or p95 breaches its threshold the model is skipped for a cool-down,
+     * after which the window restarts and live traffic decides again.
+     */
+    public static final class RollingStats {
+        private static final int MIN_SAMPLES = 10;
+
+        private final long[] latencies;
+        private final boolean[] successes;
+        private final double maxErrorRate;
+        private final long maxP95Millis;
+        private final long coolDownMillis;
+        private int count;
+        private int next;
+        private volatile long unhealthyUntil;
+
+        public RollingStats(int window, double maxErrorRate, Duration maxP95, Duration coolDown) {
+            this.latencies = new long[window];
+            this.successes = new boolean[window];
+            this.maxErrorRate = maxErrorRate;
+            this.maxP95Millis = maxP95.toMillis();
+            this.coolDownMillis = coolDown.toMillis();
+        }
+
+        synchronized void record(long latencyMillis, boolean success) {
+            latencies[next] = latencyMillis;
+            successes[next] = success;
+            next = (next + 1) % latencies.length;
+            count = Math.min(count + 1, latencies.length);
+
+            if (count >= MIN_SAMPLES && (errorRate() > maxErrorRate || p95Millis() > maxP95Millis)) {
+                unhealthyUntil = System.currentTimeMillis() + coolDownMillis;
+                count = 0;
+                next = 0;
+            }
+        }
+
+        boolean isHealthy() {
+            return System.currentTimeMillis() >= unhealthyUntil;
+        }
+
+        synchronized double p95Millis() {
+            if (count == 0) {
+                return 0;
+            }
+            long[] sorted = Arrays.copyOf(latencies, count);
+            Arrays.sort(sorted);
+            return sorted[(int) Math.ceil(0.95 * count) - 1];
+        }
+
+        synchronized double errorRate() {
+            if (count == 0) {
+                return 0;
+            }
+            int failures = 0;
+            for (int i = 0; i < count; i++) {
+                if (!successes[i]) {
+                    failures++;
+                }
+            }
+            return failures / (double) count;
+        }
+    }
+}
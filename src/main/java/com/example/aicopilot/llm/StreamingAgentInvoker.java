@@ -0,0 +1,175 @@
+package com.example.aicopilot.llm;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.StreamingResponseHandler;
+import dev.langchain4j.model.chat.StreamingChatLanguageModel;
+import dev.langchain4j.model.input.PromptTemplate;
+import dev.langchain4j.model.output.Response;
+import dev.langchain4j.service.output.ServiceOutputParser;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+
+/**
+ * Invokes an @AiService agent method over the streaming model.
+ * The prompts are rendered from the method's own @SystemMessage / @UserMessage annotations (plus the same
+ * output-format instructions AiServices appends), so the streaming path never drifts from the blocking one.
+ * If the caller stops waiting (timeout or interrupt), the provider stream is abandoned: its remaining tokens are
+ * dropped without reaching onElement, while the bulkhead and rate-limit permits stay held until the provider itself
+ * completes or fails, since the HTTP stream keeps using provider capacity until then.
+ */
+public class StreamingAgentInvoker {
+
+    private final StreamingChatLanguageModel streamingModel;
+    private final ServiceOutputParser outputParser = new ServiceOutputParser();
+    private final Duration timeout;
+    private final ProviderBulkhead bulkhead; // Shared with the blocking model of the same provider
+    private final AdaptiveRateLimiter rateLimiter; // Same provider budgets as the blocking model; null = unlimited
+    private final int expectedOutputTokens;
+
+    public StreamingAgentInvoker(StreamingChatLanguageModel streamingModel, Duration timeout, ProviderBulkhead bulkhead,
+                                 AdaptiveRateLimiter rateLimiter, int expectedOutputTokens) {
+        this.streamingModel = streamingModel;
+        this.timeout = timeout;
+        this.bulkhead = bulkhead;
+        this.rateLimiter = rateLimiter;
+        this.expectedOutputTokens = expectedOutputTokens;
+    }
+
+    /**
+     * @param agent         Agent interface (e.g. ProcessArchitect.class)
+     * @param methodName    Agent method whose prompts are used (e.g. "transformToMap")
+     * @param variables     Template variables keyed by their @V names
+     * @param watchedArrays Top-level array fields whose elements are emitted as soon as they are complete
+     * @param onElement     Receives (arrayField, elementJson) for every completed element
+     * @return The fully parsed response
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T invoke(Class<?> agent, String methodName, Map<String, Object> variables,
+                        Set<String> watchedArrays, BiConsumer<String, String> onElement) {
+        Method method = findMethod(agent, methodName);
+        List<ChatMessage> messages = renderMessages(method, variables);
+
+        AtomicBoolean abandoned = new AtomicBoolean();
+        IncrementalJsonParser parser = new IncrementalJsonParser(watchedArrays, (field, json) -> {
+            if (!abandoned.get()) {
+                onElement.accept(field, json);
+            }
+        });
+        CompletableFuture<Response<AiMessage>> provider = new CompletableFuture<>(); // Completed only by the stream
+        CompletableFuture<Response<AiMessage>> done = new CompletableFuture<>(); // The caller's wait
+        provider.whenComplete((response, error) -> {
+            if (error != null) {
+                done.completeExceptionally(error);
+            } else {
+                done.complete(response);
+            }
+        });
+
+        AgentContext.AgentCall call = new AgentContext.AgentCall(agent.getSimpleName(), methodName);
+        if (rateLimiter != null) {
+            AdaptiveRateLimiter.Permit permit = rateLimiter.acquire(
+                    RateLimitedChatLanguageModel.estimateTokens(messages, expectedOutputTokens), call);
+            provider.whenComplete((response, error) -> permit.release(
+                    response != null ? RateLimitedChatLanguageModel.totalTokens(response.tokenUsage()) : null, error));
+        }
+        try {
+            bulkhead.acquire();
+        } catch (RuntimeException e) {
+            provider.completeExceptionally(e); // Returns the rate-limit permit
+            throw e;
+        }
+        provider.whenComplete((response, error) -> bulkhead.release()); // Also runs if the stream never starts
+
+        AgentContext.AgentCall previous = AgentContext.enter(call);
+        try {
+            streamingModel.generate(messages, new StreamingResponseHandler<>() {
+                @Override
+                public void onNext(String token) {
+                    if (!abandoned.get()) {
+                        parser.feed(token);
+                    }
+                }
+
+                @Override
+                public void onComplete(Response<AiMessage> response) {
+                    provider.complete(response);
+                }
+
+                @Override
+                public void onError(Throwable error) {
+                    provider.completeExceptionally(error);
+                }
+            });
+        } catch (RuntimeException e) {
+            provider.completeExceptionally(e);
+            throw e;
+        } finally {
+            AgentContext.restore(previous);
+        }
+
+        Response<AiMessage> response = await(done, abandoned);
+        // Prefer the accumulated stream text; providers may omit the aggregated content on completion
+        String text = parser.text().isEmpty() && response.content() != null ? response.content().text() : parser.text();
+        return (T) outputParser.parse(Response.from(AiMessage.from(text)), method.getGenericReturnType());
+    }
+
+    private List<ChatMessage> renderMessages(Method method, Map<String, Object> variables) {
+        List<ChatMessage> messages = new ArrayList<>();
+
+        dev.langchain4j.service.SystemMessage system = method.getAnnotation(dev.langchain4j.service.SystemMessage.class);
+        if (system != null) {
+            String template = String.join(system.delimiter(), system.value());
+            messages.add(SystemMessage.from(PromptTemplate.from(template).apply(variables).text()));
+        }
+
+        dev.langchain4j.service.UserMessage user = method.getAnnotation(dev.langchain4j.service.UserMessage.class);
+        if (user == null) {
+            throw new IllegalArgumentException("Streaming requires an @UserMessage template on " + method.getName());
+        }
+        String template = String.join(user.delimiter(), user.value());
+        String userText = PromptTemplate.from(template).apply(variables).text()
+                + outputParser.outputFormatInstructions(method.getGenericReturnType());
+        messages.add(UserMessage.from(userText));
+        return messages;
+    }
+
+    private Response<AiMessage> await(CompletableFuture<Response<AiMessage>> done, AtomicBoolean abandoned) {
+        try {
+            return done.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            abandoned.set(true); // Late tokens no longer reach onElement; permits wait for the provider to finish
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while streaming LLM response", e);
+        } catch (TimeoutException e) {
+            abandoned.set(true);
+            throw new IllegalStateException("Streaming LLM response timed out after " + timeout.toSeconds() + "s", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof RuntimeException runtimeException
+                    ? runtimeException
+                    : new IllegalStateException("Streaming LLM call failed: " + cause.getMessage(), cause);
+        }
+    }
+
+    private static Method findMethod(Class<?> agent, String methodName) {
+        return Arrays.stream(agent.getMethods())
+                .filter(m -> m.getName().equals(methodName))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("No method " + methodName + " on " + agent.getSimpleName()));
+    }
+}
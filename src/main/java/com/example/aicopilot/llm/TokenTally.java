@@ -0,0 +1,48 @@
+package com.example.aicopilot.llm;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread-bound token counter: sums the provider-reported token usage of every model call made on the
+ * current thread while a tally is open. Cache hits and coalesced followers cost nothing and add nothing.
+ * Used to attribute spend to a unit of work without changing the agent interfaces (e.g. race candidates).
+ */
+public final class TokenTally implements AutoCloseable {
+
+    private static final ThreadLocal<TokenTally> CURRENT = new ThreadLocal<>();
+
+    private final AtomicLong tokens = new AtomicLong();
+    private final TokenTally previous;
+
+    private TokenTally(TokenTally previous) {
+        this.previous = previous;
+    }
+
+    public static TokenTally open() {
+        TokenTally tally = new TokenTally(CURRENT.get());
+        CURRENT.set(tally);
+        return tally;
+    }
+
+    static void record(Integer totalTokens) {
+        if (totalTokens == null) {
+            return;
+        }
+        for (TokenTally tally = CURRENT.get(); tally != null; tally = tally.previous) {
+            tally.tokens.addAndGet(totalTokens); // Nested tallies all see the call
+        }
+    }
+
+    public long tokens() {
+        return tokens.get();
+    }
+
+    @Override
+    public void close() {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+}
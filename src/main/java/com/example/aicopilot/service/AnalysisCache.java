@@ -0,0 +1,140 @@
+package com.example.aicopilot.service;
+
+import com.example.aicopilot.agent.FlowAnalyst;
+import com.example.aicopilot.dto.analysis.AnalysisResult;
+import com.example.aicopilot.dto.analysis.GraphStructure;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory LRU + TTL cache for the AI layer of /analyze and for /analyze/fix, keyed by {@link GraphFingerprint}.
+ * The editor re-analyzes after every small edit (often just a moved node), and the prompt-level LLM cache misses
+ * those because the serialized graph still carries positions; here the key only covers graph content, prefixed
+ * with a version of the model config and the FlowAnalyst prompts, so a prompt or model change never serves old results.
+ * Metrics: copilot.analysis.cache.requests{cache=analysis|fix, result=hit|miss}, copilot.analysis.cache.size{cache}.
+ */
+@Component
+public class AnalysisCache {
+
+    static final String ANALYSIS = "analysis";
+    static final String FIX = "fix";
+
+    private final Lru<List<AnalysisResult>> analyses;
+    private final Lru<GraphStructure> fixes;
+    private final MeterRegistry meterRegistry;
+    private final Duration ttl;
+    private final String keyPrefix;
+
+    private record Entry<V>(V value, long createdAt) {
+    }
+
+    // Access-ordered map acts as the LRU list (guarded by 'this')
+    private static final class Lru<V> extends LinkedHashMap<String, Entry<V>> {
+        private final int maxEntries;
+
+        Lru(int maxEntries) {
+            super(64, 0.75f, true);
+            this.maxEntries = maxEntries;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry<V>> eldest) {
+            return size() > maxEntries;
+        }
+    }
+
+    public AnalysisCache(MeterRegistry meterRegistry,
+                         @Qualifier("modelFingerprint") String modelFingerprint,
+                         @Value("${copilot.analysis.cache.max-entries:1000}") int maxEntries, // Per cache (analysis, fix)
+                         @Value("${copilot.analysis.cache.ttl:30m}") Duration ttl) {
+        this.meterRegistry = meterRegistry;
+        this.ttl = ttl;
+        this.keyPrefix = version(modelFingerprint, FlowAnalyst.class) + ":";
+        this.analyses = new Lru<>(Math.max(1, maxEntries));
+        this.fixes = new Lru<>(Math.max(1, maxEntries));
+        meterRegistry.gauge("copilot.analysis.cache.size", Tags.of("cache", ANALYSIS),
+                this, cache -> cache.size(cache.analyses));
+        meterRegistry.gauge("copilot.analysis.cache.size", Tags.of("cache", FIX),
+                this, cache -> cache.size(cache.fixes));
+    }
+
+    /**
+     * AI findings for a graph fingerprint, or null (counted as a miss).
+     */
+    public List<AnalysisResult> getAnalysis(String fingerprint) {
+        return get(ANALYSIS, analyses, fingerprint);
+    }
+
+    public void putAnalysis(String fingerprint, List<AnalysisResult> results) {
+        put(analyses, fingerprint, List.copyOf(results));
+    }
+
+    /**
+     * Fixed graph for the same graph content and the same finding, or null (counted as a miss).
+     */
+    public GraphStructure getFix(String fixKey) {
+        return get(FIX, fixes, fixKey);
+    }
+
+    public void putFix(String fixKey, GraphStructure fixedGraph) {
+        put(fixes, fixKey, fixedGraph);
+    }
+
+    /**
+     * Short hash of the model config and every prompt (annotations) of the agent producing the cached results.
+     */
+    static String version(String modelFingerprint, Class<?> agent) {
+        StringBuilder source = new StringBuilder(modelFingerprint);
+        Arrays.stream(agent.getDeclaredMethods())
+                .sorted(Comparator.comparing(Method::toGenericString))
+                .forEach(method -> source.append('|').append(method.toGenericString())
+                        .append(Arrays.toString(method.getAnnotations())));
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(source.toString().getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private <V> V get(String cache, Lru<V> entries, String key) {
+        key = keyPrefix + key;
+        V value = null;
+        synchronized (this) {
+            Entry<V> entry = entries.get(key);
+            if (entry != null) {
+                if (System.currentTimeMillis() - entry.createdAt() <= ttl.toMillis()) {
+                    value = entry.value();
+                } else {
+                    entries.remove(key);
+                }
+            }
+        }
+        meterRegistry.counter("copilot.analysis.cache.requests", "cache", cache, "result", value != null ? "hit" : "miss")
+                .increment();
+        return value;
+    }
+
+    private synchronized <V> void put(Lru<V> entries, String key, V value) {
+        entries.put(keyPrefix + key, new Entry<>(value, System.currentTimeMillis()));
+    }
+
+    private synchronized int size(Lru<?> entries) {
+        return entries.size();
+    }
+}
@@ -0,0 +1,888 @@
+package com.example.aicopilot.service;
+
+import com.example.aicopilot.dto.analysis.AnalysisResult;
+import com.example.aicopilot.dto.analysis.GraphPatchRequest;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Server-side graph of one editing session, kept analyzed between edits.
+ * Holds the same rules as {@link GraphRuleEngine} but maintains their inputs incrementally:
+ * - degrees, labels and gateway branches: per node, re-checked only for the nodes an edit touches
+ * - reachability from START: extended by a BFS from the new edge's target on insert; on delete only the region
+ *   below the removed edge is re-derived
+ * - strongly connected components: an inserted edge merges the components on the new cycle (forward search from
+ *   its target, backward from its source); a deleted edge re-runs Tarjan inside its own component only
+ * Graphs without a START node (reachability from in-degree 0 nodes) are rare and fall back to a full reachability
+ * pass per edit. Not thread-safe; {@link AnalysisSessionService} serializes access per session.
+ */
+final class AnalysisSession {
+
+    private final String id;
+    private final Map<String, Node> nodes = new LinkedHashMap<>();
+    private final Map<String, Edge> edges = new LinkedHashMap<>();
+    private final Map<String, List<Edge>> waiting = new HashMap<>(); // Edges whose endpoint does not exist (yet), by missing id
+    private long version;
+    private long nextSeq;
+    private long nextEdgeId;
+    private int startCount;
+    private boolean hasRoots;
+    private long epoch; // Traversal marks
+
+    // Current batch: what was touched and the findings it had before
+    private long batch;
+    private final Set<Node> touchedNodes = new LinkedHashSet<>();
+    private final Set<Component> touchedComponents = new LinkedHashSet<>();
+    private final List<AnalysisResult> before = new ArrayList<>();
+
+    private static final class Node {
+        final String id;
+        final long seq; // Insertion order, stands in for the node index of GraphRuleEngine
+        final ObjectNode json;
+        final byte kind;
+        String label;
+        String lane;
+        final List<Edge> in = new ArrayList<>();
+        final List<Edge> out = new ArrayList<>();
+        boolean reached;
+        Component component;
+        List<AnalysisResult> findings = List.of();
+        long touchedIn = -1;
+
+        // Traversal / Tarjan scratch
+        long mark;
+        long mark2;
+        int index;
+        int low;
+        int cursor;
+        boolean onStack;
+
+        Node(String id, long seq, ObjectNode json) {
+            this.id = id;
+            this.seq = seq;
+            this.json = json;
+            this.kind = CsrGraph.kindOf(text(json.get("type")));
+            readData();
+        }
+
+        // Same precedence as CsrGraph.fromSnapshot
+        void readData() {
+            JsonNode data = json.get("data");
+            boolean hasData = data != null && data.isObject();
+            label = text(hasData && data.has("label") ? data.get("label") : json.get("label"));
+            String swimlane = hasData ? text(data.get("swimlaneId")) : null;
+            lane = swimlane != null ? swimlane
+                    : text(json.get("parentId")) != null ? text(json.get("parentId")) : text(json.get("parentNode"));
+        }
+    }
+
+    private static final class Edge {
+        final String id;
+        final ObjectNode json;
+        final String sourceId;
+        final String targetId;
+        String label;
+        Node source; // Both null while the edge is waiting for an endpoint
+        Node target;
+
+        Edge(String id, ObjectNode json) {
+            this.id = id;
+            this.json = json;
+            this.sourceId = text(json.get("source"));
+            this.targetId = text(json.get("target"));
+            this.label = text(json.get("label"));
+        }
+    }
+
+    private static final class Component {
+        final List<Node> members;
+        List<AnalysisResult> findings = List.of();
+        long touchedIn = -1;
+        boolean dissolved;
+
+        Component(List<Node> members) {
+            this.members = members;
+        }
+    }
+
+    /**
+     * Result of one applied patch.
+     */
+    record Delta(long version, List<AnalysisResult> added, List<AnalysisResult> resolved, int rechecked) {
+    }
+
+    AnalysisSession(String id, JsonNode nodesJson, JsonNode edgesJson) {
+        this.id = id;
+        for (JsonNode node : nodesJson) {
+            String nodeId = node.isObject() ? text(node.get("id")) : null;
+            if (nodeId != null && !nodes.containsKey(nodeId)) { // Duplicate ids keep the first definition
+                Node created = new Node(nodeId, nextSeq++, (ObjectNode) node);
+                nodes.put(nodeId, created);
+                startCount += created.kind == CsrGraph.START ? 1 : 0;
+            }
+        }
+        for (JsonNode edge : edgesJson) {
+            if (edge.isObject()) {
+                Edge created = new Edge(edgeId(text(edge.get("id"))), (ObjectNode) edge);
+                edges.put(created.id, created);
+                Node source = nodes.get(created.sourceId);
+                Node target = nodes.get(created.targetId);
+                if (source != null && target != null) {
+                    link(created, source, target);
+                } else {
+                    park(created);
+                }
+            }
+        }
+
+        begin();
+        nodes.values().forEach(this::touch);
+        recomputeReachability();
+        for (List<Node> members : stronglyConnected(nodes.values())) {
+            touch(newComponent(members));
+        }
+        finish();
+    }
+
+    String id() {
+        return id;
+    }
+
+    long version() {
+        return version;
+    }
+
+    int nodeCount() {
+        return nodes.size();
+    }
+
+    int edgeCount() {
+        return edges.size();
+    }
+
+    /**
+     * All current findings: node rules in node order, then loop rules.
+     */
+    List<AnalysisResult> findings() {
+        List<AnalysisResult> results = new ArrayList<>();
+        Set<Component> components = new LinkedHashSet<>();
+        for (Node node : nodes.values()) {
+            results.addAll(node.findings);
+            components.add(node.component);
+        }
+        components.forEach(component -> results.addAll(component.findings));
+        return results;
+    }
+
+    /**
+     * @return {"nodes": [...], "edges": [...]} in the editor's format, for the AI analysis and suggestion prompts
+     */
+    String graphJson(ObjectMapper objectMapper) throws IOException {
+        ObjectNode root = objectMapper.createObjectNode();
+        ArrayNode nodeArray = root.putArray("nodes");
+        nodes.values().forEach(node -> nodeArray.add(node.json));
+        ArrayNode edgeArray = root.putArray("edges");
+        edges.values().forEach(edge -> edgeArray.add(edge.json));
+        return objectMapper.writeValueAsString(root);
+    }
+
+    /**
+     * Applies all operations or none (validated up front); the version advances once per patch.
+     * @throws IllegalArgumentException for an unsupported or inconsistent operation, or if the patch would leave more
+     *                                  than maxNodes nodes or maxEdges edges
+     */
+    Delta apply(List<GraphPatchRequest.Operation> operations, int maxNodes, int maxEdges) {
+        List<Op> ops = validate(operations, maxNodes, maxEdges);
+        begin();
+        version++;
+        for (Op op : ops) {
+            switch (op.type) {
+                case ADD_NODE -> addNode(op.id, op.element);
+                case REMOVE_NODE -> removeNode(nodes.get(op.id));
+                case ADD_EDGE -> addEdge(op.id, op.element);
+                case REMOVE_EDGE -> removeEdge(edges.get(op.id));
+                case NODE_LABEL -> relabelNode(nodes.get(op.id), op.value);
+                case EDGE_LABEL -> relabelEdge(edges.get(op.id), op.value);
+                case NODE_POSITION -> nodes.get(op.id).json.set("position", op.value);
+            }
+        }
+        return finish();
+    }
+
+    // --- Patch parsing ---
+
+    private enum OpType { ADD_NODE, REMOVE_NODE, ADD_EDGE, REMOVE_EDGE, NODE_LABEL, EDGE_LABEL, NODE_POSITION }
+
+    private record Op(OpType type, String id, ObjectNode element, JsonNode value) {
+    }
+
+    // Replays the patch against a shadow of node/edge existence, so a bad operation rejects the whole patch
+    private List<Op> validate(List<GraphPatchRequest.Operation> operations, int maxNodes, int maxEdges) {
+        if (operations == null || operations.isEmpty()) {
+            throw new IllegalArgumentException("'ops' is empty.");
+        }
+        Map<String, Boolean> nodeExists = new HashMap<>();
+        Map<String, String[]> edgeEnds = new HashMap<>(); // Edge id -> {source, target}; null value = removed
+        Set<String> removedWithNode = new HashSet<>();
+        List<Op> ops = new ArrayList<>(operations.size());
+        int nodeCount = nodes.size();
+        int edgeCount = edges.size();
+
+        for (GraphPatchRequest.Operation operation : operations) {
+            String op = operation.op();
+            String[] path = parsePath(operation.path());
+            boolean isNode = path[0].equals("nodes");
+            String target = path[1];
+            JsonNode value = operation.value();
+
+            if (path.length == 2 && "add".equals(op)) {
+                if (value == null || !value.isObject()) {
+                    throw invalid(operation, "value must be an object");
+                }
+                String valueId = text(value.get("id"));
+                String elementId = target.equals("-") ? valueId : target;
+                if (valueId != null && !valueId.equals(elementId)) {
+                    throw invalid(operation, "path and value.id differ");
+                }
+                ObjectNode element = ((ObjectNode) value).deepCopy();
+                if (isNode) {
+                    if (elementId == null) {
+                        throw invalid(operation, "node id is missing");
+                    }
+                    if (exists(nodeExists, elementId)) {
+                        throw invalid(operation, "node already exists");
+                    }
+                    element.put("id", elementId);
+                    nodeExists.put(elementId, true);
+                    nodeCount++;
+                    ops.add(new Op(OpType.ADD_NODE, elementId, element, null));
+                } else {
+                    String source = text(value.get("source"));
+                    String sink = text(value.get("target"));
+                    if (!exists(nodeExists, source) || !exists(nodeExists, sink)) {
+                        throw invalid(operation, "edge source and target must be existing nodes");
+                    }
+                    // Unlike snapshot edges, patched edges need a client id: later edits address them by it
+                    if (elementId == null) {
+                        throw invalid(operation, "edge id is missing");
+                    }
+                    if (ends(edgeEnds, elementId) != null) {
+                        throw invalid(operation, "edge already exists");
+                    }
+                    element.put("id", elementId);
+                    edgeEnds.put(elementId, new String[]{source, sink});
+                    edgeCount++;
+                    ops.add(new Op(OpType.ADD_EDGE, elementId, element, null));
+                }
+            } else if (path.length == 2 && "remove".equals(op)) {
+                if (isNode) {
+                    if (!exists(nodeExists, target)) {
+                        throw invalid(operation, "node does not exist");
+                    }
+                    nodeExists.put(target, false);
+                    nodeCount--;
+                    // Incident edges go with the node; a later explicit remove of one of them is a no-op
+                    Node node = nodes.get(target);
+                    if (node != null) {
+                        for (List<Edge> incident : List.of(node.in, node.out)) {
+                            for (Edge edge : incident) {
+                                if (ends(edgeEnds, edge.id) != null) {
+                                    edgeEnds.put(edge.id, null);
+                                    edgeCount--;
+                                    removedWithNode.add(edge.id);
+                                }
+                            }
+                        }
+                    }
+                    for (Map.Entry<String, String[]> edge : edgeEnds.entrySet()) {
+                        if (edge.getValue() != null && (target.equals(edge.getValue()[0]) || target.equals(edge.getValue()[1]))) {
+                            edge.setValue(null);
+                            edgeCount--;
+                            removedWithNode.add(edge.getKey());
+                        }
+                    }
+                    ops.add(new Op(OpType.REMOVE_NODE, target, null, null));
+                } else {
+                    if (ends(edgeEnds, target) != null) {
+                        edgeEnds.put(target, null);
+                        edgeCount--;
+                        ops.add(new Op(OpType.REMOVE_EDGE, target, null, null));
+                    } else if (!removedWithNode.contains(target)) {
+                        throw invalid(operation, "edge does not exist");
+                    }
+                }
+            } else if (path.length == 3 && "replace".equals(op) && path[2].equals("label")) {
+                if (value != null && !value.isValueNode()) {
+                    throw invalid(operation, "label must be a string or null");
+                }
+                if (isNode ? !exists(nodeExists, target) : ends(edgeEnds, target) == null) {
+                    throw invalid(operation, path[0].substring(0, 4) + " does not exist");
+                }
+                ops.add(new Op(isNode ? OpType.NODE_LABEL : OpType.EDGE_LABEL, target, null, value));
+            } else if (path.length == 3 && "replace".equals(op) && isNode && path[2].equals("position")) {
+                if (value == null || !value.isObject()) {
+                    throw invalid(operation, "position must be an object");
+                }
+                if (!exists(nodeExists, target)) {
+                    throw invalid(operation, "node does not exist");
+                }
+                ops.add(new Op(OpType.NODE_POSITION, target, null, value.deepCopy()));
+            } else {
+                throw invalid(operation, "unsupported operation");
+            }
+        }
+        // A session already above a lowered limit may still be edited, just not grown
+        if (nodeCount > Math.max(maxNodes, nodes.size()) || edgeCount > Math.max(maxEdges, edges.size())) {
+            throw new IllegalArgumentException("Patch would leave " + nodeCount + " nodes and " + edgeCount
+                    + " edges; sessions are limited to " + maxNodes + " nodes and " + maxEdges + " edges.");
+        }
+        return ops;
+    }
+
+    private boolean exists(Map<String, Boolean> shadow, String nodeId) {
+        if (nodeId == null) {
+            return false;
+        }
+        Boolean exists = shadow.get(nodeId);
+        return exists != null ? exists : nodes.containsKey(nodeId);
+    }
+
+    private String[] ends(Map<String, String[]> shadow, String edgeId) {
+        if (shadow.containsKey(edgeId)) {
+            return shadow.get(edgeId);
+        }
+        Edge edge = edges.get(edgeId);
+        return edge != null ? new String[]{edge.sourceId, edge.targetId} : null;
+    }
+
+    // "/nodes/{id}[/field]" with JSON Pointer escaping
+    private static String[] parsePath(String path) {
+        String[] parts = path != null && path.startsWith("/") ? path.substring(1).split("/", -1) : new String[0];
+        if (parts.length < 2 || parts.length > 3 || !(parts[0].equals("nodes") || parts[0].equals("edges")) || parts[1].isEmpty()) {
+            throw new IllegalArgumentException("Unsupported patch path: " + path);
+        }
+        for (int i = 1; i < parts.length; i++) {
+            parts[i] = parts[i].replace("~1", "/").replace("~0", "~");
+        }
+        return parts;
+    }
+
+    private static IllegalArgumentException invalid(GraphPatchRequest.Operation operation, String reason) {
+        return new IllegalArgumentException("Invalid patch operation '" + operation.op() + " " + operation.path() + "': " + reason);
+    }
+
+    // --- Edits ---
+
+    private void addNode(String nodeId, ObjectNode json) {
+        Node node = new Node(nodeId, nextSeq++, json);
+        nodes.put(nodeId, node);
+        touch(node);
+        touch(newComponent(new ArrayList<>(List.of(node))));
+        if (node.kind == CsrGraph.START) {
+            startCount++;
+        }
+        if (startCount == 0 || (node.kind == CsrGraph.START && startCount == 1)) {
+            recomputeReachability(); // Roots changed
+        } else {
+            node.reached = node.kind == CsrGraph.START;
+        }
+
+        List<Edge> parked = waiting.remove(nodeId);
+        if (parked != null) {
+            for (Edge edge : parked) {
+                Node source = nodes.get(edge.sourceId);
+                Node target = nodes.get(edge.targetId);
+                if (source != null && target != null) {
+                    connect(edge, source, target);
+                } else {
+                    park(edge);
+                }
+            }
+        }
+    }
+
+    private void removeNode(Node node) {
+        for (Edge edge : new ArrayList<>(node.in)) {
+            removeEdge(edge);
+        }
+        for (Edge edge : new ArrayList<>(node.out)) {
+            removeEdge(edge);
+        }
+        touch(node);
+        touch(node.component); // Singleton now: no edges left
+        node.component.dissolved = true;
+        nodes.remove(node.id);
+        if (node.kind == CsrGraph.START) {
+            startCount--;
+        }
+        if (startCount == 0) {
+            recomputeReachability(); // Roots changed
+        }
+    }
+
+    private void addEdge(String edgeId, ObjectNode json) {
+        Edge edge = new Edge(edgeId(edgeId), json);
+        edges.put(edge.id, edge);
+        connect(edge, nodes.get(edge.sourceId), nodes.get(edge.targetId));
+    }
+
+    private void connect(Edge edge, Node source, Node target) {
+        link(edge, source, target);
+        touch(source);
+        touch(target);
+
+        // Reachability
+        if (startCount == 0) {
+            recomputeReachability();
+        } else if (source.reached && !target.reached) {
+            target.reached = true;
+            spread(List.of(target));
+        }
+
+        // Components
+        if (source.component == target.component) {
+            touch(source.component);
+            return;
+        }
+        long forward = ++epoch;
+        ArrayDeque<Node> queue = new ArrayDeque<>(List.of(target));
+        target.mark = forward;
+        boolean closesCycle = false;
+        while (!queue.isEmpty()) {
+            for (Edge e : queue.poll().out) {
+                if (e.target.mark != forward) {
+                    e.target.mark = forward;
+                    closesCycle |= e.target == source;
+                    queue.add(e.target);
+                }
+            }
+        }
+        if (!closesCycle) {
+            touch(source.component); // May have gained its exit
+            return;
+        }
+        // Nodes on the new cycle: reachable from target and reaching source; whole components merge
+        long backward = ++epoch;
+        Set<Component> merged = new LinkedHashSet<>();
+        queue.add(source);
+        source.mark2 = backward;
+        while (!queue.isEmpty()) {
+            Node v = queue.poll();
+            merged.add(v.component);
+            for (Edge e : v.in) {
+                if (e.source.mark == forward && e.source.mark2 != backward) {
+                    e.source.mark2 = backward;
+                    queue.add(e.source);
+                }
+            }
+        }
+        List<Node> members = new ArrayList<>();
+        for (Component component : merged) {
+            touch(component);
+            component.dissolved = true;
+            members.addAll(component.members);
+        }
+        touch(newComponent(members));
+    }
+
+    private void removeEdge(Edge edge) {
+        if (edge == null) {
+            return; // Already removed together with its node
+        }
+        edges.remove(edge.id);
+        Node source = edge.source;
+        Node target = edge.target;
+        if (source == null) {
+            unpark(edge);
+            return;
+        }
+        source.out.remove(edge);
+        target.in.remove(edge);
+        edge.source = edge.target = null;
+        touch(source);
+        touch(target);
+
+        // Reachability
+        if (startCount == 0) {
+            recomputeReachability();
+        } else if (source.reached && target.reached && target.kind != CsrGraph.START) {
+            retract(target);
+        }
+
+        // Components
+        Component component = source.component;
+        if (component != target.component) {
+            touch(component); // May have lost its exit
+            return;
+        }
+        touch(component);
+        component.dissolved = true;
+        for (List<Node> members : stronglyConnected(component.members)) {
+            touch(newComponent(members));
+        }
+    }
+
+    private void relabelNode(Node node, JsonNode label) {
+        JsonNode data = node.json.get("data");
+        if (data != null && data.isObject()) {
+            ((ObjectNode) data).set("label", label);
+        } else if (node.json.has("label")) {
+            node.json.set("label", label);
+        } else {
+            node.json.putObject("data").set("label", label);
+        }
+        node.readData();
+        touch(node);
+        touch(node.component); // Loop messages list member names
+    }
+
+    private void relabelEdge(Edge edge, JsonNode label) {
+        edge.json.set("label", label);
+        edge.label = text(label);
+        if (edge.source != null) {
+            touch(edge.source); // Gateway branch coverage
+        }
+    }
+
+    private void link(Edge edge, Node source, Node target) {
+        edge.source = source;
+        edge.target = target;
+        source.out.add(edge);
+        target.in.add(edge);
+    }
+
+    private void park(Edge edge) {
+        String missing = nodes.containsKey(edge.sourceId) ? edge.targetId : edge.sourceId;
+        if (missing != null) {
+            waiting.computeIfAbsent(missing, key -> new ArrayList<>()).add(edge);
+        }
+    }
+
+    private void unpark(Edge edge) {
+        for (String endpoint : new String[]{edge.sourceId, edge.targetId}) {
+            List<Edge> parked = endpoint != null ? waiting.get(endpoint) : null;
+            if (parked != null && parked.remove(edge) && parked.isEmpty()) {
+                waiting.remove(endpoint);
+            }
+        }
+    }
+
+    // Snapshot edges may lack an id (or repeat one); they still count, under an internal id
+    private String edgeId(String requested) {
+        if (requested != null && !edges.containsKey(requested)) {
+            return requested;
+        }
+        String generated;
+        do {
+            generated = "~edge-" + nextEdgeId++;
+        } while (edges.containsKey(generated));
+        return generated;
+    }
+
+    // --- Reachability ---
+
+    // Roots as in GraphRuleEngine: START nodes, or (no START) non-lane nodes without incoming edges
+    private void recomputeReachability() {
+        List<Node> roots = new ArrayList<>();
+        for (Node node : nodes.values()) {
+            if (node.kind != CsrGraph.LANE && (startCount > 0 ? node.kind == CsrGraph.START : node.in.isEmpty())) {
+                roots.add(node);
+            }
+        }
+        boolean hadRoots = hasRoots;
+        hasRoots = !roots.isEmpty();
+
+        long mark = ++epoch;
+        ArrayDeque<Node> queue = new ArrayDeque<>(roots);
+        roots.forEach(root -> root.mark = mark);
+        while (!queue.isEmpty()) {
+            for (Edge e : queue.poll().out) {
+                if (e.target.mark != mark) {
+                    e.target.mark = mark;
+                    queue.add(e.target);
+                }
+            }
+        }
+        for (Node node : nodes.values()) {
+            boolean reached = node.mark == mark;
+            if (reached != node.reached || hadRoots != hasRoots) {
+                node.reached = reached;
+                touch(node);
+            }
+        }
+    }
+
+    // Marks everything newly reachable from the given (already marked) nodes
+    private void spread(Collection<Node> from) {
+        ArrayDeque<Node> queue = new ArrayDeque<>(from);
+        while (!queue.isEmpty()) {
+            Node v = queue.poll();
+            touch(v);
+            for (Edge e : v.out) {
+                if (!e.target.reached) {
+                    e.target.reached = true;
+                    queue.add(e.target);
+                }
+            }
+        }
+    }
+
+    // Edge into 'target' was removed: only nodes below it can lose reachability
+    private void retract(Node target) {
+        long mark = ++epoch;
+        List<Node> region = new ArrayList<>();
+        ArrayDeque<Node> queue = new ArrayDeque<>(List.of(target));
+        target.mark = mark;
+        while (!queue.isEmpty()) {
+            Node v = queue.poll();
+            region.add(v);
+            for (Edge e : v.out) {
+                Node w = e.target;
+                if (w.mark != mark && w.reached && w.kind != CsrGraph.START) {
+                    w.mark = mark;
+                    queue.add(w);
+                }
+            }
+        }
+        region.forEach(node -> node.reached = false);
+
+        // Re-enter the region from still-reached predecessors outside it
+        List<Node> seeds = new ArrayList<>();
+        for (Node node : region) {
+            for (Edge e : node.in) {
+                if (e.source.reached) {
+                    node.reached = true;
+                    seeds.add(node);
+                    break;
+                }
+            }
+        }
+        ArrayDeque<Node> again = new ArrayDeque<>(seeds);
+        while (!again.isEmpty()) {
+            for (Edge e : again.poll().out) {
+                if (!e.target.reached) {
+                    e.target.reached = true;
+                    again.add(e.target);
+                }
+            }
+        }
+        for (Node node : region) {
+            if (!node.reached) {
+                touch(node);
+            }
+        }
+    }
+
+    // --- Components ---
+
+    private Component newComponent(List<Node> members) {
+        Component component = new Component(members);
+        members.forEach(member -> member.component = component);
+        return component;
+    }
+
+    /**
+     * Iterative Tarjan over the given nodes only (edges leaving the set are ignored).
+     */
+    private List<List<Node>> stronglyConnected(Collection<Node> region) {
+        long mark = ++epoch;
+        for (Node node : region) {
+            node.mark = mark;
+            node.index = -1;
+            node.onStack = false;
+        }
+        List<List<Node>> components = new ArrayList<>();
+        ArrayDeque<Node> stack = new ArrayDeque<>();
+        ArrayDeque<Node> callStack = new ArrayDeque<>();
+        int counter = 0;
+
+        for (Node root : new ArrayList<>(region)) {
+            if (root.index >= 0) {
+                continue;
+            }
+            root.index = root.low = counter++;
+            root.cursor = 0;
+            stack.push(root);
+            root.onStack = true;
+            callStack.push(root);
+
+            while (!callStack.isEmpty()) {
+                Node v = callStack.peek();
+                if (v.cursor < v.out.size()) {
+                    Node w = v.out.get(v.cursor++).target;
+                    if (w.mark != mark) {
+                        continue;
+                    }
+                    if (w.index < 0) {
+                        w.index = w.low = counter++;
+                        w.cursor = 0;
+                        stack.push(w);
+                        w.onStack = true;
+                        callStack.push(w);
+                    } else if (w.onStack && w.index < v.low) {
+                        v.low = w.index;
+                    }
+                    continue;
+                }
+                callStack.pop();
+                if (!callStack.isEmpty() && v.low < callStack.peek().low) {
+                    callStack.peek().low = v.low;
+                }
+                if (v.low == v.index) {
+                    List<Node> members = new ArrayList<>();
+                    Node w;
+                    do {
+                        w = stack.pop();
+                        w.onStack = false;
+                        members.add(w);
+                    } while (w != v);
+                    components.add(members);
+                }
+            }
+        }
+        return components;
+    }
+
+    // --- Batches ---
+
+    private void begin() {
+        batch++;
+        touchedNodes.clear();
+        touchedComponents.clear();
+        before.clear();
+    }
+
+    private void touch(Node node) {
+        if (node.touchedIn != batch) {
+            node.touchedIn = batch;
+            before.addAll(node.findings);
+            touchedNodes.add(node);
+        }
+    }
+
+    private void touch(Component component) {
+        if (component.touchedIn != batch) {
+            component.touchedIn = batch;
+            before.addAll(component.findings);
+            touchedComponents.add(component);
+        }
+    }
+
+    // Re-evaluates the touched nodes and components and diffs their findings (as multisets) against before
+    private Delta finish() {
+        List<AnalysisResult> after = new ArrayList<>();
+        int rechecked = 0;
+        for (Node node : touchedNodes) {
+            if (nodes.get(node.id) == node) {
+                node.findings = check(node);
+                after.addAll(node.findings);
+                rechecked++;
+            }
+        }
+        for (Component component : touchedComponents) {
+            if (!component.dissolved) {
+                component.findings = check(component);
+                after.addAll(component.findings);
+            }
+        }
+
+        Map<AnalysisResult, Integer> unmatched = new HashMap<>();
+        before.forEach(result -> unmatched.merge(result, 1, Integer::sum));
+        List<AnalysisResult> added = new ArrayList<>();
+        for (AnalysisResult result : after) {
+            Integer count = unmatched.get(result);
+            if (count != null && count > 0) {
+                unmatched.put(result, count - 1);
+            } else {
+                added.add(result);
+            }
+        }
+        List<AnalysisResult> resolved = new ArrayList<>();
+        for (AnalysisResult result : before) {
+            Integer count = unmatched.get(result);
+            if (count != null && count > 0) {
+                unmatched.put(result, count - 1);
+                resolved.add(result);
+            }
+        }
+        touchedNodes.clear();
+        touchedComponents.clear();
+        before.clear();
+        return new Delta(version, added, resolved, rechecked);
+    }
+
+    private List<AnalysisResult> check(Node node) {
+        List<AnalysisResult> results = new ArrayList<>(2);
+        GraphRuleEngine.nodeFindings(node.id, node.kind, node.label, node.in.size(), node.out.size(), results);
+        if (hasRoots && !node.reached) {
+            GraphRuleEngine.unreachableFinding(node.id, node.kind, node.in.size(), results);
+        }
+        if (node.kind == CsrGraph.GATEWAY) {
+            List<String> outLabels = new ArrayList<>(node.out.size());
+            node.out.forEach(edge -> outLabels.add(edge.label));
+            GraphRuleEngine.gatewayFindings(node.id, outLabels, results);
+        }
+        return results.isEmpty() ? List.of() : results;
+    }
+
+    // Rule 4, 5 for one component; members are kept in node order so target and message match GraphRuleEngine
+    private List<AnalysisResult> check(Component component) {
+        List<Node> members = component.members;
+        members.sort(Comparator.comparingLong(node -> node.seq));
+        boolean selfLoop = false;
+        boolean hasExit = false;
+        boolean hasEnd = false;
+        boolean crossesLanes = false;
+        String lane = null;
+        for (Node member : members) {
+            hasEnd |= member.kind == CsrGraph.END;
+            if (member.lane != null) {
+                if (lane == null) {
+                    lane = member.lane;
+                } else if (!lane.equals(member.lane)) {
+                    crossesLanes = true;
+                }
+            }
+            for (Edge edge : member.out) {
+                if (edge.target.component != component) {
+                    hasExit = true;
+                } else if (edge.target == member) {
+                    selfLoop = true;
+                }
+            }
+        }
+        if ((members.size() < 2 && !selfLoop) || ((hasExit || hasEnd) && !crossesLanes)) {
+            return List.of();
+        }
+        List<String> listed = new ArrayList<>(GraphRuleEngine.MAX_LISTED_MEMBERS);
+        for (Node member : members.subList(0, Math.min(members.size(), GraphRuleEngine.MAX_LISTED_MEMBERS))) {
+            listed.add(GraphRuleEngine.displayName(member.id, member.label));
+        }
+        List<AnalysisResult> results = new ArrayList<>(2);
+        GraphRuleEngine.loopFindings(members.get(0).id, members.size(), hasExit || hasEnd, crossesLanes,
+                GraphRuleEngine.describe(listed, members.size()), results);
+        return results;
+    }
+
+    private static String text(JsonNode value) {
+        if (value == null || value.isNull() || value.isMissingNode()) {
+            return null;
+        }
+        return value.isValueNode() ? value.asText() : value.toString();
+    }
+}
@@ -0,0 +1,234 @@
+package com.example.aicopilot.service;
+
+import com.example.aicopilot.dto.analysis.AnalysisSessionDelta;
+import com.example.aicopilot.dto.analysis.AnalysisSessionState;
+import com.example.aicopilot.dto.analysis.GraphPatchRequest;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Server-side editing sessions for the rule analysis.
+ * The editor opens a session with its full graph once, then sends only JSON Patch-style edits
+ * ({@link GraphPatchRequest}); each edit re-checks just the affected neighbourhood ({@link AnalysisSession}) and
+ * answers with the findings that appeared or went away. The AI analysis and /suggest/graph read the session graph
+ * instead of a re-uploaded snapshot.
+ * Sessions idle for copilot.analysis.session.ttl are dropped; the oldest one gives way beyond max-sessions.
+ * Snapshots and patches that would take a session past max-nodes / max-edges, or patches with more than
+ * max-patch-ops operations, are rejected as invalid.
+ * Metrics: copilot.analysis.sessions.live, copilot.analysis.sessions.patches{result=applied|conflict|invalid},
+ * copilot.analysis.sessions.patch.duration, copilot.analysis.sessions.rechecked (nodes re-checked per patch).
+ */
+@Slf4j
+@Service
+public class AnalysisSessionService {
+
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final Duration ttl;
+    private final int maxSessions;
+    private final int maxNodes;
+    private final int maxEdges;
+    private final int maxPatchOps;
+    private final Map<String, Entry> sessions = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService sweeper;
+
+    private final Timer patchDuration;
+    private final DistributionSummary rechecked;
+
+    private static final class Entry {
+        final AnalysisSession session; // Guarded by this entry
+        volatile long lastUsedAt = System.currentTimeMillis();
+
+        Entry(AnalysisSession session) {
+            this.session = session;
+        }
+    }
+
+    /**
+     * The patch was made on an older version of the session graph; the client should reload the session
+     * (GET) and re-apply its edit.
+     */
+    public static class VersionConflictException extends RuntimeException {
+        private final long currentVersion;
+
+        public VersionConflictException(long baseVersion, long currentVersion) {
+            super("Patch is based on version " + baseVersion + " but the session is at version " + currentVersion);
+            this.currentVersion = currentVersion;
+        }
+
+        public long getCurrentVersion() {
+            return currentVersion;
+        }
+    }
+
+    public AnalysisSessionService(ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                                  @Value("${copilot.analysis.session.ttl:30m}") Duration ttl, // Idle time before a session is dropped
+                                  @Value("${copilot.analysis.session.max-sessions:500}") int maxSessions,
+                                  @Value("${copilot.analysis.session.max-nodes:5000}") int maxNodes, // Per session graph
+                                  @Value("${copilot.analysis.session.max-edges:20000}") int maxEdges,
+                                  @Value("${copilot.analysis.session.max-patch-ops:500}") int maxPatchOps,
+                                  @Value("${copilot.analysis.session.sweep-interval:1m}") Duration sweepInterval) {
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.ttl = ttl;
+        this.maxSessions = Math.max(1, maxSessions);
+        this.maxNodes = Math.max(1, maxNodes);
+        this.maxEdges = Math.max(1, maxEdges);
+        this.maxPatchOps = Math.max(1, maxPatchOps);
+        this.patchDuration = meterRegistry.timer("copilot.analysis.sessions.patch.duration");
+        this.rechecked = meterRegistry.summary("copilot.analysis.sessions.rechecked");
+        meterRegistry.gauge("copilot.analysis.sessions.live", sessions, Map::size);
+
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("analysis-session-sweeper-");
+        threadFactory.setDaemon(true);
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        long sweepMillis = sweepInterval.toMillis();
+        sweeper.scheduleWithFixedDelay(this::expireIdle, sweepMillis, sweepMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Starts a session from a full snapshot ({nodes, edges, ...}) and runs the rule analysis once.
+     * @throws IllegalArgumentException if the snapshot has no nodes/edges arrays or exceeds max-nodes / max-edges
+     */
+    public AnalysisSessionState open(String snapshotJson) throws IOException {
+        JsonNode snapshot = objectMapper.readTree(snapshotJson);
+        JsonNode nodes = snapshot != null ? snapshot.get("nodes") : null;
+        JsonNode edges = snapshot != null ? snapshot.get("edges") : null;
+        if (nodes == null || !nodes.isArray() || edges == null || !edges.isArray()) {
+            throw new IllegalArgumentException("'nodes' or 'edges' data is missing.");
+        }
+        if (nodes.size() > maxNodes || edges.size() > maxEdges) {
+            throw new IllegalArgumentException("Snapshot has " + nodes.size() + " nodes and " + edges.size()
+                    + " edges; sessions are limited to " + maxNodes + " nodes and " + maxEdges + " edges.");
+        }
+        AnalysisSession session = new AnalysisSession(UUID.randomUUID().toString(), nodes, edges);
+        synchronized (sessions) { // Check, evict and insert as one step so concurrent opens cannot exceed max-sessions
+            if (sessions.size() >= maxSessions) {
+                evictOldest();
+            }
+            sessions.put(session.id(), new Entry(session));
+        }
+        log.debug("Opened analysis session {} ({} nodes)", session.id(), session.nodeCount());
+        return new AnalysisSessionState(session.id(), session.version(), session.findings());
+    }
+
+    /**
+     * @return all current findings, or null if the session does not exist (or expired)
+     */
+    public AnalysisSessionState get(String sessionId) {
+        Entry entry = touch(sessionId);
+        if (entry == null) {
+            return null;
+        }
+        synchronized (entry) {
+            return new AnalysisSessionState(sessionId, entry.session.version(), entry.session.findings());
+        }
+    }
+
+    /**
+     * Applies one patch atomically and re-checks the affected part of the graph.
+     * @return the findings that appeared or were resolved, or null if the session does not exist
+     * @throws VersionConflictException if baseVersion is set and not the current version
+     * @throws IllegalArgumentException if an operation is malformed or refers to a missing node/edge, or the patch
+     *                                  exceeds max-patch-ops or would grow the graph past max-nodes / max-edges
+     */
+    public AnalysisSessionDelta patch(String sessionId, GraphPatchRequest request) {
+        Entry entry = touch(sessionId);
+        if (entry == null) {
+            return null;
+        }
+        if (request.ops() != null && request.ops().size() > maxPatchOps) {
+            count("invalid");
+            throw new IllegalArgumentException("Patch has " + request.ops().size() + " operations; the limit is " + maxPatchOps + ".");
+        }
+        long started = System.nanoTime();
+        AnalysisSession.Delta delta;
+        synchronized (entry) {
+            AnalysisSession session = entry.session;
+            if (request.baseVersion() != null && request.baseVersion() != session.version()) {
+                count("conflict");
+                throw new VersionConflictException(request.baseVersion(), session.version());
+            }
+            try {
+                delta = session.apply(request.ops(), maxNodes, maxEdges);
+            } catch (IllegalArgumentException e) {
+                count("invalid");
+                throw e;
+            }
+        }
+        patchDuration.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        rechecked.record(delta.rechecked());
+        count("applied");
+        return new AnalysisSessionDelta(sessionId, delta.version(), delta.added(), delta.resolved(), delta.rechecked());
+    }
+
+    /**
+     * @return the session graph as {"nodes": [...], "edges": [...]}, or null if the session does not exist
+     */
+    public String graphJson(String sessionId) throws IOException {
+        Entry entry = touch(sessionId);
+        if (entry == null) {
+            return null;
+        }
+        synchronized (entry) {
+            return entry.session.graphJson(objectMapper);
+        }
+    }
+
+    public boolean close(String sessionId) {
+        return sessions.remove(sessionId) != null;
+    }
+
+    private Entry touch(String sessionId) {
+        Entry entry = sessions.get(sessionId);
+        if (entry != null) {
+            entry.lastUsedAt = System.currentTimeMillis();
+        }
+        return entry;
+    }
+
+    private void count(String result) {
+        meterRegistry.counter("copilot.analysis.sessions.patches", "result", result).increment();
+    }
+
+    private void evictOldest() {
+        sessions.entrySet().stream()
+                .min(Comparator.comparingLong(session -> session.getValue().lastUsedAt))
+                .ifPresent(oldest -> {
+                    sessions.remove(oldest.getKey());
+                    log.info("Analysis session limit reached, dropped session {}", oldest.getKey());
+                });
+    }
+
+    private void expireIdle() {
+        try {
+            long cutoff = System.currentTimeMillis() - ttl.toMillis();
+            sessions.entrySet().removeIf(session -> session.getValue().lastUsedAt < cutoff);
+        } catch (RuntimeException e) {
+            log.warn("Analysis session sweep failed", e);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        sweeper.shutdownNow();
+    }
+}
@@ -1,70 +1,66 @@
 package com.example.aicopilot.service;
 
-import com.example.aicopilot.agent.DataModeler;
-import com.example.aicopilot.agent.FormUXDesigner;
 import com.example.aicopilot.dto.JobStatus;
 import com.example.aicopilot.dto.dataEntities.DataEntitiesResponse;
-import com.example.aicopilot.dto.form.FormResponse;
+import com.example.aicopilot.dto.process.ProcessResponse;
 import com.example.aicopilot.event.ProcessGeneratedEvent;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.event.EventListener;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * Asynchronous Artifact Generator.
- * Subscribes to ProcessGeneratedEvent to perform data modeling and form design in the background.
+ * Subscribes to ProcessGeneratedEvent and runs the remaining pipeline stages (data modeling, form design, ...)
+ * in the background through the {@link StageGraphExecutor}.
  */
 @Service
 @RequiredArgsConstructor
 public class AsyncArtifactGenerator {
 
-    private final DataModeler dataModeler;
-    private final FormUXDesigner formUXDesigner;
     private final JobRepository jobRepository;
-    private final ObjectMapper objectMapper;
+    private final JobCancellationRegistry cancellation;
+    private final StageGraphExecutor stageGraphExecutor;
 
     @Async // Run in a separate thread (prevent blocking main flow)
     @EventListener
     public void handleProcessGenerated(ProcessGeneratedEvent event) {
-        try {
-            String jobId = event.getJobId();
-            String userRequest = event.getUserRequest();
-            String processJson = objectMapper.writeValueAsString(event.getProcessResponse());
-
-            // ---------------------------------------------------------
-            // Step 2: Data Modeling
-            // ---------------------------------------------------------
-            jobRepository.updateState(jobId, JobStatus.State.PROCESSING, "Step 2/3: Defining Data Model...");
-            long startData = System.currentTimeMillis();
-
-            // Call Data Modeler (User Request + Process Context)
-            DataEntitiesResponse data = dataModeler.designDataModel(userRequest, processJson);
-
-            long durationData = System.currentTimeMillis() - startData;
-            jobRepository.saveArtifact(jobId, "DATA", data, durationData);
-
-            // ---------------------------------------------------------
-            // Step 3: Form UX Design
-            // ---------------------------------------------------------
-            jobRepository.updateState(jobId, JobStatus.State.PROCESSING, "Step 3/3: Configuring Forms and Permissions...");
-            String dataJson = objectMapper.writeValueAsString(data);
-            long startForm = System.currentTimeMillis();
+        generateArtifacts(event.getJobId(), event.getUserRequest(), event.getProcessResponse(), null);
+    }
 
-            // Call Form Designer (Process + Data Context)
-            FormResponse form = formUXDesigner.designForm(userRequest, processJson, dataJson);
+    /**
+     * Crash-resume entry point: continues a job after its last saved stage.
+     * @param savedData Data model saved before the restart, or null to redo data modeling
+     */
+    @Async
+    public void resume(String jobId, String userRequest, ProcessResponse process, DataEntitiesResponse savedData) {
+        generateArtifacts(jobId, userRequest, process, savedData);
+    }
 
-            long durationForm = System.currentTimeMillis() - startForm;
-            jobRepository.saveArtifact(jobId, "FORM", form, durationForm);
+    private void generateArtifacts(String jobId, String userRequest, ProcessResponse process, DataEntitiesResponse savedData) {
+        try (JobCancellationRegistry.Scope ignored = cancellation.enter(jobId)) {
+            // Stages whose artifact already exists are skipped
+            Map<String, Object> seeds = new HashMap<>();
+            seeds.put(PipelineStage.PROCESS, process);
+            if (savedData != null) {
+                seeds.put(PipelineStage.DATA, savedData);
+            }
+            stageGraphExecutor.execute(jobId, userRequest, seeds);
 
             // Complete all tasks
+            cancellation.checkpoint(jobId);
             jobRepository.updateState(jobId, JobStatus.State.COMPLETED, "All designs completed.");
 
         } catch (Exception e) {
+            if (cancellation.isCancelled(jobId)) {
+                return; // Cancelled or past its deadline; the job is already CANCELLED
+            }
             e.printStackTrace();
             // Update state on error (partial failure consideration as process is already successful)
-            jobRepository.updateState(event.getJobId(), JobStatus.State.FAILED, "Error during subsequent tasks: " + e.getMessage());
+            jobRepository.updateState(jobId, JobStatus.State.FAILED, "Error during subsequent tasks: " + e.getMessage());
         }
     }
-}
\ No newline at end of file
+}
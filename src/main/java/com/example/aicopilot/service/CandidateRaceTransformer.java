@@ -0,0 +1,227 @@
+package com.example.aicopilot.service;
+
+import com.example.aicopilot.agent.ProcessArchitect;
+import com.example.aicopilot.dto.process.ProcessResponse;
+import com.example.aicopilot.llm.TokenTally;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Candidate race for the map transformation (List -> Map).
+ * Instead of generate -> validate -> fix -> validate, K independent candidates are generated concurrently;
+ * each is validated (and mechanically repaired) as soon as it arrives, the first valid one wins and the
+ * others are cancelled. Trades tokens for tail latency, so K is configured per tenant.
+ * The model runs at temperature 0 and identical prompts are cached/coalesced, so candidate #0 is the regular
+ * prompt and every further candidate uses a different design focus to make it an independent attempt.
+ * If no candidate is valid, the one with the fewest violations goes into the regular repair loop.
+ */
+@Slf4j
+@Service
+public class CandidateRaceTransformer {
+
+    private static final String DEFAULT_TENANT = "default";
+
+    // Candidate #1..n; the number of focuses caps K
+    private static final List<String> CANDIDATE_FOCUSES = List.of(
+            "Minimal topology. Use as few nodes as the steps require and keep the flow linear wherever the definition allows.",
+            "Strict referential integrity. Before answering, check that every referenced ID is a node you generated or \"node_end\".",
+            "Explicit decisions. Model every approval or rejection as a review task followed by an exclusive gateway."
+    );
+
+    private final ProcessArchitect processArchitect;
+    private final ProcessValidator processValidator;
+    private final ProcessRepairer processRepairer;
+    private final JobCancellationRegistry cancellation;
+    private final MeterRegistry meterRegistry;
+    private final int defaultCandidates;
+    private final Map<String, Integer> tenantCandidates;
+
+    // Own pool: candidates must not queue behind the job threads waiting for them. Concurrency is bounded by the LLM bulkhead.
+    private final ExecutorService executor;
+
+    private record Candidate(int index, ProcessResponse process, List<ProcessValidator.Violation> violations,
+                             long tokens, Exception error) {
+        boolean valid() {
+            return error == null && violations.isEmpty();
+        }
+    }
+
+    public CandidateRaceTransformer(ProcessArchitect processArchitect, ProcessValidator processValidator,
+                                    ProcessRepairer processRepairer, JobCancellationRegistry cancellation,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${copilot.transform.race.candidates:1}") int defaultCandidates, // 1 = sequential (no race)
+                                    @Value("${copilot.transform.race.tenant-candidates:}") String tenantCandidates) { // e.g. acme=3,trial=1
+        this.processArchitect = processArchitect;
+        this.processValidator = processValidator;
+        this.processRepairer = processRepairer;
+        this.cancellation = cancellation;
+        this.meterRegistry = meterRegistry;
+        this.defaultCandidates = cap(defaultCandidates);
+        this.tenantCandidates = parseTenantCandidates(tenantCandidates);
+
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("transform-candidate-");
+        threadFactory.setDaemon(true);
+        this.executor = Executors.newCachedThreadPool(threadFactory);
+    }
+
+    /**
+     * @return K for the tenant (1 = no race)
+     */
+    public int candidatesFor(String tenantId) {
+        return tenantId != null ? tenantCandidates.getOrDefault(tenantId, defaultCandidates) : defaultCandidates;
+    }
+
+    /**
+     * @return the first valid candidate, or the candidate with the fewest violations if none is valid
+     */
+    public ProcessResponse transform(String jobId, String tenantId, String definitionJson, int candidates) throws Exception {
+        String tenant = tenantTag(tenantId);
+        ExecutorCompletionService<Candidate> completion = new ExecutorCompletionService<>(executor);
+        List<Future<Candidate>> futures = new ArrayList<>(candidates);
+        for (int i = 0; i < candidates; i++) {
+            int index = i;
+            futures.add(completion.submit(() -> runCandidate(jobId, definitionJson, index)));
+        }
+
+        Candidate winner = null;
+        Candidate best = null;
+        Exception lastError = null;
+        long wastedTokens = 0;
+        try {
+            for (int done = 0; done < candidates && winner == null; done++) {
+                Candidate candidate = completion.take().get(); // runCandidate does not throw
+                if (candidate.valid()) {
+                    winner = candidate;
+                    candidateOutcome("valid");
+                    continue;
+                }
+                wastedTokens += candidate.tokens();
+                if (candidate.error() != null) {
+                    lastError = candidate.error();
+                    candidateOutcome("failed");
+                } else {
+                    candidateOutcome("invalid");
+                    if (best == null || candidate.violations().size() < best.violations().size()) {
+                        best = candidate;
+                    }
+                }
+            }
+        } finally {
+            // Losers still in flight are interrupted; their partial spend is not reported by the provider.
+            // Candidate #0 uses the regular prompt and may lead a call coalesced with other jobs: an interrupted
+            // leader hands that call over to them (CoalescingChatLanguageModel) instead of failing it
+            for (Future<Candidate> future : futures) {
+                if (!future.isDone() && future.cancel(true)) {
+                    candidateOutcome("cancelled");
+                }
+            }
+        }
+        // Losers that completed after the winner was picked were paid for in full
+        Future<Candidate> late;
+        while ((late = completion.poll()) != null) {
+            Candidate loser = finished(late);
+            if (loser != null) {
+                wastedTokens += loser.tokens();
+                candidateOutcome("late");
+            }
+        }
+
+        cancellation.checkpoint(jobId);
+        meterRegistry.counter("copilot.transform.race.tokens", "tenant", tenant, "kind", "wasted").increment(wastedTokens);
+
+        if (winner != null) {
+            log.info("Job {}: candidate #{} of {} won the transformation race", jobId, winner.index(), candidates);
+            meterRegistry.counter("copilot.transform.race.races", "tenant", tenant, "outcome", "won").increment();
+            meterRegistry.counter("copilot.transform.race.wins", "tenant", tenant, "candidate", String.valueOf(winner.index())).increment();
+            meterRegistry.counter("copilot.transform.race.tokens", "tenant", tenant, "kind", "winner").increment(winner.tokens());
+            return winner.process();
+        }
+
+        meterRegistry.counter("copilot.transform.race.races", "tenant", tenant, "outcome", "no_valid").increment();
+        if (best != null) {
+            log.info("Job {}: no valid candidate out of {}, repairing candidate #{} ({} violations)",
+                    jobId, candidates, best.index(), best.violations().size());
+            return best.process();
+        }
+        throw lastError != null ? lastError : new IllegalStateException("No transformation candidate completed");
+    }
+
+    private Candidate runCandidate(String jobId, String definitionJson, int index) {
+        try (JobCancellationRegistry.Scope ignored = cancellation.enter(jobId);
+             TokenTally tally = TokenTally.open()) {
+            try {
+                ProcessResponse process = index == 0
+                        ? processArchitect.transformToMap(definitionJson)
+                        : processArchitect.transformCandidate(definitionJson, CANDIDATE_FOCUSES.get(index - 1));
+
+                // Validated on arrival, with the same local repair the sequential path applies
+                List<ProcessValidator.Violation> violations = processValidator.diagnose(process);
+                if (!violations.isEmpty()) {
+                    ProcessRepairer.Repair repair = processRepairer.repair(process);
+                    if (repair.changed()) {
+                        process = repair.process();
+                        violations = processValidator.diagnose(process);
+                    }
+                }
+                return new Candidate(index, process, violations, tally.tokens(), null);
+            } catch (Exception e) {
+                log.debug("Job {}: transformation candidate #{} failed: {}", jobId, index, e.getMessage());
+                return new Candidate(index, null, List.of(), tally.tokens(), e);
+            }
+        }
+    }
+
+    private static Candidate finished(Future<Candidate> future) {
+        if (future.isCancelled()) {
+            return null;
+        }
+        try {
+            return future.get();
+        } catch (InterruptedException | ExecutionException e) {
+            return null;
+        }
+    }
+
+    private void candidateOutcome(String result) {
+        meterRegistry.counter("copilot.transform.race.candidates", "result", result).increment();
+    }
+
+    // Unconfigured tenants share the default tag (principal names must not blow up metric cardinality)
+    private String tenantTag(String tenantId) {
+        return tenantId != null && tenantCandidates.containsKey(tenantId) ? tenantId : DEFAULT_TENANT;
+    }
+
+    private static int cap(int candidates) {
+        return Math.max(1, Math.min(candidates, CANDIDATE_FOCUSES.size() + 1));
+    }
+
+    static Map<String, Integer> parseTenantCandidates(String config) {
+        Map<String, Integer> result = new HashMap<>();
+        for (String entry : config.split(",")) {
+            String[] parts = entry.split("=", 2);
+            if (parts.length == 2 && !parts[0].isBlank()) {
+                result.put(parts[0].trim(), cap(Integer.parseInt(parts[1].trim())));
+            }
+        }
+        return Map.copyOf(result);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,205 @@
+package com.example.aicopilot.service;
+
+import com.example.aicopilot.agent.ProcessArchitect;
+import com.example.aicopilot.dto.definition.ProcessDefinition;
+import com.example.aicopilot.dto.definition.ProcessStep;
+import com.example.aicopilot.dto.process.Activity;
+import com.example.aicopilot.dto.process.ProcessResponse;
+import com.example.aicopilot.dto.process.Swimlane;
+import com.example.aicopilot.dto.process.config.NodeConfiguration;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+
+/**
+ * Chunked transformation of large definitions (List -> Map).
+ * The step list is split into sections of {@code chunk-size} steps; each section is sent together with
+ * {@code overlap} context steps on either side, so the model can link across the boundary. Sections are
+ * transformed concurrently and stitched by namespace: a node belongs to the step whose `node_{stepId}` prefixes
+ * its id, and references into another section (`node_{stepId}` or an unknown `node_{stepId}_*`) are resolved
+ * to that step's entry node. The merged map is then validated once by the orchestrator.
+ */
+@Slf4j
+@Service
+public class ChunkedProcessTransformer {
+
+    private static final String VIRTUAL_END_NODE = "node_end";
+
+    private final ProcessArchitect processArchitect;
+    private final ObjectMapper objectMapper;
+    private final JobCancellationRegistry cancellation;
+    private final int thresholdSteps;
+    private final int chunkSize;
+    private final int overlap;
+
+    // Own pool: sections must not queue behind the job threads waiting for them. Sections never wait on each other,
+    // so a fixed pool (extra sections queue) cannot deadlock.
+    private final ExecutorService sectionExecutor;
+
+    private record Section(List<ProcessStep> steps, List<String> coreStepIds, String position) {
+    }
+
+    public ChunkedProcessTransformer(ProcessArchitect processArchitect, ObjectMapper objectMapper,
+                                     JobCancellationRegistry cancellation,
+                                     @Value("${copilot.transform.chunk.threshold-steps:40}") int thresholdSteps, // Larger definitions are chunked
+                                     @Value("${copilot.transform.chunk.size:20}") int chunkSize,
+                                     @Value("${copilot.transform.chunk.overlap:2}") int overlap,
+                                     @Value("${copilot.transform.chunk.max-concurrency:16}") int maxConcurrency) { // Sections running at once, all jobs
+        this.processArchitect = processArchitect;
+        this.objectMapper = objectMapper;
+        this.cancellation = cancellation;
+        this.thresholdSteps = thresholdSteps;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.overlap = Math.max(1, overlap); // At least one context step, or a section end would point to node_end
+
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("transform-section-");
+        threadFactory.setDaemon(true);
+        this.sectionExecutor = Executors.newFixedThreadPool(Math.max(1, maxConcurrency), threadFactory);
+    }
+
+    public boolean shouldChunk(ProcessDefinition definition) {
+        return thresholdSteps > 0 && definition.steps() != null && definition.steps().size() > thresholdSteps;
+    }
+
+    public ProcessResponse transform(String jobId, ProcessDefinition definition) throws Exception {
+        List<Section> sections = split(definition);
+        log.info("Job {}: transforming {} steps in {} sections", jobId, definition.steps().size(), sections.size());
+
+        List<Future<ProcessResponse>> futures = new ArrayList<>();
+        for (Section section : sections) {
+            String sectionJson = objectMapper.writeValueAsString(new ProcessDefinition(definition.topic(), section.steps()));
+            futures.add(sectionExecutor.submit(() -> {
+                try (JobCancellationRegistry.Scope ignored = cancellation.enter(jobId)) {
+                    return processArchitect.transformSection(sectionJson, String.join(", ", section.coreStepIds()), section.position());
+                }
+            }));
+        }
+
+        // One failed section fails the map: queued sections never start, running ones are interrupted out of their
+        // provider wait (a coalesced call they lead is handed over, not failed)
+        List<ProcessResponse> results = new ArrayList<>();
+        try {
+            for (Future<ProcessResponse> future : futures) {
+                results.add(future.get());
+            }
+        } catch (ExecutionException e) {
+            futures.forEach(f -> f.cancel(true));
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        } catch (InterruptedException e) {
+            futures.forEach(f -> f.cancel(true));
+            Thread.currentThread().interrupt();
+            throw e;
+        }
+        return stitch(definition, sections, results);
+    }
+
+    private List<Section> split(ProcessDefinition definition) {
+        List<ProcessStep> steps = definition.steps();
+        int count = (steps.size() + chunkSize - 1) / chunkSize;
+        List<Section> sections = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int coreStart = i * chunkSize;
+            int coreEnd = Math.min(steps.size(), coreStart + chunkSize);
+            List<ProcessStep> window = steps.subList(Math.max(0, coreStart - overlap), Math.min(steps.size(), coreEnd + overlap));
+            List<String> coreIds = steps.subList(coreStart, coreEnd).stream().map(ProcessStep::stepId).toList();
+            String position = count == 1 ? "the whole process"
+                    : i == 0 ? "FIRST section (the process starts here; it does not end here)"
+                    : i == count - 1 ? "LAST section (contains the final step)"
+                    : "MIDDLE section (the process neither starts nor ends here)";
+            sections.add(new Section(List.copyOf(window), coreIds, position));
+        }
+        return sections;
+    }
+
+    private ProcessResponse stitch(ProcessDefinition definition, List<Section> sections, List<ProcessResponse> results) {
+        List<String> stepIds = definition.steps().stream().map(ProcessStep::stepId).toList();
+
+        // 1. Keep each section's own nodes (context nodes the model generated anyway are dropped)
+        Map<String, Activity> nodes = new LinkedHashMap<>();
+        Map<String, String> entryNodeByStep = new HashMap<>();
+        Map<String, Swimlane> swimlanes = new LinkedHashMap<>();
+        for (int i = 0; i < sections.size(); i++) {
+            ProcessResponse result = results.get(i);
+            if (result == null || result.activities() == null) {
+                continue;
+            }
+            List<String> core = sections.get(i).coreStepIds();
+            for (Activity activity : result.activities()) {
+                if (activity.id() == null || nodes.containsKey(activity.id())) {
+                    continue;
+                }
+                String owner = StepNamespace.ownerStep(activity.id(), stepIds);
+                if (owner != null && !core.contains(owner)) {
+                    continue;
+                }
+                nodes.put(activity.id(), activity); // Nodes outside the naming pattern are kept as they are
+                if (owner != null) {
+                    entryNodeByStep.putIfAbsent(owner, activity.id());
+                }
+            }
+            if (result.swimlanes() != null) {
+                result.swimlanes().forEach(lane -> swimlanes.putIfAbsent(lane.swimlaneId(), lane));
+            }
+        }
+
+        // 2. Resolve cross-section references to the target step's entry node
+        List<Activity> stitched = new ArrayList<>(nodes.size());
+        for (Activity activity : nodes.values()) {
+            stitched.add(relink(activity, ref -> resolve(ref, nodes, entryNodeByStep, stepIds)));
+        }
+
+        ProcessResponse first = results.isEmpty() ? null : results.get(0);
+        return new ProcessResponse(
+                first != null ? first.processName() : definition.topic(),
+                first != null ? first.description() : null,
+                List.copyOf(swimlanes.values()),
+                stitched);
+    }
+
+    private static String resolve(String ref, Map<String, Activity> nodes, Map<String, String> entryNodeByStep, List<String> stepIds) {
+        if (ref == null || VIRTUAL_END_NODE.equals(ref) || nodes.containsKey(ref)) {
+            return ref;
+        }
+        String owner = StepNamespace.ownerStep(ref, stepIds);
+        String entry = owner != null ? entryNodeByStep.get(owner) : null;
+        return entry != null ? entry : ref; // Unresolvable links are left to validation / repair
+    }
+
+    private static Activity relink(Activity activity, UnaryOperator<String> resolver) {
+        String next = resolver.apply(activity.nextActivityId());
+        NodeConfiguration config = activity.configuration();
+        NodeConfiguration relinked = config;
+        if (config != null) {
+            List<NodeConfiguration.BranchCondition> conditions = config.conditions() == null ? null
+                    : config.conditions().stream()
+                    .map(c -> new NodeConfiguration.BranchCondition(c.expression(), resolver.apply(c.targetActivityId())))
+                    .collect(Collectors.toList());
+            relinked = new NodeConfiguration(config.configType(), config.participantRole(), config.formKey(),
+                    config.isApproval(), config.dueDuration(), config.templateId(), config.subject(), config.retryCount(),
+                    config.priority(), resolver.apply(config.defaultNextActivityId()), conditions);
+        }
+        return new Activity(activity.id(), activity.type(), activity.label(), activity.swimlaneId(),
+                activity.description(), relinked, activity.inputMapping(), activity.position(),
+                next, activity.sourceRef());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        sectionExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,219 @@
+package com.example.aicopilot.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Compact, immutable process graph for the local rule engine.
+ * Node ids are interned to 0..n-1; adjacency is stored in CSR form (offsets + flat target arrays) in both
+ * directions, so traversals touch only int arrays. Built once per snapshot via {@link Builder}.
+ */
+public final class CsrGraph {
+
+    public static final byte TASK = 0;
+    public static final byte START = 1;
+    public static final byte END = 2;
+    public static final byte GATEWAY = 3;
+    public static final byte LANE = 4; // Swimlane/group container, not part of the flow
+
+    final int nodeCount;
+    final String[] ids;
+    private final Map<String, Integer> index;
+    final byte[] kinds;
+    final String[] labels;
+    final int[] lanes; // Swimlane index per node, -1 = none
+    final int laneCount;
+
+    final int[] outOffsets; // Edges of v: outTargets[outOffsets[v] .. outOffsets[v + 1])
+    final int[] outTargets;
+    final String[] outLabels;
+    final int[] inOffsets;
+    final int[] inSources;
+
+    private CsrGraph(int nodeCount, String[] ids, Map<String, Integer> index, byte[] kinds, String[] labels,
+                     int[] lanes, int laneCount, int[] outOffsets, int[] outTargets, String[] outLabels,
+                     int[] inOffsets, int[] inSources) {
+        this.nodeCount = nodeCount;
+        this.ids = ids;
+        this.index = index;
+        this.kinds = kinds;
+        this.labels = labels;
+        this.lanes = lanes;
+        this.laneCount = laneCount;
+        this.outOffsets = outOffsets;
+        this.outTargets = outTargets;
+        this.outLabels = outLabels;
+        this.inOffsets = inOffsets;
+        this.inSources = inSources;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Builds the graph from a ReactFlow snapshot (nodes: id/type/data.label/data.swimlaneId or parentId; edges: source/target/label).
+     */
+    public static CsrGraph fromSnapshot(List<Map<String, Object>> nodes, List<Map<String, Object>> edges) {
+        Builder builder = new Builder();
+        for (Map<String, Object> node : nodes) {
+            Object data = node.get("data");
+            Map<?, ?> dataMap = data instanceof Map<?, ?> map ? map : Map.of();
+            Object label = dataMap.containsKey("label") ? dataMap.get("label") : node.get("label");
+            Object lane = dataMap.get("swimlaneId") != null ? dataMap.get("swimlaneId")
+                    : node.get("parentId") != null ? node.get("parentId") : node.get("parentNode");
+            builder.addNode(asString(node.get("id")), asString(node.get("type")), asString(label), asString(lane));
+        }
+        for (Map<String, Object> edge : edges) {
+            builder.addEdge(asString(edge.get("source")), asString(edge.get("target")), asString(edge.get("label")));
+        }
+        return builder.build();
+    }
+
+    public int nodeCount() {
+        return nodeCount;
+    }
+
+    public int edgeCount() {
+        return outTargets.length;
+    }
+
+    public String id(int node) {
+        return ids[node];
+    }
+
+    /**
+     * @return the interned index of a node id, or -1 if the graph has no such node
+     */
+    public int indexOf(String id) {
+        Integer node = id != null ? index.get(id) : null;
+        return node != null ? node : -1;
+    }
+
+    int outDegree(int node) {
+        return outOffsets[node + 1] - outOffsets[node];
+    }
+
+    int inDegree(int node) {
+        return inOffsets[node + 1] - inOffsets[node];
+    }
+
+    // start_event / START / startEvent -> START, *gateway* -> GATEWAY, ...
+    static byte kindOf(String type) {
+        if (type == null) {
+            return TASK;
+        }
+        String normalized = type.toLowerCase(Locale.ROOT).replace("_", "").replace("-", "");
+        return switch (normalized) {
+            case "start", "startevent" -> START;
+            case "end", "endevent" -> END;
+            case "swimlane", "lane", "group" -> LANE;
+            default -> normalized.contains("gateway") ? GATEWAY : TASK;
+        };
+    }
+
+    private static String asString(Object value) {
+        return value != null ? value.toString() : null;
+    }
+
+    /**
+     * Collects nodes and edges in any order (edges may arrive before their nodes); edges whose endpoints are
+     * unknown at {@link #build()} time are dropped.
+     */
+    public static final class Builder {
+        private final Map<String, Integer> index = new HashMap<>();
+        private final Map<String, Integer> laneIndex = new HashMap<>();
+        private final List<String> ids = new ArrayList<>();
+        private final List<String> labels = new ArrayList<>();
+        private byte[] kinds = new byte[16];
+        private int[] lanes = new int[16];
+
+        private final List<String> edgeSources = new ArrayList<>();
+        private final List<String> edgeTargets = new ArrayList<>();
+        private final List<String> edgeLabels = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        /**
+         * Duplicate ids keep the first definition.
+         */
+        public Builder addNode(String id, String type, String label, String swimlaneId) {
+            if (id == null || index.containsKey(id)) {
+                return this;
+            }
+            int node = ids.size();
+            index.put(id, node);
+            ids.add(id);
+            labels.add(label);
+            if (node == kinds.length) {
+                kinds = Arrays.copyOf(kinds, node * 2);
+                lanes = Arrays.copyOf(lanes, node * 2);
+            }
+            kinds[node] = kindOf(type);
+            lanes[node] = swimlaneId != null ? laneIndex.computeIfAbsent(swimlaneId, key -> laneIndex.size()) : -1;
+            return this;
+        }
+
+        public Builder addEdge(String source, String target, String label) {
+            edgeSources.add(source);
+            edgeTargets.add(target);
+            edgeLabels.add(label);
+            return this;
+        }
+
+        public CsrGraph build() {
+            int n = ids.size();
+            int m = edgeSources.size();
+            int[] sources = new int[m];
+            int[] targets = new int[m];
+            int valid = 0;
+            for (int e = 0; e < m; e++) {
+                Integer s = edgeSources.get(e) != null ? index.get(edgeSources.get(e)) : null;
+                Integer t = edgeTargets.get(e) != null ? index.get(edgeTargets.get(e)) : null;
+                if (s == null || t == null) {
+                    sources[e] = -1;
+                    continue;
+                }
+                sources[e] = s;
+                targets[e] = t;
+                valid++;
+            }
+
+            // Counting sort by source (out) and by target (in)
+            int[] outOffsets = new int[n + 1];
+            int[] inOffsets = new int[n + 1];
+            for (int e = 0; e < m; e++) {
+                if (sources[e] >= 0) {
+                    outOffsets[sources[e] + 1]++;
+                    inOffsets[targets[e] + 1]++;
+                }
+            }
+            for (int v = 0; v < n; v++) {
+                outOffsets[v + 1] += outOffsets[v];
+                inOffsets[v + 1] += inOffsets[v];
+            }
+            int[] outTargets = new int[valid];
+            String[] outLabels = new String[valid];
+            int[] inSources = new int[valid];
+            int[] outCursor = Arrays.copyOf(outOffsets, n);
+            int[] inCursor = Arrays.copyOf(inOffsets, n);
+            for (int e = 0; e < m; e++) {
+                if (sources[e] < 0) {
+                    continue;
+                }
+                int o = outCursor[sources[e]]++;
+                outTargets[o] = targets[e];
+                outLabels[o] = edgeLabels.get(e);
+                inSources[inCursor[targets[e]]++] = sources[e];
+            }
+
+            return new CsrGraph(n, ids.toArray(new String[0]), Map.copyOf(index), Arrays.copyOf(kinds, n), labels.toArray(new String[0]),
+                    Arrays.copyOf(lanes, n), laneIndex.size(), outOffsets, outTargets, outLabels, inOffsets, inSources);
+        }
+    }
+}
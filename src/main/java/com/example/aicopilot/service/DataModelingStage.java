@@ -0,0 +1,83 @@
+package com.example.aicopilot.service;
+
+import com.example.aicopilot.agent.DataModeler;
+import com.example.aicopilot.dto.dataEntities.DataEntitiesResponse;
+import com.example.aicopilot.dto.process.ProcessResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Set;
+
+/**
+ * Step 2: Data Modeling (PROCESS -> DATA).
+ * Uses the speculative model started from the outline when it reconciles with the map.
+ */
+@Component
+public class DataModelingStage implements PipelineStage {
+
+    private final DataModeler dataModeler;
+    private final StreamingArtifactGenerator streamingArtifactGenerator;
+    private final SpeculativeDataModeler speculativeDataModeler;
+    private final ObjectMapper objectMapper;
+    private final boolean streamingEnabled;
+    private final int maxAttempts;
+    private final Duration timeout;
+
+    public DataModelingStage(DataModeler dataModeler, StreamingArtifactGenerator streamingArtifactGenerator,
+                             SpeculativeDataModeler speculativeDataModeler, ObjectMapper objectMapper,
+                             @Value("${copilot.streaming.enabled:false}") boolean streamingEnabled,
+                             @Value("${copilot.pipeline.data.max-attempts:2}") int maxAttempts,
+                             @Value("${copilot.pipeline.data.timeout:3m}") Duration timeout) {
+        this.dataModeler = dataModeler;
+        this.streamingArtifactGenerator = streamingArtifactGenerator;
+        this.speculativeDataModeler = speculativeDataModeler;
+        this.objectMapper = objectMapper;
+        this.streamingEnabled = streamingEnabled;
+        this.maxAttempts = maxAttempts;
+        this.timeout = timeout;
+    }
+
+    @Override
+    public String output() {
+        return DATA;
+    }
+
+    @Override
+    public Set<String> inputs() {
+        return Set.of(PROCESS);
+    }
+
+    @Override
+    public String description() {
+        return "Step 2/3: Defining Data Model...";
+    }
+
+    @Override
+    public Object run(StageContext context) throws Exception {
+        ProcessResponse process = context.input(PROCESS, ProcessResponse.class);
+
+        // Speculative model started from the outline (usually already done; claimed once), else the regular path
+        DataEntitiesResponse data = speculativeDataModeler.claim(context.jobId(), process);
+        if (data != null) {
+            return data;
+        }
+
+        // Call Data Modeler (User Request + Process Context)
+        String processJson = objectMapper.writeValueAsString(process);
+        return streamingEnabled
+                ? streamingArtifactGenerator.designDataModel(context.jobId(), context.userRequest(), processJson)
+                : dataModeler.designDataModel(context.userRequest(), processJson);
+    }
+
+    @Override
+    public int maxAttempts() {
+        return maxAttempts;
+    }
+
+    @Override
+    public Duration timeout() {
+        return timeout;
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.aicopilot.service;
+
+import com.example.aicopilot.agent.FormUXDesigner;
+import com.example.aicopilot.dto.dataEntities.DataEntitiesResponse;
+import com.example.aicopilot.dto.process.ProcessResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Set;
+
+/**
+ * Step 3: Form UX Design (PROCESS + DATA -> FORM).
+ */
+@Component
+public class FormDesignStage implements PipelineStage {
+
+    private final FormUXDesigner formUXDesigner;
+    private final StreamingArtifactGenerator streamingArtifactGenerator;
+    private final ObjectMapper objectMapper;
+    private final boolean streamingEnabled;
+    private final int maxAttempts;
+    private final Duration timeout;
+
+    public FormDesignStage(FormUXDesigner formUXDesigner, StreamingArtifactGenerator streamingArtifactGenerator,
+                           ObjectMapper objectMapper,
+                           @Value("${copilot.streaming.enabled:false}") boolean streamingEnabled,
+                           @Value("${copilot.pipeline.form.max-attempts:2}") int maxAttempts,
+                           @Value("${copilot.pipeline.form.timeout:3m}") Duration timeout) {
+        this.formUXDesigner = formUXDesigner;
+        this.streamingArtifactGenerator = streamingArtifactGenerator;
+        this.objectMapper = objectMapper;
+        this.streamingEnabled = streamingEnabled;
+        this.maxAttempts = maxAttempts;
+        this.timeout = timeout;
+    }
+
+    @Override
+    public String output() {
+        return FORM;
+    }
+
+    @Override
+    public Set<String> inputs() {
+        return Set.of(PROCESS, DATA);
+    }
+
+    @Override
+    public String description() {
+        return "Step 3/3: Configuring Forms and Permissions...";
+    }
+
+    @Override
+    public Object run(StageContext context) throws Exception {
+        String processJson = objectMapper.writeValueAsString(context.input(PROCESS, ProcessResponse.class));
+        String dataJson = objectMapper.writeValueAsString(context.input(DATA, DataEntitiesResponse.class));
+
+        // Call Form Designer (Process + Data Context)
+        return streamingEnabled
+                ? streamingArtifactGenerator.designForm(context.jobId(), context.userRequest(), processJson, dataJson)
+                : formUXDesigner.designForm(context.userRequest(), processJson, dataJson);
+    }
+
+    @Override
+    public int maxAttempts() {
+        return maxAttempts;
+    }
+
+    @Override
+    public Duration timeout() {
+        return timeout;
+    }
+}
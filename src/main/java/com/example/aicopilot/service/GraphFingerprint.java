@@ -0,0 +1,170 @@
+package com.example.aicopilot.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Content hash of a ReactFlow graph snapshot, used as the analysis cache key.
+ * Only what the analysis can see counts: view state (positions, sizes, selection, styling) and edge ids are
+ * dropped, map keys and the node/edge lists are sorted, and labels are whitespace-normalized. Moving a node,
+ * re-ordering the arrays or re-typing a label with extra spaces therefore yields the same fingerprint.
+ */
+final class GraphFingerprint {
+
+    // ReactFlow view state that never changes what the graph means
+    static final Set<String> NODE_VIEW_KEYS = Set.of("position", "positionAbsolute", "width", "height",
+            "measured", "selected", "dragging", "resizing", "style", "className", "zIndex", "draggable",
+            "selectable", "connectable", "deletable", "focusable", "hidden", "sourcePosition", "targetPosition");
+    static final Set<String> EDGE_VIEW_KEYS = Set.of("id", "type", "selected", "animated", "style",
+            "className", "zIndex", "markerStart", "markerEnd", "labelStyle", "labelBgStyle", "labelShowBg",
+            "labelBgPadding", "labelBgBorderRadius", "interactionWidth", "hidden", "sourceHandle", "targetHandle");
+
+    private GraphFingerprint() {
+    }
+
+    static String of(List<Map<String, Object>> nodes, List<Map<String, Object>> edges) {
+        return digest(canonicalize(nodes, NODE_VIEW_KEYS), canonicalize(edges, EDGE_VIEW_KEYS));
+    }
+
+    /**
+     * Hashes per-element canonical forms (as produced here or by {@link GraphSnapshotReader}); sorts the lists in place.
+     */
+    static String digest(List<String> canonicalNodes, List<String> canonicalEdges) {
+        canonicalNodes.sort(null);
+        canonicalEdges.sort(null);
+        MessageDigest digest = sha256();
+        update(digest, "nodes", canonicalNodes);
+        update(digest, "edges", canonicalEdges);
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Trims, collapses inner whitespace and applies NFC, so visually identical labels compare equal.
+     */
+    static String normalizeLabel(String label) {
+        if (label == null) {
+            return null;
+        }
+        String text = isBelowCombiningMarks(label) || Normalizer.isNormalized(label, Normalizer.Form.NFC) ? label
+                : Normalizer.normalize(label, Normalizer.Form.NFC);
+        StringBuilder out = new StringBuilder(text.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                pendingSpace = out.length() > 0;
+            } else {
+                if (pendingSpace) {
+                    out.append(' ');
+                    pendingSpace = false;
+                }
+                out.append(c);
+            }
+        }
+        return out.length() == text.length() ? text : out.toString();
+    }
+
+    // Text without combining marks or Hangul/CJK is already NFC; skips the ICU check for plain ASCII/Latin labels
+    private static boolean isBelowCombiningMarks(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) >= '\u0300') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // One canonical string per element; sorted by digest, so the hash ignores array order but keeps duplicates
+    private static List<String> canonicalize(List<Map<String, Object>> elements, Set<String> viewKeys) {
+        List<String> canonical = new ArrayList<>(elements != null ? elements.size() : 0);
+        if (elements != null) {
+            for (Map<String, Object> element : elements) {
+                StringBuilder out = new StringBuilder(128);
+                write(out, element, viewKeys, false);
+                canonical.add(out.toString());
+            }
+        }
+        return canonical;
+    }
+
+    private static void update(MessageDigest digest, String section, List<String> canonical) {
+        digest.update(section.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        for (String element : canonical) {
+            digest.update(element.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+        }
+    }
+
+    // Minimal JSON-like writer with sorted keys; view keys are only dropped on the element itself, not inside data
+    private static void write(StringBuilder out, Object value, Set<String> skipKeys, boolean labelValue) {
+        if (value instanceof Map<?, ?> map) {
+            TreeMap<String, Object> sorted = new TreeMap<>();
+            map.forEach((key, child) -> {
+                if (child != null && !skipKeys.contains(String.valueOf(key))) {
+                    sorted.put(String.valueOf(key), child);
+                }
+            });
+            out.append('{');
+            sorted.forEach((key, child) -> {
+                quote(out, key);
+                out.append(':');
+                write(out, child, Set.of(), "label".equals(key));
+                out.append(',');
+            });
+            out.append('}');
+        } else if (value instanceof Collection<?> list) {
+            out.append('[');
+            for (Object child : list) {
+                write(out, child, Set.of(), false);
+                out.append(',');
+            }
+            out.append(']');
+        } else if (value instanceof String text) {
+            quote(out, labelValue ? normalizeLabel(text) : text);
+        } else if (value instanceof Number number) {
+            appendNumber(out, number.doubleValue());
+        } else {
+            out.append(value);
+        }
+    }
+
+    // 1 and 1.0 are the same value once it went through a JS client
+    static void appendNumber(StringBuilder out, double value) {
+        out.append(value == Math.rint(value) && !Double.isInfinite(value)
+                ? Long.toString((long) value) : Double.toString(value));
+    }
+
+    static void quote(StringBuilder out, String text) {
+        out.append('"');
+        if (text.indexOf('"') < 0 && text.indexOf('\\') < 0) {
+            out.append(text).append('"');
+            return;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.append('\\');
+            }
+            out.append(c);
+        }
+        out.append('"');
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
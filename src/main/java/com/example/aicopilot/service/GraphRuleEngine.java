@@ -0,0 +1,333 @@
+package com.example.aicopilot.service;
+
+import com.example.aicopilot.dto.analysis.AnalysisResult;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.StringJoiner;
+
+/**
+ * 로컬 그래프 규칙 엔진 (Layer 1).
+ * {@link CsrGraph} 위에서 선형 시간(O(V + E))으로 구조 오류를 찾아 AnalysisResult로 반환합니다.
+ * - 필수 값 / 연결선 누락 (MISSING_LABEL, DISCONNECTED_START/END, MISSING_INPUT/OUTPUT)
+ * - 시작점에서 도달할 수 없는 단계 (DISCONNECTED_FLOW, BFS)
+ * - 종료로 빠져나갈 수 없는 순환 (NO_EXIT_LOOP, Tarjan SCC): 종료점에 도달하지 못하는 경로는 모두 결국
+ *   출구 없는 SCC(단일 노드면 MISSING_OUTPUT, 순환이면 NO_EXIT_LOOP)에서 끝나므로 그 지점만 보고합니다.
+ * - 승인/반려 결과를 모두 다루지 않는 Gateway (LOGIC_GAP)
+ * - 여러 레인을 오가는 순환 (CROSS_LANE_LOOP)
+ */
+@Component
+public class GraphRuleEngine {
+
+    private static final Set<String> POSITIVE_OUTCOMES = Set.of(
+            "approve", "approved", "yes", "accept", "accepted", "pass", "ok", "true", "승인", "예", "통과", "합격");
+    private static final Set<String> NEGATIVE_OUTCOMES = Set.of(
+            "reject", "rejected", "no", "deny", "denied", "decline", "declined", "fail", "false", "cancel",
+            "반려", "거절", "아니오", "아니요", "불합격", "취소");
+    static final int MAX_LISTED_MEMBERS = 5;
+
+    public List<AnalysisResult> analyze(CsrGraph graph) {
+        List<AnalysisResult> results = new ArrayList<>();
+        checkNodes(graph, results);
+        checkReachability(graph, results);
+        checkCycles(graph, results);
+        checkGateways(graph, results);
+        return results;
+    }
+
+    // Rule 1, 2: 필수 값 + 연결선 (기존 로컬 검사와 동일한 타입/문구)
+    private void checkNodes(CsrGraph g, List<AnalysisResult> results) {
+        for (int v = 0; v < g.nodeCount; v++) {
+            nodeFindings(g.ids[v], g.kinds[v], g.labels[v], g.inDegree(v), g.outDegree(v), results);
+        }
+    }
+
+    /**
+     * Rule 1, 2를 노드 하나에 대해 검사합니다 (증분 분석 세션과 공유).
+     */
+    static void nodeFindings(String id, byte kind, String label, int inDegree, int outDegree, List<AnalysisResult> results) {
+        if (kind == CsrGraph.LANE) {
+            return;
+        }
+        if (label == null || label.trim().isEmpty()) {
+            results.add(new AnalysisResult(id, "WARNING", "MISSING_LABEL", "단계의 이름이 비어있습니다.", "명확한 이름을 입력해주세요."));
+        }
+
+        if (kind == CsrGraph.START) {
+            if (outDegree == 0) {
+                results.add(new AnalysisResult(id, "ERROR", "DISCONNECTED_START", "시작점이 연결되지 않았습니다.", "첫 번째 단계와 연결선을 그려주세요."));
+            }
+        } else if (kind == CsrGraph.END) {
+            if (inDegree == 0) {
+                results.add(new AnalysisResult(id, "ERROR", "DISCONNECTED_END", "종료점이 연결되지 않았습니다.", "마지막 단계로부터 선을 연결해주세요."));
+            }
+        } else {
+            if (inDegree == 0) {
+                results.add(new AnalysisResult(id, "ERROR", "MISSING_INPUT", "이전 단계와 연결되지 않았습니다.", "이전 단계에서 선을 연결해주세요."));
+            }
+            if (outDegree == 0) {
+                results.add(new AnalysisResult(id, "ERROR", "MISSING_OUTPUT", "다음 단계와 연결되지 않았습니다.", "다음 단계로 선을 연결하거나 종료 노드와 연결하세요."));
+            }
+        }
+    }
+
+    // Rule 3: 시작점(없으면 진입 차수 0인 노드)에서 BFS. 진입선이 아예 없는 노드는 MISSING_INPUT으로 이미 보고됨
+    private void checkReachability(CsrGraph g, List<AnalysisResult> results) {
+        int n = g.nodeCount;
+        int[] queue = new int[n];
+        boolean[] reached = new boolean[n];
+        int tail = 0;
+        boolean hasStart = false;
+        for (int v = 0; v < n; v++) {
+            hasStart |= g.kinds[v] == CsrGraph.START;
+        }
+        for (int v = 0; v < n; v++) {
+            if (g.kinds[v] != CsrGraph.LANE && (hasStart ? g.kinds[v] == CsrGraph.START : g.inDegree(v) == 0)) {
+                reached[v] = true;
+                queue[tail++] = v;
+            }
+        }
+        if (tail == 0) {
+            return; // 모든 노드가 순환 안에 있음: 기준점이 없으므로 순환 규칙에 맡김
+        }
+        for (int head = 0; head < tail; head++) {
+            int v = queue[head];
+            for (int e = g.outOffsets[v]; e < g.outOffsets[v + 1]; e++) {
+                int w = g.outTargets[e];
+                if (!reached[w]) {
+                    reached[w] = true;
+                    queue[tail++] = w;
+                }
+            }
+        }
+        for (int v = 0; v < n; v++) {
+            if (!reached[v]) {
+                unreachableFinding(g.ids[v], g.kinds[v], g.inDegree(v), results);
+            }
+        }
+    }
+
+    // Rule 3 판정 (도달 불가로 확인된 노드 하나)
+    static void unreachableFinding(String id, byte kind, int inDegree, List<AnalysisResult> results) {
+        if (inDegree > 0 && kind != CsrGraph.LANE && kind != CsrGraph.START) {
+            results.add(new AnalysisResult(id, "WARNING", "DISCONNECTED_FLOW", "시작점에서 도달할 수 없는 단계입니다.",
+                    "시작점에서 이어지는 흐름에 연결하거나, 불필요한 단계라면 삭제하세요."));
+        }
+    }
+
+    // Rule 4, 5: SCC 단위로 출구 없는 순환과 레인을 오가는 순환 검사
+    private void checkCycles(CsrGraph g, List<AnalysisResult> results) {
+        int n = g.nodeCount;
+        int[] comp = new int[n];
+        int compCount = tarjan(g, comp);
+
+        int[] size = new int[compCount];
+        int[] representative = new int[compCount];
+        int[] lane = new int[compCount];
+        boolean[] selfLoop = new boolean[compCount];
+        boolean[] hasExit = new boolean[compCount];
+        boolean[] hasEnd = new boolean[compCount];
+        boolean[] crossesLanes = new boolean[compCount];
+        Arrays.fill(representative, -1);
+        Arrays.fill(lane, -1);
+
+        for (int v = 0; v < n; v++) {
+            int c = comp[v];
+            size[c]++;
+            if (representative[c] < 0) {
+                representative[c] = v;
+            }
+            hasEnd[c] |= g.kinds[v] == CsrGraph.END;
+            if (g.lanes[v] >= 0) {
+                if (lane[c] < 0) {
+                    lane[c] = g.lanes[v];
+                } else if (lane[c] != g.lanes[v]) {
+                    crossesLanes[c] = true;
+                }
+            }
+            for (int e = g.outOffsets[v]; e < g.outOffsets[v + 1]; e++) {
+                int w = g.outTargets[e];
+                if (comp[w] != c) {
+                    hasExit[c] = true;
+                } else if (w == v) {
+                    selfLoop[c] = true;
+                }
+            }
+        }
+
+        // Members grouped by component (counting sort), for the messages
+        int[] memberOffsets = new int[compCount + 1];
+        for (int c = 0; c < compCount; c++) {
+            memberOffsets[c + 1] = memberOffsets[c] + size[c];
+        }
+        int[] members = new int[n];
+        int[] cursor = Arrays.copyOf(memberOffsets, compCount);
+        for (int v = 0; v < n; v++) {
+            members[cursor[comp[v]]++] = v;
+        }
+
+        for (int c = 0; c < compCount; c++) {
+            if (size[c] < 2 && !selfLoop[c]) {
+                continue; // 순환 아님 (단일 막다른 노드는 MISSING_OUTPUT)
+            }
+            if ((!hasExit[c] && !hasEnd[c]) || crossesLanes[c]) {
+                loopFindings(g.ids[representative[c]], size[c], hasExit[c] || hasEnd[c], crossesLanes[c],
+                        describe(g, members, memberOffsets[c], memberOffsets[c + 1]), results);
+            }
+        }
+    }
+
+    /**
+     * Rule 4, 5를 순환(SCC) 하나에 대해 보고합니다 (증분 분석 세션과 공유).
+     * @param target 대표 노드 (노드 순서상 첫 번째 구성원)
+     * @param members describe()로 만든 구성원 목록 문구
+     */
+    static void loopFindings(String target, int size, boolean canExit, boolean crossesLanes, String members,
+                             List<AnalysisResult> results) {
+        if (!canExit) {
+            results.add(new AnalysisResult(target, "ERROR", "NO_EXIT_LOOP",
+                    String.format("종료로 빠져나갈 수 없는 순환 구조입니다. (%d개 단계: %s)", size, members),
+                    "순환 안의 단계 중 하나에 다음 단계 또는 종료로 가는 경로를 추가하세요."));
+        }
+        if (crossesLanes) {
+            results.add(new AnalysisResult(target, "INFO", "CROSS_LANE_LOOP",
+                    String.format("여러 레인을 오가는 재작업 순환이 있습니다. (%s)", members),
+                    "반려 사유 입력이나 재시도 횟수 제한을 두면 담당자 간 핸드오프 지연을 줄일 수 있습니다."));
+        }
+    }
+
+    // Rule 6: Gateway 분기 커버리지 (라벨 없는 연결선은 기본 경로로 간주)
+    private void checkGateways(CsrGraph g, List<AnalysisResult> results) {
+        for (int v = 0; v < g.nodeCount; v++) {
+            if (g.kinds[v] == CsrGraph.GATEWAY) {
+                gatewayFindings(g.ids[v], Arrays.asList(g.outLabels).subList(g.outOffsets[v], g.outOffsets[v + 1]), results);
+            }
+        }
+    }
+
+    /**
+     * Rule 6을 Gateway 하나에 대해 검사합니다 (증분 분석 세션과 공유).
+     * @param outLabels 나가는 연결선의 라벨 (null = 라벨 없음)
+     */
+    static void gatewayFindings(String id, List<String> outLabels, List<AnalysisResult> results) {
+        int outDegree = outLabels.size();
+        if (outDegree == 0) {
+            return; // MISSING_OUTPUT
+        }
+        if (outDegree == 1) {
+            results.add(new AnalysisResult(id, "WARNING", "LOGIC_GAP", "분기(Gateway)에서 나가는 경로가 하나뿐입니다.",
+                    "승인/반려 등 가능한 모든 결과에 대해 경로를 연결하세요."));
+            return;
+        }
+        boolean positive = false;
+        boolean negative = false;
+        boolean unlabeled = false;
+        for (String label : outLabels) {
+            String outcome = label != null ? label.trim().toLowerCase(Locale.ROOT) : "";
+            if (outcome.isEmpty()) {
+                unlabeled = true;
+            } else if (POSITIVE_OUTCOMES.contains(outcome)) {
+                positive = true;
+            } else if (NEGATIVE_OUTCOMES.contains(outcome)) {
+                negative = true;
+            }
+        }
+        if (positive && !negative && !unlabeled) {
+            results.add(new AnalysisResult(id, "WARNING", "LOGIC_GAP", "승인 경로는 있지만 반려 경로가 없습니다.",
+                    "'반려' 경로를 추가하고 요청 단계로 되돌리거나 종료로 연결하세요."));
+        } else if (negative && !positive && !unlabeled) {
+            results.add(new AnalysisResult(id, "WARNING", "LOGIC_GAP", "반려 경로는 있지만 승인 경로가 없습니다.",
+                    "'승인' 경로를 추가해 다음 단계로 연결하세요."));
+        }
+    }
+
+    /**
+     * Iterative Tarjan (no recursion, so deep chains cannot overflow the stack).
+     * @return number of components; comp[v] is the component of v
+     */
+    static int tarjan(CsrGraph g, int[] comp) {
+        int n = g.nodeCount;
+        int[] index = new int[n];
+        int[] low = new int[n];
+        int[] edgeCursor = new int[n];
+        boolean[] onStack = new boolean[n];
+        int[] stack = new int[n];
+        int[] callStack = new int[n];
+        Arrays.fill(index, -1);
+        int sp = 0;
+        int counter = 0;
+        int compCount = 0;
+
+        for (int root = 0; root < n; root++) {
+            if (index[root] >= 0) {
+                continue;
+            }
+            int csp = 0;
+            index[root] = low[root] = counter++;
+            edgeCursor[root] = g.outOffsets[root];
+            stack[sp++] = root;
+            onStack[root] = true;
+            callStack[csp++] = root;
+
+            while (csp > 0) {
+                int v = callStack[csp - 1];
+                if (edgeCursor[v] < g.outOffsets[v + 1]) {
+                    int w = g.outTargets[edgeCursor[v]++];
+                    if (index[w] < 0) {
+                        index[w] = low[w] = counter++;
+                        edgeCursor[w] = g.outOffsets[w];
+                        stack[sp++] = w;
+                        onStack[w] = true;
+                        callStack[csp++] = w;
+                    } else if (onStack[w] && index[w] < low[v]) {
+                        low[v] = index[w];
+                    }
+                    continue;
+                }
+                csp--;
+                if (csp > 0) {
+                    int parent = callStack[csp - 1];
+                    if (low[v] < low[parent]) {
+                        low[parent] = low[v];
+                    }
+                }
+                if (low[v] == index[v]) {
+                    int w;
+                    do {
+                        w = stack[--sp];
+                        onStack[w] = false;
+                        comp[w] = compCount;
+                    } while (w != v);
+                    compCount++;
+                }
+            }
+        }
+        return compCount;
+    }
+
+    private static String describe(CsrGraph g, int[] members, int from, int to) {
+        List<String> listed = new ArrayList<>(MAX_LISTED_MEMBERS);
+        for (int i = from; i < Math.min(to, from + MAX_LISTED_MEMBERS); i++) {
+            listed.add(displayName(g.ids[members[i]], g.labels[members[i]]));
+        }
+        return describe(listed, to - from);
+    }
+
+    /**
+     * @param listed 노드 순서상 앞쪽 구성원 최대 MAX_LISTED_MEMBERS개의 이름 (displayName)
+     * @param total  전체 구성원 수
+     */
+    static String describe(List<String> listed, int total) {
+        StringJoiner joiner = new StringJoiner(", ");
+        listed.forEach(joiner::add);
+        return total > listed.size() ? joiner + " 외 " + (total - listed.size()) + "개" : joiner.toString();
+    }
+
+    static String displayName(String id, String label) {
+        return label != null && !label.isBlank() ? label : id;
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.aicopilot.service;
+
+import com.fasterxml.jackson.annotation.JsonRawValue;
+import com.fasterxml.jackson.annotation.JsonValue;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+
+import java.util.Map;
+
+/**
+ * A ReactFlow graph snapshot ({nodes, edges, ...}) decoded in one streaming pass by {@link GraphSnapshotReader}.
+ * Holds everything the analysis and suggestion paths need, so none of them goes through Map&lt;String, Object&gt;:
+ * - {@link #graph()}: the compact graph for the rule engine (interned ids, CSR edge arrays)
+ * - {@link #fingerprint()}: the content hash used as the analysis cache key
+ * - {@link #nodesJson()} / {@link #edgesJson()} / {@link #json()}: compact JSON text for the LLM prompts
+ * - node positions, to re-apply them onto cached fix results
+ */
+@JsonDeserialize(using = GraphSnapshotReader.class)
+public final class GraphSnapshot {
+
+    private final String json;
+    private final String nodesJson; // null when the snapshot has no "nodes" array
+    private final String edgesJson; // null when the snapshot has no "edges" array
+    private final CsrGraph graph;
+    private final String fingerprint;
+    private final double[] xs; // Position per graph node index, NaN = none
+    private final double[] ys;
+
+    GraphSnapshot(String json, String nodesJson, String edgesJson, CsrGraph graph, String fingerprint,
+                  double[] xs, double[] ys) {
+        this.json = json;
+        this.nodesJson = nodesJson;
+        this.edgesJson = edgesJson;
+        this.graph = graph;
+        this.fingerprint = fingerprint;
+        this.xs = xs;
+        this.ys = ys;
+    }
+
+    /**
+     * The whole snapshot object as compact JSON (also what this serializes back to).
+     */
+    @JsonValue
+    @JsonRawValue
+    public String json() {
+        return json;
+    }
+
+    public String nodesJson() {
+        return nodesJson;
+    }
+
+    public String edgesJson() {
+        return edgesJson;
+    }
+
+    /**
+     * @return {"nodes": [...], "edges": [...]} without any other top-level field of the snapshot
+     */
+    public String graphJson() {
+        return "{\"nodes\":" + nodesJson + ",\"edges\":" + edgesJson + "}";
+    }
+
+    public boolean hasGraph() {
+        return nodesJson != null && edgesJson != null;
+    }
+
+    public CsrGraph graph() {
+        return graph;
+    }
+
+    public String fingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * @return {x, y} of the node as sent by the editor, or null if it has none
+     */
+    public Map<String, Double> position(String nodeId) {
+        int node = graph.indexOf(nodeId);
+        if (node < 0 || Double.isNaN(xs[node]) || Double.isNaN(ys[node])) {
+            return null;
+        }
+        return Map.of("x", xs[node], "y", ys[node]);
+    }
+}
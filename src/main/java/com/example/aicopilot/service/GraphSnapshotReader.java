@@ -0,0 +1,377 @@
+package com.example.aicopilot.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Streaming (JsonParser) reader for ReactFlow snapshots: a single pass over the request body builds the
+ * {@link CsrGraph}, the canonical forms for {@link GraphFingerprint}, and the JSON text for the LLM prompts.
+ * Replaces the Map&lt;String, Object&gt; -> JSON string -> List&lt;Map&gt; round-trips of the request path.
+ * {@link #read(String)} slices the prompt JSON straight out of the body; as a Jackson deserializer (snapshot
+ * nested in a request DTO) the source is not addressable, so the tokens are copied to a compact JSON string.
+ * The fingerprint is identical to {@link GraphFingerprint#of} over the same snapshot.
+ */
+public class GraphSnapshotReader extends StdDeserializer<GraphSnapshot> {
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    // Where a scalar sits inside the current node/edge, for the fields the graph needs
+    private static final int SCOPE_NONE = -1;
+    private static final int SCOPE_ELEMENT = 0;
+    private static final int SCOPE_DATA = 1;
+    private static final int SCOPE_POSITION = 2;
+
+    public GraphSnapshotReader() {
+        super(GraphSnapshot.class);
+    }
+
+    @Override
+    public GraphSnapshot deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+        if (!parser.isExpectedStartObjectToken()) {
+            return (GraphSnapshot) context.handleUnexpectedToken(GraphSnapshot.class, parser);
+        }
+        return read(parser, null);
+    }
+
+    /**
+     * Reads a snapshot from a request body; nodesJson/edgesJson/json are substrings of it (no re-serialization).
+     */
+    public static GraphSnapshot read(String json) throws IOException {
+        try (JsonParser parser = JSON.createParser(json)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Graph snapshot must be a JSON object");
+            }
+            return read(parser, json);
+        }
+    }
+
+    // The fields of one node or edge that the graph is built from
+    private static final class Element {
+        String id;
+        String type;
+        String label;
+        String dataLabel;
+        boolean dataHasLabel;
+        String swimlaneId;
+        String parentId;
+        String parentNode;
+        String source;
+        String target;
+        double x = Double.NaN;
+        double y = Double.NaN;
+
+        void capture(int scope, String key, JsonParser parser) throws IOException {
+            boolean isNull = parser.currentToken() == JsonToken.VALUE_NULL;
+            String text = isNull ? null : parser.getText();
+            switch (scope) {
+                case SCOPE_ELEMENT -> {
+                    switch (key) {
+                        case "id" -> id = text;
+                        case "type" -> type = text;
+                        case "label" -> label = text;
+                        case "parentId" -> parentId = text;
+                        case "parentNode" -> parentNode = text;
+                        case "source" -> source = text;
+                        case "target" -> target = text;
+                        default -> { }
+                    }
+                }
+                case SCOPE_DATA -> {
+                    if ("label".equals(key)) {
+                        dataHasLabel = true;
+                        dataLabel = text;
+                    } else if ("swimlaneId".equals(key)) {
+                        swimlaneId = text;
+                    }
+                }
+                case SCOPE_POSITION -> {
+                    if (parser.currentToken().isNumeric()) {
+                        if ("x".equals(key)) {
+                            x = parser.getDoubleValue();
+                        } else if ("y".equals(key)) {
+                            y = parser.getDoubleValue();
+                        }
+                    }
+                }
+                default -> { }
+            }
+        }
+
+        // Same precedence as CsrGraph.fromSnapshot
+        String nodeLabel() {
+            return dataHasLabel ? dataLabel : label;
+        }
+
+        String lane() {
+            return swimlaneId != null ? swimlaneId : parentId != null ? parentId : parentNode;
+        }
+    }
+
+    // Parser positioned on the snapshot's START_OBJECT; source = the parsed text, or null to copy tokens instead
+    private static GraphSnapshot read(JsonParser parser, String source) throws IOException {
+        StringWriter out = source == null ? new StringWriter(1024) : null;
+        CsrGraph.Builder builder = CsrGraph.builder();
+        List<Element> nodes = new ArrayList<>();
+        List<String> canonicalNodes = new ArrayList<>();
+        List<String> canonicalEdges = new ArrayList<>();
+        String nodesJson = null;
+        String edgesJson = null;
+        long objectStart = parser.currentTokenLocation().getCharOffset();
+
+        try (JsonGenerator generator = out != null ? JSON.createGenerator(out) : null) {
+            writeStart(generator, JsonToken.START_OBJECT);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if (generator != null) {
+                    generator.writeFieldName(field);
+                }
+                boolean isNodes = "nodes".equals(field);
+                if (!(isNodes || "edges".equals(field)) || value != JsonToken.START_ARRAY) {
+                    if (generator != null) {
+                        generator.copyCurrentStructure(parser);
+                    } else {
+                        parser.skipChildren();
+                    }
+                    continue;
+                }
+
+                int start = arrayStart(parser, generator, out);
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    Element element = new Element();
+                    String canonical = copy(parser, generator, isNodes ? GraphFingerprint.NODE_VIEW_KEYS
+                            : GraphFingerprint.EDGE_VIEW_KEYS, false, SCOPE_ELEMENT, element, true);
+                    if (isNodes) {
+                        canonicalNodes.add(canonical);
+                        nodes.add(element);
+                        builder.addNode(element.id, element.type, element.nodeLabel(), element.lane());
+                    } else {
+                        canonicalEdges.add(canonical);
+                        builder.addEdge(element.source, element.target, element.label);
+                    }
+                }
+                String array = arrayText(parser, generator, out, source, start);
+                if (isNodes) {
+                    nodesJson = array;
+                } else {
+                    edgesJson = array;
+                }
+            }
+            writeEnd(generator, JsonToken.END_OBJECT);
+        }
+        String json = out != null ? out.toString()
+                : source.substring((int) objectStart, (int) parser.currentTokenLocation().getCharOffset() + 1);
+
+        CsrGraph graph = builder.build();
+        double[] xs = new double[graph.nodeCount()];
+        double[] ys = new double[graph.nodeCount()];
+        Arrays.fill(xs, Double.NaN);
+        Arrays.fill(ys, Double.NaN);
+        for (Element node : nodes) {
+            int index = graph.indexOf(node.id);
+            if (index >= 0 && Double.isNaN(xs[index])) { // First definition wins, as in the graph
+                xs[index] = node.x;
+                ys[index] = node.y;
+            }
+        }
+        return new GraphSnapshot(json, nodesJson, edgesJson, graph,
+                GraphFingerprint.digest(canonicalNodes, canonicalEdges), xs, ys);
+    }
+
+    // Offset of the '[' the parser is on, in the source or in the copy
+    private static int arrayStart(JsonParser parser, JsonGenerator generator, StringWriter out) throws IOException {
+        if (generator == null) {
+            return (int) parser.currentTokenLocation().getCharOffset();
+        }
+        generator.writeStartArray();
+        generator.flush();
+        return out.getBuffer().length() - 1;
+    }
+
+    private static String arrayText(JsonParser parser, JsonGenerator generator, StringWriter out, String source,
+                                    int start) throws IOException {
+        if (generator == null) {
+            return source.substring(start, (int) parser.currentTokenLocation().getCharOffset() + 1);
+        }
+        generator.writeEndArray();
+        generator.flush();
+        return out.getBuffer().substring(start);
+    }
+
+    /**
+     * Copies the current value to the generator and returns its canonical form (null for JSON null, or when not
+     * hashed). skipKeys are only applied to the element's own fields, as in GraphFingerprint; their values are
+     * still copied and captured (position) but never canonicalized.
+     */
+    private static String copy(JsonParser parser, JsonGenerator generator, Set<String> skipKeys, boolean label,
+                               int scope, Element element, boolean hashed) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (!hashed && generator == null && scope == SCOPE_NONE) {
+            parser.skipChildren(); // Nothing to copy, capture or hash in this subtree
+            return null;
+        }
+        switch (token) {
+            case START_OBJECT -> {
+                writeStart(generator, token);
+                Fields fields = hashed ? new Fields() : null;
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String key = parser.currentName();
+                    parser.nextToken();
+                    if (generator != null) {
+                        generator.writeFieldName(key);
+                    }
+                    if (scope != SCOPE_NONE && parser.currentToken().isScalarValue()) {
+                        element.capture(scope, key, parser);
+                    }
+                    boolean hashChild = hashed && !skipKeys.contains(key);
+                    String child = copy(parser, generator, Set.of(), "label".equals(key), childScope(scope, key),
+                            element, hashChild);
+                    if (hashed) {
+                        fields.put(key, child);
+                    }
+                }
+                writeEnd(generator, JsonToken.END_OBJECT);
+                return hashed ? fields.canonical() : null;
+            }
+            case START_ARRAY -> {
+                writeStart(generator, token);
+                StringBuilder canonical = hashed ? new StringBuilder(32).append('[') : null;
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    String child = copy(parser, generator, Set.of(), false, SCOPE_NONE, element, hashed);
+                    if (hashed) {
+                        canonical.append(child != null ? child : "null").append(',');
+                    }
+                }
+                writeEnd(generator, JsonToken.END_ARRAY);
+                return hashed ? canonical.append(']').toString() : null;
+            }
+            case VALUE_STRING -> {
+                String text = parser.getText();
+                if (generator != null) {
+                    generator.writeString(text);
+                }
+                if (!hashed) {
+                    return null;
+                }
+                StringBuilder canonical = new StringBuilder(text.length() + 2);
+                GraphFingerprint.quote(canonical, label ? GraphFingerprint.normalizeLabel(text) : text);
+                return canonical.toString();
+            }
+            case VALUE_NUMBER_INT, VALUE_NUMBER_FLOAT -> {
+                copyEvent(parser, generator);
+                if (!hashed) {
+                    return null;
+                }
+                StringBuilder canonical = new StringBuilder(16);
+                GraphFingerprint.appendNumber(canonical, parser.getDoubleValue());
+                return canonical.toString();
+            }
+            case VALUE_TRUE, VALUE_FALSE -> {
+                copyEvent(parser, generator);
+                return hashed ? parser.getText() : null;
+            }
+            default -> {
+                copyEvent(parser, generator); // VALUE_NULL
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Fields of one object in key order, as GraphFingerprint writes maps: a later duplicate key wins and a null
+     * value drops the key. Objects are small (a handful of keys) and usually arrive sorted, so this is an
+     * insertion sort over two arrays rather than a TreeMap.
+     */
+    private static final class Fields {
+        private String[] keys = new String[8];
+        private String[] values = new String[8];
+        private int size;
+
+        void put(String key, String value) {
+            for (int i = 0; i < size; i++) {
+                if (keys[i].equals(key)) {
+                    System.arraycopy(keys, i + 1, keys, i, size - i - 1);
+                    System.arraycopy(values, i + 1, values, i, size - i - 1);
+                    size--;
+                    break;
+                }
+            }
+            if (value == null) {
+                return;
+            }
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            int i = size++;
+            while (i > 0 && keys[i - 1].compareTo(key) > 0) {
+                keys[i] = keys[i - 1];
+                values[i] = values[i - 1];
+                i--;
+            }
+            keys[i] = key;
+            values[i] = value;
+        }
+
+        String canonical() {
+            int length = 2;
+            for (int i = 0; i < size; i++) {
+                length += keys[i].length() + values[i].length() + 4;
+            }
+            StringBuilder canonical = new StringBuilder(length).append('{');
+            for (int i = 0; i < size; i++) {
+                GraphFingerprint.quote(canonical, keys[i]);
+                canonical.append(':').append(values[i]).append(',');
+            }
+            return canonical.append('}').toString();
+        }
+    }
+
+    private static void writeStart(JsonGenerator generator, JsonToken token) throws IOException {
+        if (generator != null) {
+            if (token == JsonToken.START_OBJECT) {
+                generator.writeStartObject();
+            } else {
+                generator.writeStartArray();
+            }
+        }
+    }
+
+    private static void writeEnd(JsonGenerator generator, JsonToken token) throws IOException {
+        if (generator != null) {
+            if (token == JsonToken.END_OBJECT) {
+                generator.writeEndObject();
+            } else {
+                generator.writeEndArray();
+            }
+        }
+    }
+
+    private static void copyEvent(JsonParser parser, JsonGenerator generator) throws IOException {
+        if (generator != null) {
+            generator.copyCurrentEvent(parser);
+        }
+    }
+
+    private static int childScope(int scope, String key) {
+        if (scope != SCOPE_ELEMENT) {
+            return SCOPE_NONE;
+        }
+        return switch (key) {
+            case "data" -> SCOPE_DATA;
+            case "position" -> SCOPE_POSITION;
+            default -> SCOPE_NONE;
+        };
+    }
+}
@@ -0,0 +1,194 @@
+package com.example.aicopilot.service;
+
+import com.example.aicopilot.dto.JobStatus;
+import com.example.aicopilot.event.JobUpdatedEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Admission control in front of the WorkflowOrchestrator.
+ * At most {@code max-running} jobs run at once; further jobs wait in FIFO order and see their queue position
+ * in the job status. The expected wait of a new job is estimated from the average job duration
+ * (sum of recent JobStatus.stageDurations); once it would exceed the SLA, submissions are rejected
+ * with a Retry-After instead of slowing down every job already in flight.
+ */
+@Slf4j
+@Service
+public class JobAdmissionController {
+
+    private static final double DURATION_SMOOTHING = 0.2; // EWMA weight of the latest finished job
+
+    private final JobRepository jobRepository;
+    private final boolean enabled;
+    private final int maxRunning;
+    private final long slaMillis;
+
+    // Guarded by this
+    private final Map<String, Runnable> waiting = new LinkedHashMap<>(); // FIFO; value null until dispatched
+    private final Set<String> running = new HashSet<>();
+    private double avgJobMillis;
+
+    private final Counter rejected;
+
+    /**
+     * @param queuePosition       Jobs ahead of this one (0 = next to start)
+     * @param estimatedWaitMillis Expected time until the job starts
+     * @param retryAfterSeconds   When a rejected client should try again (0 if admitted)
+     */
+    public record Decision(boolean admitted, int queuePosition, long estimatedWaitMillis, long retryAfterSeconds) {
+    }
+
+    public JobAdmissionController(JobRepository jobRepository, MeterRegistry meterRegistry,
+                                  @Value("${copilot.jobs.admission.enabled:true}") boolean enabled,
+                                  @Value("${copilot.jobs.admission.max-running:16}") int maxRunning,
+                                  @Value("${copilot.jobs.admission.sla:2m}") Duration sla, // Longest acceptable wait before a job starts
+                                  @Value("${copilot.jobs.admission.initial-job-duration:60s}") Duration initialJobDuration) { // Until jobs have finished
+        this.jobRepository = jobRepository;
+        this.enabled = enabled;
+        this.maxRunning = Math.max(1, maxRunning);
+        this.slaMillis = sla.toMillis();
+        this.avgJobMillis = initialJobDuration.toMillis();
+
+        meterRegistry.gauge("copilot.jobs.admission.waiting", this, c -> c.count(true));
+        meterRegistry.gauge("copilot.jobs.admission.running", this, c -> c.count(false));
+        meterRegistry.gauge("copilot.jobs.admission.job.duration", this, c -> c.averageJobMillis());
+        this.rejected = meterRegistry.counter("copilot.jobs.admission.rejected");
+    }
+
+    /**
+     * Reserves a place in the queue for a new job, or rejects it when the estimated wait exceeds the SLA.
+     * An admitted job must then be {@link #dispatch dispatched} (or {@link #release released} if it could not be created).
+     */
+    public synchronized Decision tryAdmit(String jobId) {
+        if (!enabled) {
+            return new Decision(true, 0, 0, 0);
+        }
+        int position = waiting.size();
+        long waitMillis = estimateWaitMillis(running.size() + position);
+        if (waitMillis > slaMillis) {
+            rejected.increment();
+            long retryAfterSeconds = Math.max(1, (long) Math.ceil((waitMillis - slaMillis) / 1000.0));
+            log.warn("Rejecting job: estimated wait {}s exceeds SLA {}s ({} running, {} waiting)",
+                    waitMillis / 1000, slaMillis / 1000, running.size(), position);
+            return new Decision(false, position, waitMillis, retryAfterSeconds);
+        }
+        waiting.put(jobId, null);
+        return new Decision(true, position, waitMillis, 0);
+    }
+
+    /**
+     * Hands the job's pipeline to the queue; it starts as soon as a slot is free.
+     * Also used on restart to resume recovered jobs (never rejected).
+     */
+    public void dispatch(String jobId, Runnable start) {
+        if (!enabled) {
+            start.run();
+            return;
+        }
+        synchronized (this) {
+            waiting.put(jobId, start); // Keeps the reserved position, or queues a recovered job at the end
+        }
+        pump();
+    }
+
+    /**
+     * Gives up a reservation made by {@link #tryAdmit} for a job that was never created.
+     */
+    public void release(String jobId) {
+        synchronized (this) {
+            waiting.remove(jobId);
+        }
+        pump();
+    }
+
+    // A job leaves its slot when it reaches a terminal state; its stage durations feed the estimate
+    @EventListener
+    public void onJobUpdated(JobUpdatedEvent event) {
+        if (!event.getState().isTerminal()) {
+            return;
+        }
+        String jobId = event.getJobId();
+        synchronized (this) {
+            if (!running.contains(jobId) && !waiting.containsKey(jobId)) {
+                return;
+            }
+        }
+        JobStatus status = jobRepository.findById(jobId);
+        if (status == null || !status.state().isTerminal()) {
+            return;
+        }
+
+        long jobMillis = status.stageDurations().values().stream().mapToLong(Long::longValue).sum();
+        synchronized (this) {
+            boolean wasRunning = running.remove(jobId);
+            waiting.remove(jobId);
+            if (wasRunning && status.state() == JobStatus.State.COMPLETED && jobMillis > 0) {
+                avgJobMillis += (jobMillis - avgJobMillis) * DURATION_SMOOTHING;
+            }
+        }
+        pump();
+    }
+
+    /**
+     * Starts waiting jobs while slots are free and refreshes the queue positions of the rest.
+     * Starting (an @Async call) and status updates happen outside the lock, as they publish events back to us.
+     */
+    private void pump() {
+        Map<String, Runnable> toStart = new LinkedHashMap<>();
+        Map<String, Integer> positions = new LinkedHashMap<>();
+        synchronized (this) {
+            Iterator<Map.Entry<String, Runnable>> it = waiting.entrySet().iterator();
+            while (it.hasNext() && running.size() < maxRunning) {
+                Map.Entry<String, Runnable> head = it.next();
+                if (head.getValue() == null) {
+                    break; // Admitted but not dispatched yet; keeps FIFO order
+                }
+                it.remove();
+                running.add(head.getKey());
+                toStart.put(head.getKey(), head.getValue());
+            }
+            int position = 0;
+            for (String jobId : waiting.keySet()) {
+                positions.put(jobId, position++); // Unchanged positions are skipped by the repository
+            }
+        }
+        toStart.forEach((jobId, start) -> {
+            try {
+                start.run();
+            } catch (RuntimeException e) {
+                // Frees the slot again through onJobUpdated
+                log.error("Failed to start job {}", jobId, e);
+                jobRepository.updateState(jobId, JobStatus.State.FAILED, "Failed to start job: " + e.getMessage());
+            }
+        });
+        positions.forEach(jobRepository::updateQueuePosition);
+    }
+
+    // Jobs ahead start in waves of maxRunning, each taking about one average job duration
+    private long estimateWaitMillis(int jobsAhead) {
+        int mustFinish = jobsAhead + 1 - maxRunning;
+        if (mustFinish <= 0) {
+            return 0;
+        }
+        return (long) Math.ceil(mustFinish * avgJobMillis / maxRunning);
+    }
+
+    private synchronized double count(boolean queued) {
+        return queued ? waiting.size() : running.size();
+    }
+
+    private synchronized double averageJobMillis() {
+        return avgJobMillis;
+    }
+}
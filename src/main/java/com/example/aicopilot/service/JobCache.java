@@ -0,0 +1,401 @@
+package com.example.aicopilot.service;
+
+import com.example.aicopilot.dto.JobStatus;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.UnaryOperator;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Bounded, memory-accounted holder of JobStatus snapshots (the in-memory tier behind JobRepository).
+ * - Finished (COMPLETED / FAILED / CANCELLED) jobs expire after a TTL.
+ * - Retained bytes are estimated from the serialized artifact size; over budget, the least-recently-read
+ *   finished jobs are evicted. In-flight jobs are never evicted.
+ * - Optionally, budget-evicted jobs are spilled to disk and transparently reloaded on the next read until their TTL ends.
+ *   A spill file's modification time is the job's terminal time, so reloading never restarts the TTL.
+ */
+@Slf4j
+@Component
+public class JobCache {
+
+    // Rough cost of the state fields, map headers and object overhead per job
+    private static final long BASE_ENTRY_BYTES = 1024;
+    // Job ids come from request paths; only plain ids may become file names
+    private static final Pattern SAFE_JOB_ID = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+    // Budget eviction frees down to this share of max-bytes, so one pass covers many subsequent puts
+    private static final double LOW_WATER_MARK = 0.9;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong retainedBytes = new AtomicLong();
+    private final Object evictionLock = new Object();
+    private volatile boolean evictable = true; // False once a pass ran out of finished jobs; set again when a job finishes
+
+    private final ObjectMapper objectMapper;
+    private final Duration ttl;
+    private final long maxBytes;
+    private final Path spillDir; // null = no spill tier
+    private final ScheduledExecutorService sweeper =
+            Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "job-cache-sweeper"));
+
+    private final Counter ttlEvictions;
+    private final Counter budgetEvictions;
+    private final Counter spillReloads;
+    private final Counter casRetries;
+
+    // Terminal job reloaded from the spill tier; terminalAt comes from the file's modification time
+    private record Spilled(JobStatus status, long terminalAt) {
+    }
+
+    /**
+     * Artifact sizes are kept per artifact so an update that does not touch an artifact never re-serializes it.
+     * Identity equality on purpose: CAS (replace/remove) must compare the exact snapshot that was read.
+     */
+    private static final class Entry {
+        final JobStatus status;
+        final long processBytes;
+        final long dataBytes;
+        final long formBytes;
+        final long terminalAt;
+        final AtomicLong lastReadAt;
+
+        Entry(JobStatus status, long processBytes, long dataBytes, long formBytes, long terminalAt, AtomicLong lastReadAt) {
+            this.status = status;
+            this.processBytes = processBytes;
+            this.dataBytes = dataBytes;
+            this.formBytes = formBytes;
+            this.terminalAt = terminalAt;
+            this.lastReadAt = lastReadAt;
+        }
+
+        long bytes() {
+            return BASE_ENTRY_BYTES + processBytes + dataBytes + formBytes;
+        }
+    }
+
+    public JobCache(ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                    @Value("${copilot.jobs.ttl:1h}") Duration ttl,
+                    @Value("${copilot.jobs.max-bytes:268435456}") long maxBytes, // 256MB
+                    @Value("${copilot.jobs.spill-dir:}") String spillDir, // Empty = no spill tier
+                    @Value("${copilot.jobs.sweep-interval:1m}") Duration sweepInterval) {
+        this.objectMapper = objectMapper;
+        this.ttl = ttl;
+        this.maxBytes = maxBytes;
+        this.spillDir = initSpillDir(spillDir);
+
+        meterRegistry.gauge("copilot.jobs.live", entries, Map::size);
+        meterRegistry.gauge("copilot.jobs.retained.bytes", retainedBytes, AtomicLong::get);
+        this.ttlEvictions = meterRegistry.counter("copilot.jobs.evictions", "reason", "ttl");
+        this.budgetEvictions = meterRegistry.counter("copilot.jobs.evictions", "reason", "budget");
+        this.spillReloads = meterRegistry.counter("copilot.jobs.spill.reloads");
+        this.casRetries = meterRegistry.counter("copilot.jobs.update.retries");
+
+        long sweepMillis = sweepInterval.toMillis();
+        sweeper.scheduleWithFixedDelay(this::sweep, sweepMillis, sweepMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Client read: counts towards recency for budget eviction.
+     */
+    public JobStatus get(String jobId) {
+        Entry entry = lookup(jobId);
+        if (entry == null) {
+            return null;
+        }
+        entry.lastReadAt.set(System.currentTimeMillis());
+        return entry.status;
+    }
+
+    /**
+     * Internal read (pipeline updates): does not refresh recency.
+     */
+    public JobStatus peek(String jobId) {
+        Entry entry = lookup(jobId);
+        return entry != null ? entry.status : null;
+    }
+
+    public void put(JobStatus status) {
+        // Sized outside compute() so artifact serialization never runs under the map's bin lock
+        Entry hint = entries.get(status.jobId());
+        Entry prepared = toEntry(status, hint);
+        entries.compute(status.jobId(), (jobId, previous) -> {
+            Entry next = previous == hint ? prepared : toEntry(status, previous);
+            retainedBytes.addAndGet(next.bytes() - (previous != null ? previous.bytes() : 0));
+            return next;
+        });
+        enforceBudget();
+    }
+
+    /**
+     * Atomic read-modify-write of one job (optimistic CAS with retry).
+     * The transition runs against the latest snapshot; if another writer got in first it is re-applied
+     * to the newer snapshot, so concurrent updates are never lost. It must therefore be side-effect free.
+     *
+     * @return the committed snapshot, or null if the job does not exist
+     */
+    public JobStatus update(String jobId, UnaryOperator<JobStatus> transition) {
+        while (true) {
+            Entry current = lookup(jobId);
+            if (current == null) {
+                return null;
+            }
+            JobStatus next = transition.apply(current.status);
+            if (next == current.status) {
+                return next; // Transition declined (e.g. job already cancelled)
+            }
+            Entry prepared = toEntry(next, current); // Sized outside any lock
+            if (entries.replace(jobId, current, prepared)) {
+                retainedBytes.addAndGet(prepared.bytes() - current.bytes());
+                enforceBudget();
+                return next;
+            }
+            casRetries.increment();
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long retainedBytes() {
+        return retainedBytes.get();
+    }
+
+    private Entry lookup(String jobId) {
+        Entry entry = entries.get(jobId);
+        if (entry != null) {
+            return entry;
+        }
+        Spilled spilled = readSpilled(jobId);
+        if (spilled == null) {
+            return null;
+        }
+        spillReloads.increment();
+        // Another thread may have reloaded (or recreated) the job meanwhile; the in-memory copy wins
+        entries.computeIfAbsent(jobId, id -> {
+            Entry reloaded = toEntry(spilled.status(), null, spilled.terminalAt());
+            retainedBytes.addAndGet(reloaded.bytes());
+            return reloaded;
+        });
+        enforceBudget();
+        return entries.get(jobId);
+    }
+
+    private Entry toEntry(JobStatus status, Entry previous) {
+        return toEntry(status, previous, System.currentTimeMillis());
+    }
+
+    // finishedAt: terminal time to record if the job is terminal and was not before
+    private Entry toEntry(JobStatus status, Entry previous, long finishedAt) {
+        long now = System.currentTimeMillis();
+        long terminalAt = !status.state().isTerminal() ? 0
+                : previous != null && previous.terminalAt > 0 ? previous.terminalAt : finishedAt;
+        if (terminalAt > 0 && (previous == null || previous.terminalAt == 0)) {
+            evictable = true;
+        }
+        AtomicLong lastReadAt = previous != null ? previous.lastReadAt : new AtomicLong(now);
+
+        JobStatus before = previous != null ? previous.status : null;
+        return new Entry(status,
+                before != null && before.processResponse() == status.processResponse()
+                        ? previous.processBytes : estimateBytes(status.processResponse()),
+                before != null && before.dataEntitiesResponse() == status.dataEntitiesResponse()
+                        ? previous.dataBytes : estimateBytes(status.dataEntitiesResponse()),
+                before != null && before.formResponse() == status.formResponse()
+                        ? previous.formBytes : estimateBytes(status.formResponse()),
+                terminalAt, lastReadAt);
+    }
+
+    // Serialized size, measured without materializing the JSON
+    private long estimateBytes(Object artifact) {
+        if (artifact == null) {
+            return 0;
+        }
+        CountingOutputStream counter = new CountingOutputStream();
+        try {
+            objectMapper.writeValue(counter, artifact);
+        } catch (IOException e) {
+            log.debug("Could not size artifact {}: {}", artifact.getClass().getSimpleName(), e.getMessage());
+        }
+        return counter.count;
+    }
+
+    private void enforceBudget() {
+        if (retainedBytes.get() <= maxBytes || !evictable) {
+            return;
+        }
+        synchronized (evictionLock) {
+            if (retainedBytes.get() <= maxBytes) {
+                return; // Another writer already made room
+            }
+            long target = (long) (maxBytes * LOW_WATER_MARK);
+            // Recency is snapshotted first: concurrent reads must not change the sort keys mid-sort
+            record Candidate(String jobId, Entry entry, long lastReadAt) {
+            }
+            List<Candidate> candidates = entries.entrySet().stream()
+                    .filter(e -> e.getValue().terminalAt > 0)
+                    .map(e -> new Candidate(e.getKey(), e.getValue(), e.getValue().lastReadAt.get()))
+                    .sorted(Comparator.comparingLong(Candidate::lastReadAt))
+                    .toList();
+            for (Candidate candidate : candidates) {
+                if (retainedBytes.get() <= target) {
+                    break;
+                }
+                if (remove(candidate.jobId(), candidate.entry())) {
+                    budgetEvictions.increment();
+                    writeSpilled(candidate.entry());
+                }
+            }
+            if (retainedBytes.get() > maxBytes) {
+                evictable = false; // Only in-flight jobs left; no point re-scanning on every put until one finishes
+            }
+        }
+    }
+
+    private void sweep() {
+        try {
+            long now = System.currentTimeMillis();
+            entries.forEach((jobId, entry) -> {
+                if (entry.terminalAt > 0 && now - entry.terminalAt > ttl.toMillis() && remove(jobId, entry)) {
+                    ttlEvictions.increment();
+                }
+            });
+            pruneSpillDir(now);
+        } catch (RuntimeException e) {
+            log.warn("Job cache sweep failed: {}", e.getMessage());
+        }
+    }
+
+    // Removes only if the entry was not replaced concurrently
+    private boolean remove(String jobId, Entry entry) {
+        if (entries.remove(jobId, entry)) {
+            retainedBytes.addAndGet(-entry.bytes());
+            return true;
+        }
+        return false;
+    }
+
+    // ------------------------------------------------------------------
+    // Optional spill tier
+    // ------------------------------------------------------------------
+
+    private Path initSpillDir(String dir) {
+        if (dir == null || dir.isBlank()) {
+            return null;
+        }
+        try {
+            return Files.createDirectories(Path.of(dir));
+        } catch (IOException e) {
+            log.warn("Job spill directory {} is not usable, spilling disabled: {}", dir, e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeSpilled(Entry entry) {
+        JobStatus status = entry.status;
+        if (spillDir == null || !SAFE_JOB_ID.matcher(status.jobId()).matches()) {
+            return;
+        }
+        try {
+            Path tmp = Files.createTempFile(spillDir, status.jobId(), ".tmp");
+            objectMapper.writeValue(tmp.toFile(), status);
+            Files.setLastModifiedTime(tmp, FileTime.fromMillis(entry.terminalAt));
+            Files.move(tmp, spillFile(status.jobId()), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Failed to spill job {}: {}", status.jobId(), e.getMessage());
+        }
+    }
+
+    private Spilled readSpilled(String jobId) {
+        if (spillDir == null || !SAFE_JOB_ID.matcher(jobId).matches()) {
+            return null;
+        }
+        Path file = spillFile(jobId);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try {
+            long terminalAt = Files.getLastModifiedTime(file).toMillis();
+            if (System.currentTimeMillis() - terminalAt > ttl.toMillis()) {
+                Files.deleteIfExists(file); // Expired while spilled
+                return null;
+            }
+            JobStatus status = objectMapper.readValue(file.toFile(), JobStatus.class);
+            Files.deleteIfExists(file); // Memory is authoritative again
+            return new Spilled(status, terminalAt);
+        } catch (IOException e) {
+            log.warn("Failed to reload spilled job {}: {}", jobId, e.getMessage());
+            return null;
+        }
+    }
+
+    private void pruneSpillDir(long now) {
+        if (spillDir == null) {
+            return;
+        }
+        try (Stream<Path> files = Files.list(spillDir)) {
+            files.filter(file -> isOlderThanTtl(file, now)).forEach(file -> {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException ignored) {
+                    // Retried on the next sweep
+                }
+            });
+        } catch (IOException e) {
+            log.debug("Could not list job spill directory: {}", e.getMessage());
+        }
+    }
+
+    // Spill files carry the job's terminal time as their modification time
+    private boolean isOlderThanTtl(Path file, long now) {
+        try {
+            return now - Files.getLastModifiedTime(file).toMillis() > ttl.toMillis();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private Path spillFile(String jobId) {
+        return spillDir.resolve(jobId + ".json");
+    }
+
+    @PreDestroy
+    void shutdown() {
+        sweeper.shutdownNow();
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
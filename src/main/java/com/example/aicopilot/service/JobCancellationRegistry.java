@@ -0,0 +1,198 @@
+package com.example.aicopilot.service;
+
+import com.example.aicopilot.dto.JobStatus;
+import com.example.aicopilot.event.JobUpdatedEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cancellation and deadlines for running jobs.
+ * - A cancelled job (user request or passed deadline) is moved to CANCELLED right away; the pipeline notices it
+ *   at the next {@link #checkpoint} between stages and stops before issuing further LLM calls.
+ * - Threads working on the job (see {@link #enter}) are interrupted, which aborts waits for provider capacity
+ *   (rate limiter, bulkhead, coalesced and streamed responses), so the job frees its share within the sweep interval.
+ *   An interrupted coalescing leader hands its call to the jobs waiting on it instead of failing them, and
+ *   stage results that still arrive after the cancel are not written to the job.
+ */
+@Slf4j
+@Service
+public class JobCancellationRegistry {
+
+    private final JobRepository jobRepository;
+    private final Duration maxDeadline;
+    private final Map<String, Control> jobs = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService sweeper =
+            Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "job-deadline-sweeper"));
+
+    private final Counter cancelledByUser;
+    private final Counter cancelledByDeadline;
+
+    private static final class Control {
+        final long deadline;
+        final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        boolean cancelled; // Guarded by this, together with thread (un)binding
+
+        Control(long deadline) {
+            this.deadline = deadline;
+        }
+
+        synchronized void interruptAll() {
+            cancelled = true;
+            threads.forEach(Thread::interrupt);
+        }
+
+        synchronized void unbind(Thread thread) {
+            threads.remove(thread);
+            if (cancelled) {
+                Thread.interrupted(); // Do not leak our interrupt into the next task on a pooled thread
+            }
+        }
+    }
+
+    /**
+     * Binding of the current thread to a job; closing it never throws.
+     */
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    /**
+     * Thrown at a checkpoint once the job has been cancelled; the pipeline just unwinds.
+     */
+    public static class JobCancelledException extends RuntimeException {
+        public JobCancelledException(String jobId) {
+            super("Job " + jobId + " was cancelled");
+        }
+    }
+
+    public JobCancellationRegistry(JobRepository jobRepository, MeterRegistry meterRegistry,
+                                   @Value("${copilot.jobs.deadline:10m}") Duration maxDeadline, // Default and upper bound per job
+                                   @Value("${copilot.jobs.deadline-check-interval:200ms}") Duration checkInterval) {
+        this.jobRepository = jobRepository;
+        this.maxDeadline = maxDeadline;
+        this.cancelledByUser = meterRegistry.counter("copilot.jobs.cancelled", "reason", "user");
+        this.cancelledByDeadline = meterRegistry.counter("copilot.jobs.cancelled", "reason", "deadline");
+        meterRegistry.gauge("copilot.jobs.deadlines.tracked", jobs, Map::size);
+
+        long checkMillis = checkInterval.toMillis();
+        sweeper.scheduleWithFixedDelay(this::expireDeadlines, checkMillis, checkMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Starts the job's deadline clock (time in the admission queue counts too).
+     * @param requested Deadline asked for by the client, or null; capped at copilot.jobs.deadline
+     */
+    public void register(String jobId, Duration requested) {
+        Duration deadline = requested == null || requested.compareTo(maxDeadline) > 0 ? maxDeadline : requested;
+        jobs.put(jobId, new Control(System.currentTimeMillis() + deadline.toMillis()));
+    }
+
+    /**
+     * @return the job after the request: CANCELLED, or its earlier terminal state if it had already finished;
+     *         null if the job does not exist
+     */
+    public JobStatus cancel(String jobId, String reason) {
+        if (jobRepository.findById(jobId) == null) {
+            return null;
+        }
+        if (doCancel(jobId, reason)) {
+            cancelledByUser.increment();
+        }
+        return jobRepository.findById(jobId);
+    }
+
+    /**
+     * Cooperative cancellation point; call between stages and before each retry.
+     */
+    public void checkpoint(String jobId) {
+        Control control = jobs.get(jobId);
+        if (control != null && System.currentTimeMillis() > control.deadline) {
+            expire(jobId);
+        }
+        if (isCancelled(jobId)) {
+            throw new JobCancelledException(jobId);
+        }
+    }
+
+    public boolean isCancelled(String jobId) {
+        JobStatus status = jobRepository.findById(jobId);
+        return status != null && status.state() == JobStatus.State.CANCELLED;
+    }
+
+    /**
+     * Binds the current thread to the job so a cancel can interrupt its blocking waits.
+     * Use with try-with-resources around one pipeline stage.
+     */
+    public Scope enter(String jobId) {
+        checkpoint(jobId);
+        Control control = jobs.get(jobId);
+        if (control == null) {
+            return () -> {
+            };
+        }
+        Thread thread = Thread.currentThread();
+        control.threads.add(thread);
+        if (isCancelled(jobId)) {
+            control.unbind(thread); // Cancelled while binding
+            throw new JobCancelledException(jobId);
+        }
+        return () -> control.unbind(thread);
+    }
+
+    // Finished jobs need no deadline any more
+    @EventListener
+    public void onJobUpdated(JobUpdatedEvent event) {
+        if (event.getState().isTerminal()) {
+            jobs.remove(event.getJobId());
+        }
+    }
+
+    private void expireDeadlines() {
+        try {
+            long now = System.currentTimeMillis();
+            jobs.forEach((jobId, control) -> {
+                if (now > control.deadline) {
+                    expire(jobId);
+                }
+            });
+        } catch (RuntimeException e) {
+            log.warn("Deadline sweep failed", e);
+        }
+    }
+
+    private void expire(String jobId) {
+        if (doCancel(jobId, "Job exceeded its deadline and was cancelled.")) {
+            cancelledByDeadline.increment();
+            log.info("Job {} exceeded its deadline", jobId);
+        }
+    }
+
+    // State first (stops further stages and the admission queue), then interrupt in-flight waits
+    private boolean doCancel(String jobId, String reason) {
+        Control control = jobs.get(jobId);
+        boolean cancelled = jobRepository.cancel(jobId, reason);
+        if (cancelled && control != null) {
+            control.interruptAll();
+        }
+        return cancelled;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        sweeper.shutdownNow();
+    }
+}
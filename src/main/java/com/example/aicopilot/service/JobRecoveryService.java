@@ -0,0 +1,83 @@
+package com.example.aicopilot.service;
+
+import com.example.aicopilot.dto.JobInput;
+import com.example.aicopilot.dto.JobStatus;
+import com.example.aicopilot.store.JobStore;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+
+/**
+ * Restores persisted jobs after a restart and resumes the ones that were still running
+ * from their last saved stage (PROCESS -> DATA -> FORM), so finished LLM stages are never repeated.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class JobRecoveryService {
+
+    private final JobStore jobStore;
+    private final JobRepository jobRepository;
+    private final WorkflowOrchestrator orchestrator;
+    private final AsyncArtifactGenerator asyncArtifactGenerator;
+    private final JobAdmissionController admissionController;
+    private final JobCancellationRegistry jobCancellation;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void recoverJobs() {
+        Map<String, JobStore.StoredJob> jobs = jobStore.recover();
+        int resumed = 0;
+        for (JobStore.StoredJob job : jobs.values()) {
+            jobRepository.restore(job.status());
+            if (!job.status().state().isTerminal()) {
+                resume(job.status(), job.input());
+                resumed++;
+            }
+        }
+        if (!jobs.isEmpty()) {
+            log.info("Recovered {} jobs from the job store, resuming {}", jobs.size(), resumed);
+        }
+    }
+
+    private void resume(JobStatus status, JobInput input) {
+        String jobId = status.jobId();
+        Map<String, Long> savedStages = status.stageDurations();
+
+        if (savedStages.containsKey("FORM")) {
+            // Only the final state update was lost
+            jobRepository.updateState(jobId, JobStatus.State.COMPLETED, "All designs completed.");
+            return;
+        }
+        if (input == null) {
+            jobRepository.updateState(jobId, JobStatus.State.FAILED, "Job was interrupted by a server restart and cannot be resumed.");
+            return;
+        }
+
+        jobCancellation.register(jobId, null); // Fresh deadline after the restart
+
+        String userRequest = input.mode() == JobInput.Mode.QUICK_START
+                ? input.userRequest()
+                : WorkflowOrchestrator.MANUAL_TRANSFORMATION_REQUEST;
+
+        // Resumed jobs go through admission like new ones, so a restart does not start them all at once
+        if (savedStages.containsKey("DATA")) {
+            admissionController.dispatch(jobId, () -> {
+                jobRepository.updateState(jobId, JobStatus.State.PROCESSING, "Resuming after restart: configuring forms...");
+                asyncArtifactGenerator.resume(jobId, userRequest, status.processResponse(), status.dataEntitiesResponse());
+            });
+        } else if (savedStages.containsKey("PROCESS")) {
+            admissionController.dispatch(jobId, () -> {
+                jobRepository.updateState(jobId, JobStatus.State.PROCESSING, "Resuming after restart: defining data model...");
+                asyncArtifactGenerator.resume(jobId, userRequest, status.processResponse(), null);
+            });
+        } else if (input.mode() == JobInput.Mode.QUICK_START) {
+            admissionController.dispatch(jobId, () -> orchestrator.runQuickStartJob(jobId, input.userRequest(), input.tenantId()));
+        } else {
+            admissionController.dispatch(jobId, () -> orchestrator.runTransformationJob(jobId, input.definitionJson(), input.tenantId()));
+        }
+    }
+}
@@ -4,22 +4,33 @@ import com.example.aicopilot.dto.*;
 import com.example.aicopilot.dto.dataEntities.DataEntitiesResponse;
 import com.example.aicopilot.dto.form.FormResponse;
 import com.example.aicopilot.dto.process.ProcessResponse;
+import com.example.aicopilot.event.JobUpdatedEvent;
+import com.example.aicopilot.store.JobStore;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Component;
 
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
 
 /**
  * 작업 상태 및 산출물을 관리하는 인메모리 저장소.
  * 단계별 소요 시간 및 진행 상태를 추적합니다.
+ * 메모리 상한/TTL 관리는 JobCache가, 재시작 후 복구를 위한 영속화는 JobStore가 담당합니다.
  */
 @Component
+@RequiredArgsConstructor
 public class JobRepository {
-    private final Map<String, JobStatus> store = new ConcurrentHashMap<>();
+    private final JobCache store;
+    private final JobStore jobStore;
+    private final ApplicationEventPublisher eventPublisher;
 
     public void save(JobStatus status) {
-        store.put(status.jobId(), status);
+        store.put(status);
+        jobStore.appendStatus(status); // 비동기 그룹 커밋 (요청 경로에서 I/O 대기 없음)
+        // 상태 구독자(SSE)에게 변경 알림
+        eventPublisher.publishEvent(new JobUpdatedEvent(this, status.jobId(), status.version(), status.state()));
     }
 
     public JobStatus findById(String jobId) {
@@ -30,30 +41,80 @@ public class JobRepository {
             return new JobStatus(
                     status.jobId(), status.state(), status.message(), status.lastUpdatedStage(),
                     status.version(), status.startTime(), status.stageDurations(), currentElapsed,
+                    status.queuePosition(), status.artifactVersions(),
                     status.processResponse(), status.dataEntitiesResponse(), status.formResponse()
             );
         }
         return status;
     }
 
-    public void initJob(String jobId) {
-        save(JobStatus.init(jobId));
+    public void initJob(String jobId, JobInput input) {
+        initJob(jobId, input, null);
+    }
+
+    public void initJob(String jobId, JobInput input, Integer queuePosition) {
+        jobStore.appendInput(jobId, input); // 재시작 시 작업 재개에 필요한 원본 입력
+        save(JobStatus.init(jobId, queuePosition));
+    }
+
+    // 재시작 복구: 영속 저장소의 스냅샷을 메모리에만 적재 (다시 기록하지 않음)
+    public void restore(JobStatus status) {
+        store.put(status);
     }
 
     public void updateState(String jobId, JobStatus.State state, String message) {
-        JobStatus current = store.get(jobId);
-        if (current != null) {
-            long elapsed = System.currentTimeMillis() - current.startTime();
-            save(new JobStatus(
-                    jobId, state, message,
+        // 취소된 작업은 최종 상태로 고정 (뒤늦게 끝난 단계가 FAILED/COMPLETED로 덮어쓰지 않도록)
+        update(jobId, current -> current.state() == JobStatus.State.CANCELLED ? current : new JobStatus(
+                jobId, state, message,
+                current.lastUpdatedStage(),
+                current.version() + 1,
+                current.startTime(),
+                current.stageDurations(),
+                System.currentTimeMillis() - current.startTime(),
+                state == JobStatus.State.PENDING ? current.queuePosition() : null, // 실행이 시작되면 대기 순번 제거
+                current.artifactVersions(),
+                current.processResponse(), current.dataEntitiesResponse(), current.formResponse()
+        ));
+    }
+
+    // 취소: 아직 끝나지 않은 작업만 CANCELLED로 전이 (이미 종료된 작업은 그대로)
+    public boolean cancel(String jobId, String message) {
+        boolean[] cancelled = new boolean[1];
+        update(jobId, current -> {
+            cancelled[0] = !current.state().isTerminal();
+            return cancelled[0] ? new JobStatus(
+                    jobId, JobStatus.State.CANCELLED, message,
                     current.lastUpdatedStage(),
                     current.version() + 1,
                     current.startTime(),
                     current.stageDurations(),
-                    elapsed,
+                    System.currentTimeMillis() - current.startTime(),
+                    null,
+                    current.artifactVersions(),
                     current.processResponse(), current.dataEntitiesResponse(), current.formResponse()
-            ));
+            ) : current;
+        });
+        return cancelled[0];
+    }
+
+    // 대기열 순번 갱신 (아직 시작 전인 작업만)
+    public void updateQueuePosition(String jobId, int queuePosition) {
+        JobStatus current = store.peek(jobId);
+        if (current == null || current.state() != JobStatus.State.PENDING
+                || Integer.valueOf(queuePosition).equals(current.queuePosition())) {
+            return;
         }
+        update(jobId, latest -> latest.state() != JobStatus.State.PENDING ? latest : new JobStatus(
+                jobId, latest.state(), latest.message(),
+                latest.lastUpdatedStage(),
+                latest.version() + 1,
+                latest.startTime(),
+                latest.stageDurations(),
+                latest.totalElapsedMillis(),
+                queuePosition,
+                latest.artifactVersions(),
+                latest.processResponse(), latest.dataEntitiesResponse(), latest.formResponse()
+        ));
     }
 
     // 아티팩트 저장 및 소요 시간 기록 메서드들
@@ -69,29 +130,105 @@ public class JobRepository {
         updateArtifactWithDuration(jobId, type, null, null, formResponse, durationMillis);
     }
 
+    // 파이프라인 단계 결과 저장: JobStatus에 필드가 없는 산출물(향후 단계)은 소요 시간만 기록
+    public void saveStageResult(String jobId, String stage, Object artifact, long durationMillis) {
+        updateArtifactWithDuration(jobId, stage,
+                artifact instanceof ProcessResponse proc ? proc : null,
+                artifact instanceof DataEntitiesResponse data ? data : null,
+                artifact instanceof FormResponse form ? form : null,
+                durationMillis);
+    }
+
+    // 스트리밍 중간 결과 저장 (완료 단계/소요 시간은 갱신하지 않고 버전만 올림)
+    public void savePartialArtifact(String jobId, ProcessResponse processResponse) {
+        updatePartialArtifact(jobId, processResponse, null, null);
+    }
+
+    public void savePartialArtifact(String jobId, DataEntitiesResponse dataEntitiesResponse) {
+        updatePartialArtifact(jobId, null, dataEntitiesResponse, null);
+    }
+
+    public void savePartialArtifact(String jobId, FormResponse formResponse) {
+        updatePartialArtifact(jobId, null, null, formResponse);
+    }
+
+    private void updatePartialArtifact(String jobId, ProcessResponse proc, DataEntitiesResponse data, FormResponse form) {
+        update(jobId, current -> {
+            if (current.state().isTerminal()) {
+                return current; // 완료/실패/취소 후 뒤늦게 도착한 중간 결과는 버림 (최종 결과를 덮어쓰지 않도록)
+            }
+            long version = current.version() + 1;
+            return new JobStatus(
+                    jobId, current.state(), current.message(),
+                    current.lastUpdatedStage(),
+                    version,
+                    current.startTime(),
+                    current.stageDurations(),
+                    System.currentTimeMillis() - current.startTime(),
+                    current.queuePosition(),
+                    bumpArtifactVersions(current, version, proc, data, form),
+                    proc != null ? proc : current.processResponse(),
+                    data != null ? data : current.dataEntitiesResponse(),
+                    form != null ? form : current.formResponse()
+            );
+        });
+    }
+
     private void updateArtifactWithDuration(String jobId, String stageName,
                                             ProcessResponse proc, DataEntitiesResponse data, FormResponse form,
                                             long durationMillis) {
-        JobStatus current = store.get(jobId);
-        if (current != null) {
+        update(jobId, current -> {
+            if (current.state() == JobStatus.State.CANCELLED) {
+                return current; // 취소 후 끝난 단계의 산출물은 기록하지 않음
+            }
             Map<String, Long> newDurations = new HashMap<>(current.stageDurations());
             newDurations.put(stageName, durationMillis);
 
-            long elapsed = System.currentTimeMillis() - current.startTime();
-
             ProcessResponse p = proc != null ? proc : current.processResponse();
             DataEntitiesResponse d = data != null ? data : current.dataEntitiesResponse();
             FormResponse f = form != null ? form : current.formResponse();
+            long version = current.version() + 1;
 
-            save(new JobStatus(
-                    jobId, JobStatus.State.PROCESSING, current.message(),
+            return new JobStatus(
+                    // 동시에 기록된 종료 상태(FAILED 등)는 되돌리지 않음
+                    jobId, current.state().isTerminal() ? current.state() : JobStatus.State.PROCESSING, current.message(),
                     stageName, // 마지막 업데이트 단계 갱신
-                    current.version() + 1,
+                    version,
                     current.startTime(),
                     newDurations,
-                    elapsed,
+                    System.currentTimeMillis() - current.startTime(),
+                    null,
+                    bumpArtifactVersions(current, version, proc, data, form),
                     p, d, f
-            ));
+            );
+        });
+    }
+
+    /**
+     * 작업 단위 원자적 갱신 (CAS + 재시도).
+     * 전이 함수는 항상 최신 스냅샷에 적용되므로 동시 갱신이 서로를 덮어쓰지 않고,
+     * version은 작업별로 엄격하게 단조 증가합니다. (전이 함수는 재실행될 수 있으므로 부수효과 금지)
+     * 전이 함수가 입력 스냅샷을 그대로 반환하면 갱신하지 않은 것으로 보고 기록/발행을 생략합니다.
+     */
+    private void update(String jobId, UnaryOperator<JobStatus> transition) {
+        JobStatus[] before = new JobStatus[1];
+        JobStatus updated = store.update(jobId, current -> {
+            before[0] = current;
+            return transition.apply(current);
+        });
+        if (updated != null && updated != before[0]) {
+            jobStore.appendStatus(updated);
+            eventPublisher.publishEvent(new JobUpdatedEvent(this, jobId, updated.version(), updated.state()));
         }
     }
+
+    // 이번 갱신에서 바뀐 아티팩트만 새 버전으로 표시 (?since=N 델타 응답용)
+    private static Map<String, Long> bumpArtifactVersions(JobStatus current, long version,
+                                                          ProcessResponse proc, DataEntitiesResponse data, FormResponse form) {
+        Map<String, Long> versions = new HashMap<>(current.artifactVersions());
+        if (proc != null) versions.put(JobStatus.ARTIFACT_PROCESS, version);
+        if (data != null) versions.put(JobStatus.ARTIFACT_DATA, version);
+        if (form != null) versions.put(JobStatus.ARTIFACT_FORM, version);
+        return Map.copyOf(versions);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,219 @@
+package com.example.aicopilot.service;
+
+import com.example.aicopilot.dto.JobStatus;
+import com.example.aicopilot.event.JobUpdatedEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Push channels for job status: Server-Sent Events and long-poll waiters.
+ * Subscribers receive an event only when the JobRepository bumps the job version (event id = version),
+ * so idle jobs cost nothing but a periodic heartbeat. Emitters and long-poll requests are servlet-async,
+ * so thousands of idle subscribers do not hold a thread each; fan-out runs on a single dispatcher thread.
+ */
+@Service
+public class JobStatusBroadcaster {
+
+    private final JobRepository jobRepository;
+    private final ObjectMapper objectMapper;
+
+    private final Map<String, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final Map<String, Set<VersionWaiter>> waiters = new ConcurrentHashMap<>();
+    private final ExecutorService dispatcher = Executors.newSingleThreadExecutor(r -> new Thread(r, "job-sse-dispatch"));
+    private final ScheduledExecutorService heartbeat = Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "job-sse-heartbeat"));
+
+    private final long emitterTimeoutMillis;
+
+    private static final class Subscriber {
+        final SseEmitter emitter;
+        volatile long lastSentVersion;
+
+        Subscriber(SseEmitter emitter, long lastSentVersion) {
+            this.emitter = emitter;
+            this.lastSentVersion = lastSentVersion;
+        }
+    }
+
+    private record VersionWaiter(long minVersion, CompletableFuture<JobStatus> future) {
+    }
+
+    public JobStatusBroadcaster(JobRepository jobRepository, ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                                @Value("${copilot.sse.timeout-ms:1800000}") long emitterTimeoutMillis, // 30 min
+                                @Value("${copilot.sse.heartbeat-seconds:15}") long heartbeatSeconds) {
+        this.jobRepository = jobRepository;
+        this.objectMapper = objectMapper;
+        this.emitterTimeoutMillis = emitterTimeoutMillis;
+        meterRegistry.gauge("copilot.sse.subscribers", subscribers, s -> s.values().stream().mapToInt(Set::size).sum());
+        meterRegistry.gauge("copilot.status.longpoll.waiters", waiters, w -> w.values().stream().mapToInt(Set::size).sum());
+        heartbeat.scheduleAtFixedRate(this::sendHeartbeats, heartbeatSeconds, heartbeatSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * @param lastEventId Last version the client has seen (Last-Event-ID header on reconnect), or null
+     * @return the emitter, or null if the job does not exist
+     */
+    public SseEmitter subscribe(String jobId, Long lastEventId) {
+        if (jobRepository.findById(jobId) == null) {
+            return null;
+        }
+
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMillis);
+        Subscriber subscriber = new Subscriber(emitter, lastEventId != null ? lastEventId : -1L);
+        subscribers.compute(jobId, (k, set) -> {
+            Set<Subscriber> target = set != null ? set : ConcurrentHashMap.newKeySet();
+            target.add(subscriber);
+            return target;
+        });
+
+        emitter.onCompletion(() -> unsubscribe(jobId, subscriber));
+        emitter.onTimeout(() -> unsubscribe(jobId, subscriber));
+        emitter.onError(e -> unsubscribe(jobId, subscriber));
+
+        // Initial snapshot (or resume): only sent if the client is behind the current version
+        dispatcher.execute(() -> push(jobId, Set.of(subscriber)));
+        return emitter;
+    }
+
+    /**
+     * Long-poll support: completes once the job reaches at least {@code minVersion} (or a terminal state).
+     * Callers cancel the future on timeout, which also unregisters the waiter.
+     */
+    public CompletableFuture<JobStatus> awaitVersion(String jobId, long minVersion) {
+        CompletableFuture<JobStatus> future = new CompletableFuture<>();
+        VersionWaiter waiter = new VersionWaiter(minVersion, future);
+        waiters.compute(jobId, (k, set) -> {
+            Set<VersionWaiter> target = set != null ? set : ConcurrentHashMap.newKeySet();
+            target.add(waiter);
+            return target;
+        });
+        future.whenComplete((status, error) -> waiters.computeIfPresent(jobId, (k, set) -> {
+            set.remove(waiter);
+            return set.isEmpty() ? null : set;
+        }));
+
+        // Checked after registering so an update between the two steps is never missed
+        JobStatus current = jobRepository.findById(jobId);
+        if (current == null) {
+            future.complete(null);
+        } else if (isReady(current, minVersion)) {
+            future.complete(current);
+        }
+        return future;
+    }
+
+    @EventListener
+    public void onJobUpdated(JobUpdatedEvent event) {
+        Set<Subscriber> jobSubscribers = subscribers.get(event.getJobId());
+        Set<VersionWaiter> jobWaiters = waiters.get(event.getJobId());
+        if ((jobSubscribers == null || jobSubscribers.isEmpty()) && (jobWaiters == null || jobWaiters.isEmpty())) {
+            return;
+        }
+        // Hand off so the pipeline thread that saved the status never waits on slow clients
+        dispatcher.execute(() -> {
+            if (jobWaiters != null) {
+                releaseWaiters(event.getJobId(), jobWaiters);
+            }
+            if (jobSubscribers != null) {
+                push(event.getJobId(), jobSubscribers);
+            }
+        });
+    }
+
+    private void releaseWaiters(String jobId, Set<VersionWaiter> targets) {
+        JobStatus status = jobRepository.findById(jobId);
+        if (status == null) {
+            return;
+        }
+        for (VersionWaiter waiter : targets) {
+            if (isReady(status, waiter.minVersion())) {
+                waiter.future().complete(status);
+            }
+        }
+    }
+
+    private static boolean isReady(JobStatus status, long minVersion) {
+        return status.version() >= minVersion || isTerminal(status);
+    }
+
+    private static boolean isTerminal(JobStatus status) {
+        return status.state().isTerminal();
+    }
+
+    private void push(String jobId, Set<Subscriber> targets) {
+        JobStatus status = jobRepository.findById(jobId);
+        if (status == null) {
+            return;
+        }
+
+        String payload = null; // Serialized once per version, shared by all subscribers
+        boolean terminal = isTerminal(status);
+
+        for (Subscriber subscriber : targets) {
+            if (status.version() <= subscriber.lastSentVersion) {
+                // Already delivered (events may be coalesced or arrive out of order)
+                if (terminal) {
+                    subscriber.emitter.complete();
+                }
+                continue;
+            }
+            try {
+                if (payload == null) {
+                    payload = objectMapper.writeValueAsString(status);
+                }
+                subscriber.emitter.send(SseEmitter.event()
+                        .id(String.valueOf(status.version()))
+                        .name("status")
+                        .data(payload, MediaType.APPLICATION_JSON));
+                subscriber.lastSentVersion = status.version();
+                if (terminal) {
+                    subscriber.emitter.complete();
+                }
+            } catch (IOException | IllegalStateException e) {
+                unsubscribe(jobId, subscriber);
+            }
+        }
+    }
+
+    private void sendHeartbeats() {
+        subscribers.forEach((jobId, jobSubscribers) -> {
+            for (Subscriber subscriber : jobSubscribers) {
+                try {
+                    subscriber.emitter.send(SseEmitter.event().comment("heartbeat"));
+                } catch (IOException | IllegalStateException e) {
+                    unsubscribe(jobId, subscriber);
+                }
+            }
+        });
+    }
+
+    private void unsubscribe(String jobId, Subscriber subscriber) {
+        subscribers.computeIfPresent(jobId, (k, set) -> {
+            set.remove(subscriber);
+            return set.isEmpty() ? null : set;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        heartbeat.shutdownNow();
+        dispatcher.shutdownNow();
+        subscribers.values().forEach(set -> set.forEach(s -> s.emitter.complete()));
+        waiters.values().forEach(set -> set.forEach(w -> w.future().cancel(false)));
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.aicopilot.service;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * One stage of the artifact pipeline.
+ * A stage declares the artifacts it reads and the one it produces; {@link StageGraphExecutor} runs it as soon as
+ * all of its inputs exist. Artifact keys double as stage names in JobStatus.stageDurations.
+ * New stages (layout, analysis, ...) are added by declaring another bean; no listener has to change.
+ */
+public interface PipelineStage {
+
+    String PROCESS = "PROCESS";
+    String DATA = "DATA";
+    String FORM = "FORM";
+
+    /**
+     * @return key of the produced artifact (unique across stages)
+     */
+    String output();
+
+    Set<String> inputs();
+
+    /**
+     * Progress message shown while the stage runs.
+     */
+    String description();
+
+    /**
+     * @return the artifact (never null)
+     */
+    Object run(StageContext context) throws Exception;
+
+    default int maxAttempts() {
+        return 1;
+    }
+
+    /**
+     * @return timeout per attempt, or null for the executor default
+     */
+    default Duration timeout() {
+        return null;
+    }
+
+    /**
+     * @param artifacts Snapshot of the artifacts available when the stage started (contains all inputs)
+     * @param attempt   1-based
+     */
+    record StageContext(String jobId, String userRequest, Map<String, Object> artifacts, int attempt) {
+        public <T> T input(String key, Class<T> type) {
+            return type.cast(artifacts.get(key));
+        }
+    }
+}
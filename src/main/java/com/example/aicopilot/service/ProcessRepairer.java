@@ -0,0 +1,275 @@
+package com.example.aicopilot.service;
+
+import com.example.aicopilot.dto.definition.ProcessDefinition;
+import com.example.aicopilot.dto.definition.ProcessStep;
+import com.example.aicopilot.dto.process.Activity;
+import com.example.aicopilot.dto.process.NodeType;
+import com.example.aicopilot.dto.process.ProcessResponse;
+import com.example.aicopilot.dto.process.config.NodeConfiguration;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Process Repairer (The Mechanic).
+ * Deterministic fixes for the structural errors ProcessValidator reports most often, applied before
+ * falling back to a ProcessArchitect.fixMap round trip:
+ * - A task without nextActivityId that is the last activity (or an END_EVENT) -> 'node_end'.
+ * - A dangling reference (nextActivityId, branch target, default branch) that resolves to exactly one
+ *   existing node: same id modulo case/separators, a unique id extending it ('node_step_3' -> 'node_step_3_form'),
+ *   or an alias of the virtual end node ('end', 'node_end_event').
+ * Ambiguous cases are left untouched, so the LLM only sees the residual errors.
+ * For those, {@link #subgraph} cuts out the affected nodes (plus neighbours) for a targeted repair prompt,
+ * and {@link #merge} writes the patched nodes back into the full map.
+ */
+@Slf4j
+@Component
+public class ProcessRepairer {
+
+    private static final String VIRTUAL_END_NODE = "node_end";
+    private static final Set<String> END_ALIASES = Set.of("end", "end_event", "end_node", "finish", "process_end");
+
+    /**
+     * @param fixes Human-readable description of each applied fix (empty = nothing could be repaired)
+     */
+    public record Repair(ProcessResponse process, List<String> fixes) {
+        public boolean changed() {
+            return !fixes.isEmpty();
+        }
+    }
+
+    public Repair repair(ProcessResponse process) {
+        if (process.activities() == null || process.activities().isEmpty()) {
+            return new Repair(process, List.of());
+        }
+
+        Set<String> nodeIds = new LinkedHashSet<>();
+        for (Activity activity : process.activities()) {
+            nodeIds.add(activity.id());
+        }
+        Map<String, String> resolved = new HashMap<>(); // dangling id -> replacement, resolved once per map
+        List<String> fixes = new ArrayList<>();
+        List<Activity> activities = new ArrayList<>(process.activities().size());
+
+        for (int i = 0; i < process.activities().size(); i++) {
+            Activity activity = process.activities().get(i);
+            boolean last = i == process.activities().size() - 1;
+
+            String next = activity.nextActivityId();
+            if (next == null && activity.type() != NodeType.EXCLUSIVE_GATEWAY) {
+                if (last || activity.type() == NodeType.END_EVENT) {
+                    next = VIRTUAL_END_NODE;
+                    fixes.add(String.format("Node '%s': missing nextActivityId set to '%s'", activity.id(), VIRTUAL_END_NODE));
+                }
+            } else if (next != null) {
+                next = fixReference(activity.id(), "nextActivityId", next, nodeIds, resolved, fixes);
+            }
+
+            NodeConfiguration configuration = repairConfiguration(activity, nodeIds, resolved, fixes);
+
+            activities.add(next == activity.nextActivityId() && configuration == activity.configuration()
+                    ? activity
+                    : new Activity(activity.id(), activity.type(), activity.label(), activity.swimlaneId(),
+                    activity.description(), configuration, activity.inputMapping(), activity.position(),
+                    next, activity.sourceRef()));
+        }
+
+        if (fixes.isEmpty()) {
+            return new Repair(process, List.of());
+        }
+        log.info("Repaired process map locally: {}", fixes);
+        return new Repair(new ProcessResponse(process.processName(), process.description(), process.swimlanes(), activities),
+                List.copyOf(fixes));
+    }
+
+    /**
+     * The affected activities plus their direct predecessors and successors, in map order.
+     */
+    public List<Activity> subgraph(ProcessResponse process, Set<String> affectedIds) {
+        Set<String> included = new HashSet<>(affectedIds);
+        for (Activity activity : process.activities()) {
+            List<String> targets = targetsOf(activity);
+            if (affectedIds.contains(activity.id())) {
+                included.addAll(targets); // Successors
+            } else if (targets.stream().anyMatch(affectedIds::contains)) {
+                included.add(activity.id()); // Predecessors
+            }
+        }
+        return process.activities().stream()
+                .filter(activity -> included.contains(activity.id()))
+                .toList();
+    }
+
+    /**
+     * The definition steps behind a subgraph: owners (`node_{stepId}` namespace) of its nodes and of the ids they
+     * reference, so the repair can recreate a genuinely missing step. The whole definition if none can be matched.
+     */
+    public ProcessDefinition definitionFor(ProcessDefinition definition, List<Activity> subgraph) {
+        if (definition == null || definition.steps() == null) {
+            return definition;
+        }
+        List<String> stepIds = definition.steps().stream().map(ProcessStep::stepId).toList();
+        Set<String> owners = new HashSet<>();
+        for (Activity activity : subgraph) {
+            List<String> ids = targetsOf(activity);
+            ids.add(activity.id());
+            for (String id : ids) {
+                String owner = id != null ? StepNamespace.ownerStep(id, stepIds) : null;
+                if (owner != null) {
+                    owners.add(owner);
+                }
+            }
+        }
+        if (owners.isEmpty()) {
+            return definition;
+        }
+        return new ProcessDefinition(definition.topic(), definition.steps().stream()
+                .filter(step -> owners.contains(step.stepId()))
+                .toList());
+    }
+
+    /**
+     * Replaces activities by id with their patched version; patched activities with a new id are appended.
+     */
+    public ProcessResponse merge(ProcessResponse process, ProcessResponse patch) {
+        if (patch == null || patch.activities() == null || patch.activities().isEmpty()) {
+            return process;
+        }
+        Map<String, Activity> patched = new LinkedHashMap<>();
+        for (Activity activity : patch.activities()) {
+            if (activity != null && activity.id() != null) {
+                patched.put(activity.id(), activity);
+            }
+        }
+
+        List<Activity> merged = new ArrayList<>(process.activities().size() + patched.size());
+        for (Activity activity : process.activities()) {
+            Activity replacement = patched.remove(activity.id());
+            merged.add(replacement != null ? replacement : activity);
+        }
+        merged.addAll(patched.values());
+        return new ProcessResponse(process.processName(), process.description(), process.swimlanes(), merged);
+    }
+
+    private static List<String> targetsOf(Activity activity) {
+        List<String> targets = new ArrayList<>();
+        if (activity.nextActivityId() != null) {
+            targets.add(activity.nextActivityId());
+        }
+        NodeConfiguration config = activity.configuration();
+        if (config != null) {
+            if (config.defaultNextActivityId() != null) {
+                targets.add(config.defaultNextActivityId());
+            }
+            if (config.conditions() != null) {
+                for (NodeConfiguration.BranchCondition condition : config.conditions()) {
+                    if (condition.targetActivityId() != null) {
+                        targets.add(condition.targetActivityId());
+                    }
+                }
+            }
+        }
+        return targets;
+    }
+
+    private NodeConfiguration repairConfiguration(Activity activity, Set<String> nodeIds,
+                                                  Map<String, String> resolved, List<String> fixes) {
+        NodeConfiguration config = activity.configuration();
+        if (config == null) {
+            return null;
+        }
+
+        boolean changed = false;
+        List<NodeConfiguration.BranchCondition> conditions = config.conditions();
+        if (conditions != null) {
+            List<NodeConfiguration.BranchCondition> repaired = new ArrayList<>(conditions.size());
+            for (NodeConfiguration.BranchCondition condition : conditions) {
+                String target = condition.targetActivityId();
+                String fixed = target == null ? null
+                        : fixReference(activity.id(), "targetActivityId", target, nodeIds, resolved, fixes);
+                if (fixed != target) {
+                    changed = true;
+                    repaired.add(new NodeConfiguration.BranchCondition(condition.expression(), fixed));
+                } else {
+                    repaired.add(condition);
+                }
+            }
+            conditions = changed ? repaired : conditions;
+        }
+
+        String defaultNext = config.defaultNextActivityId();
+        if (defaultNext != null) {
+            String fixed = fixReference(activity.id(), "defaultNextActivityId", defaultNext, nodeIds, resolved, fixes);
+            changed |= fixed != defaultNext;
+            defaultNext = fixed;
+        }
+
+        return !changed ? config : new NodeConfiguration(config.configType(), config.participantRole(), config.formKey(),
+                config.isApproval(), config.dueDuration(), config.templateId(), config.subject(), config.retryCount(),
+                config.priority(), defaultNext, conditions);
+    }
+
+    // Returns the same instance when the reference is valid or cannot be resolved unambiguously
+    private String fixReference(String nodeId, String field, String reference, Set<String> nodeIds,
+                                Map<String, String> resolved, List<String> fixes) {
+        if (nodeIds.contains(reference) || VIRTUAL_END_NODE.equals(reference)) {
+            return reference;
+        }
+        String replacement = resolved.computeIfAbsent(reference, dangling -> resolve(dangling, nodeIds));
+        if (replacement == null) {
+            return reference;
+        }
+        fixes.add(String.format("Node '%s': %s '%s' rewritten to '%s'", nodeId, field, reference, replacement));
+        return replacement;
+    }
+
+    private static String resolve(String dangling, Set<String> nodeIds) {
+        String key = normalize(dangling);
+        if (key.isEmpty()) {
+            return null;
+        }
+
+        String match = null;
+        for (String id : nodeIds) {
+            if (id != null && normalize(id).equals(key)) {
+                if (match != null) {
+                    return null; // Ambiguous
+                }
+                match = id;
+            }
+        }
+        if (match != null) {
+            return match;
+        }
+        if (END_ALIASES.contains(key)) {
+            return VIRTUAL_END_NODE;
+        }
+
+        for (String id : nodeIds) {
+            if (id != null && normalize(id).startsWith(key + "_")) {
+                if (match != null) {
+                    return null;
+                }
+                match = id;
+            }
+        }
+        return match;
+    }
+
+    // 'Node-Step-3' / 'node_step_3' / 'STEP_3' compare equal; the 'node_' prefix is optional
+    private static String normalize(String id) {
+        String normalized = id.trim().toLowerCase(Locale.ROOT)
+                .replaceAll("[^a-z0-9]+", "_")
+                .replaceAll("^_+|_+$", "");
+        return normalized.startsWith("node_") ? normalized.substring("node_".length()) : normalized;
+    }
+}
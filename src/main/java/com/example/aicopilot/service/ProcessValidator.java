@@ -6,6 +6,8 @@ import com.example.aicopilot.dto.process.ProcessResponse;
 import com.example.aicopilot.dto.process.config.NodeConfiguration;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -13,15 +15,53 @@ import java.util.stream.Collectors;
  * Process Design Validator (The Inspector).
  * Checks if the AI-generated process definition is logically valid.
  * [Fix] Removed mandatory check for physical END_EVENT node.
+ * [Update] Collects every violation instead of stopping at the first one, so a single repair round can fix them all.
  */
 @Component
 public class ProcessValidator {
 
     private static final String VIRTUAL_END_NODE = "node_end";
 
+    /**
+     * One structural problem.
+     * @param activityId   Offending activity, or null for process-level problems
+     * @param field        nextActivityId / targetActivityId, or null
+     * @param referencedId The broken reference, or null
+     */
+    public record Violation(String activityId, String field, String referencedId, String message) {
+    }
+
+    /**
+     * Thrown by {@link #validate}; carries all violations of the map.
+     */
+    public static class InvalidProcessException extends IllegalArgumentException {
+        private final List<Violation> violations;
+
+        public InvalidProcessException(List<Violation> violations) {
+            super(describe(violations));
+            this.violations = List.copyOf(violations);
+        }
+
+        public List<Violation> getViolations() {
+            return violations;
+        }
+    }
+
     public void validate(ProcessResponse process) {
+        List<Violation> violations = diagnose(process);
+        if (!violations.isEmpty()) {
+            throw new InvalidProcessException(violations);
+        }
+    }
+
+    /**
+     * @return all violations (empty = valid)
+     */
+    public List<Violation> diagnose(ProcessResponse process) {
+        List<Violation> violations = new ArrayList<>();
         if (process.activities() == null || process.activities().isEmpty()) {
-            throw new IllegalArgumentException("Process must have at least one activity.");
+            violations.add(new Violation(null, null, null, "Process must have at least one activity."));
+            return violations;
         }
 
         // 1. 모든 실제 노드 ID 수집 (Source of Truth)
@@ -33,44 +73,50 @@ public class ProcessValidator {
         validNodeIds.add(VIRTUAL_END_NODE);
 
         for (Activity activity : process.activities()) {
-            validateNextActivityId(activity, validNodeIds);
-            validateGatewayConditions(activity, validNodeIds);
+            validateNextActivityId(activity, validNodeIds, violations);
+            validateGatewayConditions(activity, validNodeIds, violations);
         }
+        return violations;
+    }
+
+    // 한 줄에 하나씩 (LLM 프롬프트와 오류 메시지 공용)
+    public static String describe(List<Violation> violations) {
+        return violations.stream().map(Violation::message).collect(Collectors.joining("\n"));
     }
 
-    private void validateNextActivityId(Activity activity, Set<String> validNodeIds) {
+    private void validateNextActivityId(Activity activity, Set<String> validNodeIds, List<Violation> violations) {
         String nextId = activity.nextActivityId();
 
         // Gateway가 아닌 일반 Task는 nextActivityId가 필수 (단, 마지막 노드일 경우 node_end를 가리켜야 함)
         if (activity.type() != NodeType.EXCLUSIVE_GATEWAY && nextId == null) {
             // AI가 실수로 null을 보냈더라도, 로직상 허용하거나 경고를 줄 수 있음.
             // 여기서는 Strict하게 가되, AI가 'node_end'를 잘 넣도록 유도.
-            throw new IllegalArgumentException(String.format(
+            violations.add(new Violation(activity.id(), "nextActivityId", null, String.format(
                     "흐름 단절 오류: 노드 ['%s'](Type: %s)에 다음 단계(nextActivityId)가 정의되지 않았습니다. 종료 지점이라면 'node_end'를 지정하세요.",
                     activity.id(), activity.type()
-            ));
+            )));
         }
 
         if (nextId != null && !validNodeIds.contains(nextId)) {
-            throw new IllegalArgumentException(String.format(
+            violations.add(new Violation(activity.id(), "nextActivityId", nextId, String.format(
                     "Structural Error Detected: Node ['%s'] refers to non-existent node ['%s'] as nextActivityId.",
                     activity.id(), nextId
-            ));
+            )));
         }
     }
 
-    private void validateGatewayConditions(Activity activity, Set<String> validNodeIds) {
+    private void validateGatewayConditions(Activity activity, Set<String> validNodeIds, List<Violation> violations) {
         NodeConfiguration config = activity.configuration();
         if (config != null && config.conditions() != null) {
             for (NodeConfiguration.BranchCondition condition : config.conditions()) {
                 String targetId = condition.targetActivityId();
                 if (targetId != null && !validNodeIds.contains(targetId)) {
-                    throw new IllegalArgumentException(String.format(
+                    violations.add(new Violation(activity.id(), "targetActivityId", targetId, String.format(
                             "Structural Error Detected: Branch condition in Node ['%s'] refers to non-existent node ['%s'] as targetActivityId.",
                             activity.id(), targetId
-                    ));
+                    )));
                 }
             }
         }
     }
-}
\ No newline at end of file
+}
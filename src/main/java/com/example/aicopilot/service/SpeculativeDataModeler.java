@@ -0,0 +1,194 @@
+package com.example.aicopilot.service;
+
+import com.example.aicopilot.agent.DataModeler;
+import com.example.aicopilot.dto.dataEntities.DataEntitiesResponse;
+import com.example.aicopilot.dto.dataEntities.DataEntity;
+import com.example.aicopilot.dto.definition.ProcessDefinition;
+import com.example.aicopilot.dto.definition.ProcessStep;
+import com.example.aicopilot.dto.process.Activity;
+import com.example.aicopilot.dto.process.NodeType;
+import com.example.aicopilot.dto.process.ProcessResponse;
+import com.example.aicopilot.event.JobUpdatedEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Speculative data modeling: starts DataModeler from the outline (ProcessDefinition) in parallel with the
+ * map transformation, so the critical path becomes max(map, data) instead of map + data.
+ * The speculative model references steps as `node_{stepId}`; once the map exists, every sourceNodeId is
+ * reconciled to the generated node of that step. If any reference cannot be reconciled, the result is discarded
+ * and the caller runs the regular map-based modeling.
+ */
+@Slf4j
+@Service
+public class SpeculativeDataModeler {
+
+    private final DataModeler dataModeler;
+    private final ObjectMapper objectMapper;
+    private final JobCancellationRegistry cancellation;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+
+    private final Map<String, Speculation> speculations = new ConcurrentHashMap<>();
+    private final ExecutorService executor;
+
+    private record Speculation(CompletableFuture<DataEntitiesResponse> result, List<String> stepIds) {
+    }
+
+    public SpeculativeDataModeler(DataModeler dataModeler, ObjectMapper objectMapper,
+                                  JobCancellationRegistry cancellation, MeterRegistry meterRegistry,
+                                  @Value("${copilot.speculative-data.enabled:false}") boolean enabled) { // Opt-in: may spend a discarded DataModeler call per job
+        this.dataModeler = dataModeler;
+        this.objectMapper = objectMapper;
+        this.cancellation = cancellation;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("speculative-data-");
+        threadFactory.setDaemon(true);
+        this.executor = Executors.newCachedThreadPool(threadFactory);
+        meterRegistry.gauge("copilot.speculative.data.pending", speculations, Map::size);
+    }
+
+    /**
+     * Starts modeling from the outline; call right before the map transformation.
+     */
+    public void start(String jobId, String userRequest, String definitionJson) {
+        if (!enabled) {
+            return;
+        }
+        List<String> stepIds;
+        try {
+            ProcessDefinition definition = objectMapper.readValue(definitionJson, ProcessDefinition.class);
+            if (definition.steps() == null || definition.steps().isEmpty()) {
+                return;
+            }
+            stepIds = definition.steps().stream().map(ProcessStep::stepId).toList();
+        } catch (Exception e) {
+            log.warn("Job {}: no speculative data modeling, unreadable definition: {}", jobId, e.getMessage());
+            return;
+        }
+
+        CompletableFuture<DataEntitiesResponse> result = CompletableFuture.supplyAsync(() -> {
+            try (JobCancellationRegistry.Scope ignored = cancellation.enter(jobId)) {
+                return dataModeler.designDataModelFromOutline(userRequest, definitionJson);
+            }
+        }, executor);
+        speculations.put(jobId, new Speculation(result, stepIds));
+    }
+
+    /**
+     * Waits for the speculative model (if any) and reconciles it against the generated map.
+     * @return the reconciled data model, or null if there was none or reconciliation failed
+     */
+    public DataEntitiesResponse claim(String jobId, ProcessResponse process) throws InterruptedException {
+        Speculation speculation = speculations.remove(jobId);
+        if (speculation == null) {
+            return null;
+        }
+
+        DataEntitiesResponse data;
+        try {
+            data = speculation.result().get();
+        } catch (ExecutionException e) {
+            log.warn("Job {}: speculative data modeling failed: {}", jobId, e.getCause().getMessage());
+            outcome("failed");
+            return null;
+        } catch (InterruptedException e) {
+            speculation.result().cancel(false);
+            throw e;
+        }
+
+        DataEntitiesResponse reconciled = reconcile(data, process, speculation.stepIds());
+        if (reconciled == null) {
+            log.info("Job {}: speculative data model could not be reconciled with the map, re-running modeling", jobId);
+            outcome("rejected");
+            return null;
+        }
+        outcome("used");
+        return reconciled;
+    }
+
+    /**
+     * Rewrites `node_{stepId}` lineage to the step's generated node (its user task if it has one).
+     * @return null if any sourceNodeId does not resolve to a node of the map
+     */
+    DataEntitiesResponse reconcile(DataEntitiesResponse data, ProcessResponse process, List<String> stepIds) {
+        if (data == null || data.entities() == null || process.activities() == null) {
+            return null;
+        }
+
+        Set<String> nodeIds = new HashSet<>();
+        Map<String, String> firstNodeByStep = new HashMap<>();
+        Map<String, String> userTaskByStep = new HashMap<>();
+        for (Activity activity : process.activities()) {
+            nodeIds.add(activity.id());
+            String owner = activity.id() != null ? StepNamespace.ownerStep(activity.id(), stepIds) : null;
+            if (owner == null) {
+                continue;
+            }
+            firstNodeByStep.putIfAbsent(owner, activity.id());
+            if (activity.type() == NodeType.USER_TASK) {
+                userTaskByStep.putIfAbsent(owner, activity.id());
+            }
+        }
+
+        List<DataEntity> entities = new ArrayList<>(data.entities().size());
+        for (DataEntity entity : data.entities()) {
+            String source = entity.sourceNodeId();
+            if (source == null || nodeIds.contains(source)) {
+                entities.add(entity);
+                continue;
+            }
+            String owner = StepNamespace.ownerStep(source, stepIds);
+            String node = owner != null ? userTaskByStep.getOrDefault(owner, firstNodeByStep.get(owner)) : null;
+            if (node == null) {
+                return null;
+            }
+            entities.add(new DataEntity(entity.id(), entity.alias(), node, entity.label(), entity.type(),
+                    entity.description(), entity.required(), entity.isPrimaryKey(), entity.maxLength(),
+                    entity.lookupData(), entity.pattern(), entity.requireTrue()));
+        }
+        return new DataEntitiesResponse(entities, data.groups());
+    }
+
+    // A job that failed or was cancelled before claiming its speculation drops it
+    @EventListener
+    public void onJobUpdated(JobUpdatedEvent event) {
+        if (!event.getState().isTerminal()) {
+            return;
+        }
+        Speculation speculation = speculations.remove(event.getJobId());
+        if (speculation != null) {
+            speculation.result().cancel(false);
+            outcome("discarded");
+        }
+    }
+
+    private void outcome(String outcome) {
+        meterRegistry.counter("copilot.speculative.data", "outcome", outcome).increment();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,246 @@
+package com.example.aicopilot.service;
+
+import com.example.aicopilot.dto.JobStatus;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+/**
+ * Stage-graph executor for the artifact pipeline.
+ * Every {@link PipelineStage} bean declares its inputs and output; starting from the seed artifacts (PROCESS,
+ * plus any stage restored after a restart), each stage is started as soon as all of its inputs exist, so
+ * independent stages run in parallel on a bounded pool. Attempts are retried up to the stage's maxAttempts and
+ * interrupted after its timeout, counted from when the attempt gets a pool thread. Each result is saved with the
+ * stage's wall time (including retries), which ends up in JobStatus.stageDurations.
+ * The calling (job) thread coordinates: it waits for attempt results and enforces the timeouts.
+ */
+@Slf4j
+@Service
+public class StageGraphExecutor {
+
+    private final List<PipelineStage> stages;
+    private final JobRepository jobRepository;
+    private final JobCancellationRegistry cancellation;
+    private final MeterRegistry meterRegistry;
+    private final Duration defaultTimeout;
+    private final ExecutorService executor;
+
+    // One running attempt; compared by identity, so results of timed-out attempts are ignored
+    private static final class Attempt {
+        final PipelineStage stage;
+        final int number;
+        final long stageStartedAt;
+        final long timeoutMillis;
+        volatile long deadline = Long.MAX_VALUE; // Set when a pool thread picks the attempt up; queueing is not timed
+        Future<?> future;
+
+        Attempt(PipelineStage stage, int number, long stageStartedAt, long timeoutMillis) {
+            this.stage = stage;
+            this.number = number;
+            this.stageStartedAt = stageStartedAt;
+            this.timeoutMillis = timeoutMillis;
+        }
+    }
+
+    // started: the attempt left the pool queue and its deadline is set (wakes the coordinator to re-arm its wait)
+    private record Outcome(Attempt attempt, Object result, Throwable error, boolean started) {
+        static Outcome started(Attempt attempt) {
+            return new Outcome(attempt, null, null, true);
+        }
+    }
+
+    public StageGraphExecutor(List<PipelineStage> stages, JobRepository jobRepository,
+                              JobCancellationRegistry cancellation, MeterRegistry meterRegistry,
+                              @Value("${copilot.pipeline.max-concurrency:16}") int maxConcurrency, // Stage attempts running at once, all jobs
+                              @Value("${copilot.pipeline.default-timeout:5m}") Duration defaultTimeout) {
+        this.stages = List.copyOf(stages);
+        this.jobRepository = jobRepository;
+        this.cancellation = cancellation;
+        this.meterRegistry = meterRegistry;
+        this.defaultTimeout = defaultTimeout;
+        checkGraph(this.stages);
+
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("pipeline-stage-");
+        threadFactory.setDaemon(true);
+        this.executor = Executors.newFixedThreadPool(Math.max(1, maxConcurrency), threadFactory);
+        log.info("Artifact pipeline: {}", this.stages.stream()
+                .map(stage -> stage.inputs() + " -> " + stage.output())
+                .collect(Collectors.joining(", ")));
+    }
+
+    /**
+     * Runs every stage whose output is not among the seeds; returns when all of them succeeded.
+     * @throws IllegalStateException if a stage failed after its last attempt, or its inputs can never exist
+     */
+    public void execute(String jobId, String userRequest, Map<String, Object> seeds) throws Exception {
+        Map<String, Object> artifacts = new HashMap<>(seeds);
+        List<PipelineStage> pending = new ArrayList<>();
+        for (PipelineStage stage : stages) {
+            if (!artifacts.containsKey(stage.output())) {
+                pending.add(stage);
+            }
+        }
+        Map<String, Attempt> running = new LinkedHashMap<>();
+        BlockingQueue<Outcome> outcomes = new LinkedBlockingQueue<>();
+
+        try {
+            while (true) {
+                cancellation.checkpoint(jobId);
+
+                // 1. Start every stage whose inputs are complete
+                for (var it = pending.iterator(); it.hasNext(); ) {
+                    PipelineStage stage = it.next();
+                    if (artifacts.keySet().containsAll(stage.inputs())) {
+                        it.remove();
+                        start(jobId, userRequest, stage, 1, System.currentTimeMillis(), artifacts, running, outcomes);
+                    }
+                }
+                if (running.isEmpty()) {
+                    if (!pending.isEmpty()) {
+                        throw new IllegalStateException("Missing inputs for stages " + pending.stream()
+                                .map(PipelineStage::output).toList());
+                    }
+                    return;
+                }
+
+                // 2. Wait for the next result or the earliest deadline
+                long now = System.currentTimeMillis();
+                long nextDeadline = running.values().stream().mapToLong(attempt -> attempt.deadline).min().orElse(now);
+                Outcome outcome = outcomes.poll(Math.max(0, nextDeadline - now), TimeUnit.MILLISECONDS);
+
+                if (outcome == null) {
+                    long expiredAt = System.currentTimeMillis();
+                    for (Attempt attempt : List.copyOf(running.values())) {
+                        if (attempt.deadline <= expiredAt) {
+                            attempt.future.cancel(true);
+                            fail(jobId, userRequest, attempt, new TimeoutException(String.format("Stage %s attempt %d timed out",
+                                    attempt.stage.output(), attempt.number)), "timeout", artifacts, running, outcomes);
+                        }
+                    }
+                    continue;
+                }
+
+                Attempt attempt = outcome.attempt();
+                if (outcome.started() || running.get(attempt.stage.output()) != attempt) {
+                    continue; // Deadline armed, or late result of an attempt that already timed out
+                }
+                if (outcome.error() != null) {
+                    fail(jobId, userRequest, attempt, outcome.error(), "error", artifacts, running, outcomes);
+                    continue;
+                }
+
+                running.remove(attempt.stage.output());
+                long duration = System.currentTimeMillis() - attempt.stageStartedAt;
+                cancellation.checkpoint(jobId);
+                jobRepository.saveStageResult(jobId, attempt.stage.output(), outcome.result(), duration);
+                artifacts.put(attempt.stage.output(), outcome.result());
+                attemptResult(attempt.stage, "success");
+                meterRegistry.timer("copilot.pipeline.stage.duration", "stage", attempt.stage.output())
+                        .record(duration, TimeUnit.MILLISECONDS);
+            }
+        } finally {
+            for (Attempt attempt : running.values()) {
+                attempt.future.cancel(true); // A failed sibling or a cancelled job stops the rest
+            }
+        }
+    }
+
+    private void start(String jobId, String userRequest, PipelineStage stage, int number, long stageStartedAt,
+                       Map<String, Object> artifacts, Map<String, Attempt> running, BlockingQueue<Outcome> outcomes) {
+        Duration timeout = stage.timeout() != null ? stage.timeout() : defaultTimeout;
+        Attempt attempt = new Attempt(stage, number, stageStartedAt, timeout.toMillis());
+        PipelineStage.StageContext context = new PipelineStage.StageContext(jobId, userRequest, Map.copyOf(artifacts), number);
+
+        jobRepository.updateState(jobId, JobStatus.State.PROCESSING, number == 1 ? stage.description()
+                : String.format("%s (Attempt %d/%d)", stage.description(), number, stage.maxAttempts()));
+        running.put(stage.output(), attempt);
+        attempt.future = executor.submit(() -> {
+            // The timeout covers the attempt's own run, not the wait for a free pool thread
+            attempt.deadline = System.currentTimeMillis() + attempt.timeoutMillis;
+            outcomes.add(Outcome.started(attempt));
+            try (JobCancellationRegistry.Scope ignored = cancellation.enter(jobId)) {
+                Object result = stage.run(context);
+                if (result == null) {
+                    throw new IllegalStateException("Stage " + stage.output() + " returned no result");
+                }
+                outcomes.add(new Outcome(attempt, result, null, false));
+            } catch (Throwable e) {
+                outcomes.add(new Outcome(attempt, null, e, false));
+            }
+        });
+    }
+
+    private void fail(String jobId, String userRequest, Attempt attempt, Throwable error, String result,
+                      Map<String, Object> artifacts, Map<String, Attempt> running, BlockingQueue<Outcome> outcomes) {
+        running.remove(attempt.stage.output());
+        attemptResult(attempt.stage, result);
+        cancellation.checkpoint(jobId); // A cancelled job is not retried
+
+        if (attempt.number < attempt.stage.maxAttempts()) {
+            log.warn("Job {}: stage {} attempt {}/{} failed, retrying: {}",
+                    jobId, attempt.stage.output(), attempt.number, attempt.stage.maxAttempts(), error.getMessage());
+            start(jobId, userRequest, attempt.stage, attempt.number + 1, attempt.stageStartedAt, artifacts, running, outcomes);
+            return;
+        }
+        throw new IllegalStateException(String.format("Stage %s failed after %d attempt(s): %s",
+                attempt.stage.output(), attempt.number, error.getMessage()), error);
+    }
+
+    private void attemptResult(PipelineStage stage, String result) {
+        meterRegistry.counter("copilot.pipeline.stage.attempts", "stage", stage.output(), "result", result).increment();
+    }
+
+    // Fails fast at startup on duplicate outputs or dependency cycles
+    static void checkGraph(List<PipelineStage> stages) {
+        Map<String, PipelineStage> producers = new HashMap<>();
+        for (PipelineStage stage : stages) {
+            if (producers.putIfAbsent(stage.output(), stage) != null) {
+                throw new IllegalStateException("Two pipeline stages produce " + stage.output());
+            }
+        }
+
+        // Kahn: stages whose produced inputs are all resolvable; inputs nobody produces are seeds
+        Set<String> resolved = new HashSet<>();
+        List<PipelineStage> remaining = new ArrayList<>(stages);
+        boolean progress = true;
+        while (!remaining.isEmpty() && progress) {
+            progress = remaining.removeIf(stage -> {
+                boolean ready = stage.inputs().stream()
+                        .allMatch(input -> !producers.containsKey(input) || resolved.contains(input));
+                if (ready) {
+                    resolved.add(stage.output());
+                }
+                return ready;
+            });
+        }
+        if (!remaining.isEmpty()) {
+            throw new IllegalStateException("Pipeline stages form a cycle: " + remaining.stream()
+                    .map(stage -> stage.inputs() + " -> " + stage.output()).toList());
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.aicopilot.service;
+
+import java.util.Collection;
+
+/**
+ * Node id namespace shared by ProcessArchitect outputs: every node of step {@code s} is named `node_{s}` or `node_{s}_*`.
+ */
+final class StepNamespace {
+
+    private StepNamespace() {
+    }
+
+    static String root(String stepId) {
+        return "node_" + stepId;
+    }
+
+    /**
+     * @return the step owning the node id (longest match, so 'node_1' never claims 'node_10_form'), or null
+     */
+    static String ownerStep(String nodeId, Collection<String> stepIds) {
+        String owner = null;
+        for (String stepId : stepIds) {
+            if (stepId == null) {
+                continue;
+            }
+            String root = root(stepId);
+            if ((nodeId.equals(root) || nodeId.startsWith(root + "_")) && (owner == null || stepId.length() > owner.length())) {
+                owner = stepId;
+            }
+        }
+        return owner;
+    }
+}
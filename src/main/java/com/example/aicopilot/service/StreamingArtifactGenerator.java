@@ -0,0 +1,97 @@
+package com.example.aicopilot.service;
+
+import com.example.aicopilot.agent.DataModeler;
+import com.example.aicopilot.agent.FormUXDesigner;
+import com.example.aicopilot.agent.ProcessArchitect;
+import com.example.aicopilot.dto.dataEntities.DataEntitiesGroup;
+import com.example.aicopilot.dto.dataEntities.DataEntitiesResponse;
+import com.example.aicopilot.dto.dataEntities.DataEntity;
+import com.example.aicopilot.dto.form.FormDefinitions;
+import com.example.aicopilot.dto.form.FormResponse;
+import com.example.aicopilot.dto.process.Activity;
+import com.example.aicopilot.dto.process.ProcessResponse;
+import com.example.aicopilot.dto.process.Swimlane;
+import com.example.aicopilot.llm.StreamingAgentInvoker;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Streaming variant of the artifact-producing agent calls.
+ * Every Activity / DataEntity / FormDefinitions element is published to the JobRepository as soon as it
+ * has been fully streamed, so the frontend can render the map node by node instead of waiting for the whole JSON.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class StreamingArtifactGenerator {
+
+    private final StreamingAgentInvoker streamingAgentInvoker;
+    private final JobRepository jobRepository;
+    private final ObjectMapper objectMapper;
+
+    public ProcessResponse transformToMap(String jobId, String definitionJson) {
+        List<Swimlane> swimlanes = new ArrayList<>();
+        List<Activity> activities = new ArrayList<>();
+
+        return streamingAgentInvoker.invoke(ProcessArchitect.class, "transformToMap",
+                Map.of("definitionJson", definitionJson),
+                Set.of("swimlanes", "activities"),
+                (field, json) -> {
+                    if ("swimlanes".equals(field)) {
+                        addParsed(json, Swimlane.class, swimlanes);
+                    } else if (addParsed(json, Activity.class, activities)) {
+                        jobRepository.savePartialArtifact(jobId,
+                                new ProcessResponse(null, null, List.copyOf(swimlanes), List.copyOf(activities)));
+                    }
+                });
+    }
+
+    public DataEntitiesResponse designDataModel(String jobId, String userRequest, String processJson) {
+        List<DataEntity> entities = new ArrayList<>();
+        List<DataEntitiesGroup> groups = new ArrayList<>();
+
+        return streamingAgentInvoker.invoke(DataModeler.class, "designDataModel",
+                Map.of("userRequest", userRequest, "processContextJson", processJson),
+                Set.of("entities", "groups"),
+                (field, json) -> {
+                    boolean added = "entities".equals(field)
+                            ? addParsed(json, DataEntity.class, entities)
+                            : addParsed(json, DataEntitiesGroup.class, groups);
+                    if (added) {
+                        jobRepository.savePartialArtifact(jobId,
+                                new DataEntitiesResponse(List.copyOf(entities), List.copyOf(groups)));
+                    }
+                });
+    }
+
+    public FormResponse designForm(String jobId, String userRequest, String processJson, String dataJson) {
+        List<FormDefinitions> forms = new ArrayList<>();
+
+        return streamingAgentInvoker.invoke(FormUXDesigner.class, "designForm",
+                Map.of("userRequest", userRequest, "processContext", processJson, "dataContext", dataJson),
+                Set.of("formDefinitions"),
+                (field, json) -> {
+                    if (addParsed(json, FormDefinitions.class, forms)) {
+                        jobRepository.savePartialArtifact(jobId, new FormResponse(List.copyOf(forms)));
+                    }
+                });
+    }
+
+    // A malformed partial element is skipped; the final full parse is authoritative
+    private <T> boolean addParsed(String json, Class<T> type, List<T> target) {
+        try {
+            target.add(objectMapper.readValue(json, type));
+            return true;
+        } catch (Exception e) {
+            log.debug("Skipping unparsable streamed {}: {}", type.getSimpleName(), e.getMessage());
+            return false;
+        }
+    }
+}
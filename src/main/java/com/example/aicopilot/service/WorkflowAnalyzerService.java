@@ -3,46 +3,74 @@ package com.example.aicopilot.service;
 import com.example.aicopilot.agent.FlowAnalyst;
 import com.example.aicopilot.dto.analysis.AnalysisReport;
 import com.example.aicopilot.dto.analysis.AnalysisResult;
-import com.fasterxml.jackson.core.type.TypeReference;
+import com.example.aicopilot.dto.analysis.GraphStructure;
+import com.example.aicopilot.llm.StreamingAgentInvoker;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import lombok.RequiredArgsConstructor;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class WorkflowAnalyzerService {
 
     private final FlowAnalyst flowAnalyst;
+    private final GraphRuleEngine graphRuleEngine;
     private final ObjectMapper objectMapper;
+    private final StreamingAgentInvoker streamingAgentInvoker;
+    private final AnalysisCache analysisCache;
+
+    // AI 레이어 전용 고정 풀: 초과 요청은 대기열에서 기다림 (LLM 호출 동시성 상한은 Bulkhead가 따로 담당)
+    private final ExecutorService aiExecutor;
+
+    public WorkflowAnalyzerService(FlowAnalyst flowAnalyst, GraphRuleEngine graphRuleEngine, ObjectMapper objectMapper,
+                                   StreamingAgentInvoker streamingAgentInvoker, AnalysisCache analysisCache,
+                                   @Value("${copilot.analysis.ai.max-concurrency:16}") int aiConcurrency) { // AI 분석 동시 실행 수
+        this.flowAnalyst = flowAnalyst;
+        this.graphRuleEngine = graphRuleEngine;
+        this.objectMapper = objectMapper;
+        this.streamingAgentInvoker = streamingAgentInvoker;
+        this.analysisCache = analysisCache;
+
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("flow-analysis-");
+        threadFactory.setDaemon(true);
+        this.aiExecutor = Executors.newFixedThreadPool(Math.max(1, aiConcurrency), threadFactory);
+    }
 
     /**
      * 하이브리드 분석 파이프라인 실행
-     * Layer 1 (Rule-Based) + Layer 2 (AI-Based)
+     * Layer 1 (Rule-Based) + Layer 2 (AI-Based), 두 레이어를 동시에 실행합니다.
+     * 위치 이동처럼 내용이 같은 그래프는 AnalysisCache에 저장된 AI 결과를 재사용합니다 (LLM 호출 없음).
      */
-    public List<AnalysisResult> analyze(String nodesJson, String edgesJson) {
-        List<AnalysisResult> mergedResults = new ArrayList<>();
+    public List<AnalysisResult> analyze(GraphSnapshot graph) {
+        List<AnalysisResult> cached = analysisCache.getAnalysis(graph.fingerprint());
 
-        // 1. [Layer 1] Rule-Based Validation (Fast & Free)
-        // 자바 로직으로 명확한 구조적 오류(끊긴 연결, 필수 값 누락)를 0ms 수준에서 감지합니다.
-        List<AnalysisResult> structuralErrors = validateStructureLocally(nodesJson, edgesJson);
-        mergedResults.addAll(structuralErrors);
+        // 2. [Layer 2] AI Semantic Analysis (Deep & Insightful) - 먼저 시작해 두고 로컬 검사와 겹쳐서 실행
+        CompletableFuture<List<AnalysisResult>> aiResults = cached != null ? CompletableFuture.completedFuture(cached)
+                : CompletableFuture.supplyAsync(() -> {
+                    AnalysisReport aiReport = flowAnalyst.analyzeGraph(graph.nodesJson(), graph.edgesJson());
+                    return remember(graph, aiReport);
+                }, aiExecutor);
 
-        // 구조적 에러가 너무 많으면(예: 3개 이상) AI 분석을 스킵하여 토큰 비용을 절약하는 전략도 가능합니다.
-        // 현재는 항상 실행하도록 설정합니다.
+        // 1. [Layer 1] Rule-Based Validation (Fast & Free)
+        // 자바 로직으로 명확한 구조적 오류(끊긴 연결, 도달 불가, 출구 없는 순환, 분기 누락)를 0ms 수준에서 감지합니다.
+        List<AnalysisResult> mergedResults = new ArrayList<>(validateStructureLocally(graph));
 
-        // 2. [Layer 2] AI Semantic Analysis (Deep & Insightful)
         try {
-            AnalysisReport aiReport = flowAnalyst.analyzeGraph(nodesJson, edgesJson);
-            if (aiReport != null && aiReport.results() != null) {
-                mergedResults.addAll(aiReport.results());
-            }
+            mergedResults.addAll(aiResults.join());
         } catch (Exception e) {
             // AI 분석 실패는 전체 로직을 방해하지 않도록 로그만 남기고, 구조적 에러만 반환합니다.
             log.warn("AI Semantic Analysis failed: {}", e.getMessage());
@@ -52,71 +80,128 @@ public class WorkflowAnalyzerService {
     }
 
     /**
-     * 로컬 규칙 검사 엔진
-     * JSON 데이터를 파싱하여 그래프의 연결성(Connectivity)과 무결성을 검증합니다.
+     * 스트리밍 하이브리드 분석
+     * 로컬 규칙 결과는 수 ms 안에 onLocalResults로 먼저 전달하고, AI 결과는 모델이 항목 하나를 완성할 때마다 onAiResult로 전달합니다.
+     * 콜백 순서는 항상 onLocalResults -> onAiResult이며 동시에 호출되지 않습니다 (규칙 결과를 보낸 뒤에 AI 작업을 시작).
+     * @return AI 결과 전체로 완료되는 Future (AI 실패 시 예외로 완료). cancel 하면 진행 중인 AI 호출을 인터럽트합니다.
      */
-    private List<AnalysisResult> validateStructureLocally(String nodesJson, String edgesJson) {
-        List<AnalysisResult> errors = new ArrayList<>();
-        try {
-            List<Map<String, Object>> nodes = objectMapper.readValue(nodesJson, new TypeReference<>() {});
-            List<Map<String, Object>> edges = objectMapper.readValue(edgesJson, new TypeReference<>() {});
-
-            // 그래프 연결성 분석을 위한 카운터 맵 생성
-            Map<String, Integer> incomingCounts = new HashMap<>();
-            Map<String, Integer> outgoingCounts = new HashMap<>();
-
-            for (Map<String, Object> edge : edges) {
-                String source = (String) edge.get("source");
-                String target = (String) edge.get("target");
-                outgoingCounts.merge(source, 1, Integer::sum);
-                incomingCounts.merge(target, 1, Integer::sum);
+    public CompletableFuture<List<AnalysisResult>> analyzeStreaming(GraphSnapshot graph,
+                                                                    Consumer<List<AnalysisResult>> onLocalResults,
+                                                                    Consumer<AnalysisResult> onAiResult) {
+        List<AnalysisResult> cached = analysisCache.getAnalysis(graph.fingerprint());
+        onLocalResults.accept(validateStructureLocally(graph));
+        if (cached != null) {
+            // 캐시 적중: 규칙 결과 직후 저장된 AI 결과를 바로 전달
+            cached.forEach(onAiResult);
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        CompletableFuture<List<AnalysisResult>> aiResults = new CompletableFuture<>();
+        Future<?> task = aiExecutor.submit(() -> {
+            try {
+                aiResults.complete(streamAiResults(graph, onAiResult));
+            } catch (Throwable e) {
+                aiResults.completeExceptionally(e);
             }
+        });
+        aiResults.whenComplete((results, error) -> {
+            if (aiResults.isCancelled()) {
+                task.cancel(true); // 클라이언트 연결 종료: 대기열에서 빼거나 진행 중인 LLM 호출을 중단
+            }
+        });
+        return aiResults;
+    }
 
-            for (Map<String, Object> node : nodes) {
-                String id = (String) node.get("id");
-                String type = (String) node.get("type");
-
-                // Frontend snapshot 구조에 따라 데이터 추출 (label이 data 내부에 있을 수 있음)
-                String label = null;
-                Object dataObj = node.get("data"); // ReactFlow data object
-                if (dataObj instanceof Map) {
-                    label = (String) ((Map<?, ?>) dataObj).get("label");
-                } else {
-                    label = (String) node.get("label"); // Fallback
-                }
-
-                // Rule 1: 필수 값 검증 (이름 누락)
-                if (label == null || label.trim().isEmpty()) {
-                    errors.add(new AnalysisResult(id, "WARNING", "MISSING_LABEL", "단계의 이름이 비어있습니다.", "명확한 이름을 입력해주세요."));
-                }
-
-                // Rule 2: 연결성 검증 (Connectivity)
-                boolean isStartNode = "START".equalsIgnoreCase(type) || "start_event".equalsIgnoreCase(type);
-                boolean isEndNode = "END".equalsIgnoreCase(type) || "end_event".equalsIgnoreCase(type);
-
-                if (isStartNode) {
-                    if (outgoingCounts.getOrDefault(id, 0) == 0) {
-                        errors.add(new AnalysisResult(id, "ERROR", "DISCONNECTED_START", "시작점이 연결되지 않았습니다.", "첫 번째 단계와 연결선을 그려주세요."));
+    private List<AnalysisResult> streamAiResults(GraphSnapshot graph, Consumer<AnalysisResult> onAiResult) {
+        List<AnalysisResult> streamed = new ArrayList<>();
+        AnalysisReport aiReport = streamingAgentInvoker.invoke(FlowAnalyst.class, "analyzeGraph",
+                Map.of("nodesJson", graph.nodesJson(), "edgesJson", graph.edgesJson()),
+                Set.of("results"),
+                (field, json) -> {
+                    AnalysisResult result = parseResult(json);
+                    if (result != null) {
+                        streamed.add(result);
+                        onAiResult.accept(result);
                     }
-                } else if (isEndNode) {
-                    if (incomingCounts.getOrDefault(id, 0) == 0) {
-                        errors.add(new AnalysisResult(id, "ERROR", "DISCONNECTED_END", "종료점이 연결되지 않았습니다.", "마지막 단계로부터 선을 연결해주세요."));
-                    }
-                } else {
-                    // 일반 노드 (User Task, Service Task, Gateway)
-                    if (incomingCounts.getOrDefault(id, 0) == 0) {
-                        errors.add(new AnalysisResult(id, "ERROR", "MISSING_INPUT", "이전 단계와 연결되지 않았습니다.", "이전 단계에서 선을 연결해주세요."));
-                    }
-                    if (outgoingCounts.getOrDefault(id, 0) == 0) {
-                        errors.add(new AnalysisResult(id, "ERROR", "MISSING_OUTPUT", "다음 단계와 연결되지 않았습니다.", "다음 단계로 선을 연결하거나 종료 노드와 연결하세요."));
-                    }
-                }
+                });
+
+        // 최종 파싱 결과가 기준: 스트리밍 중 놓친 항목만 추가로 전달
+        List<AnalysisResult> results = remember(graph, aiReport);
+        for (AnalysisResult result : results) {
+            if (!streamed.remove(result)) {
+                onAiResult.accept(result);
             }
+        }
+        return results;
+    }
+
+    /**
+     * 오류 자동 수정 (FlowAnalyst.fixGraph)
+     * 같은 그래프 내용 + 같은 오류(type, targetNodeId, suggestion)는 캐시된 수정 결과를 재사용하며,
+     * 이때 기존 노드에는 현재 요청의 위치를 다시 적용합니다 (그 사이 사용자가 옮긴 노드가 되돌아가지 않도록).
+     */
+    public GraphStructure fixGraph(String snapshotJson, AnalysisResult error) throws IOException {
+        GraphSnapshot snapshot = GraphSnapshotReader.read(snapshotJson);
+        String fixKey = String.join("|", snapshot.fingerprint(),
+                String.valueOf(error.type()), String.valueOf(error.targetNodeId()),
+                String.valueOf(GraphFingerprint.normalizeLabel(error.suggestion())));
+        GraphStructure cached = analysisCache.getFix(fixKey);
+        if (cached != null) {
+            return withCurrentPositions(cached, snapshot);
+        }
 
+        GraphStructure fixedGraph = flowAnalyst.fixGraph(snapshot.graphJson(), error.type(), error.targetNodeId(), error.suggestion());
+        if (fixedGraph != null && fixedGraph.nodes() != null) {
+            analysisCache.putFix(fixKey, fixedGraph);
+        }
+        return fixedGraph;
+    }
+
+    private static GraphStructure withCurrentPositions(GraphStructure fixedGraph, GraphSnapshot current) {
+        List<GraphStructure.GraphNode> nodes = fixedGraph.nodes().stream()
+                .map(node -> {
+                    Map<String, Double> position = current.position(node.id());
+                    return position != null ? new GraphStructure.GraphNode(node.id(), node.type(), node.data(), position) : node;
+                })
+                .toList();
+        return new GraphStructure(nodes, fixedGraph.edges(), fixedGraph.fixDescription());
+    }
+
+    // 정상 응답만 캐시 (null 응답은 실패로 보고 다음 요청에서 다시 호출)
+    private List<AnalysisResult> remember(GraphSnapshot graph, AnalysisReport aiReport) {
+        if (aiReport == null) {
+            return List.of();
+        }
+        List<AnalysisResult> results = aiReport.results() != null ? aiReport.results() : List.of();
+        analysisCache.putAnalysis(graph.fingerprint(), results);
+        return results;
+    }
+
+    // 불완전한 스트리밍 항목은 건너뜀 (최종 파싱에서 다시 전달됨)
+    private AnalysisResult parseResult(String json) {
+        try {
+            return objectMapper.readValue(json, AnalysisResult.class);
+        } catch (Exception e) {
+            log.debug("Skipping unparsable streamed AnalysisResult: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 로컬 규칙 검사 엔진
+     * 스냅샷을 읽을 때 만들어 둔 CSR 그래프를 GraphRuleEngine으로 연결성(도달 가능성, 순환, 분기 커버리지)과 무결성을 검증합니다.
+     */
+    private List<AnalysisResult> validateStructureLocally(GraphSnapshot graph) {
+        try {
+            return graphRuleEngine.analyze(graph.graph());
         } catch (Exception e) {
             log.error("Local structural validation failed", e);
-            // 파싱 에러 시에는 빈 리스트 반환 (AI 분석에 의존하거나 다음 주기에 재시도)
+            return new ArrayList<>();
         }
-        return errors;
     }
-}
\ No newline at end of file
+
+    @PreDestroy
+    void shutdown() {
+        aiExecutor.shutdownNow();
+    }
+}
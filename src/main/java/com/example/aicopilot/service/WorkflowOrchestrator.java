@@ -4,14 +4,25 @@ import com.example.aicopilot.agent.ProcessArchitect;
 import com.example.aicopilot.agent.ProcessOutliner;
 import com.example.aicopilot.dto.JobStatus;
 import com.example.aicopilot.dto.definition.ProcessDefinition;
+import com.example.aicopilot.dto.process.Activity;
 import com.example.aicopilot.dto.process.ProcessResponse;
 import com.example.aicopilot.event.ProcessGeneratedEvent;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
 /**
  * Workflow Orchestrator (Ver 7.1).
  * Manages the 2-Step Generation (Outliner -> Transformer) and Self-Correction pipeline.
@@ -20,26 +31,39 @@ import org.springframework.stereotype.Service;
 @RequiredArgsConstructor
 public class WorkflowOrchestrator {
 
+    static final String MANUAL_TRANSFORMATION_REQUEST = "Manual Definition Transformation";
+
     private final ProcessOutliner processOutliner;
     private final ProcessArchitect processArchitect;
     private final ProcessValidator processValidator;
+    private final ProcessRepairer processRepairer;
+    private final ChunkedProcessTransformer chunkedProcessTransformer;
+    private final CandidateRaceTransformer candidateRaceTransformer;
+    private final SpeculativeDataModeler speculativeDataModeler;
     private final JobRepository jobRepository;
     private final ApplicationEventPublisher eventPublisher;
     private final ObjectMapper objectMapper;
+    private final StreamingArtifactGenerator streamingArtifactGenerator;
+    private final JobCancellationRegistry cancellation;
+
+    // [Optimization] Stream the map node by node into the JobRepository (time-to-first-node)
+    @Value("${copilot.streaming.enabled:false}")
+    private boolean streamingEnabled;
 
     /**
      * Mode A: Quick Start (Natural Language -> List -> Map)
      */
     @Async
-    public void runQuickStartJob(String jobId, String userRequest) {
-        try {
+    public void runQuickStartJob(String jobId, String userRequest, String tenantId) {
+        try (JobCancellationRegistry.Scope ignored = cancellation.enter(jobId)) {
             // Step 1: Outlining
             jobRepository.updateState(jobId, JobStatus.State.PROCESSING, "Step 1: Analyzing requirements and drafting the step list (Outliner)...");
             ProcessDefinition definition = processOutliner.draftDefinition(userRequest);
             String definitionJson = objectMapper.writeValueAsString(definition);
+            cancellation.checkpoint(jobId);
 
             // Step 2: Transformation
-            transformAndFinalize(jobId, userRequest, definitionJson);
+            transformAndFinalize(jobId, userRequest, definitionJson, tenantId);
 
         } catch (Exception e) {
             handleError(jobId, e);
@@ -50,10 +74,9 @@ public class WorkflowOrchestrator {
      * Mode B: Transformation (List -> Map)
      */
     @Async
-    public void runTransformationJob(String jobId, String definitionJson) {
-        try {
-            String userRequest = "Manual Definition Transformation";
-            transformAndFinalize(jobId, userRequest, definitionJson);
+    public void runTransformationJob(String jobId, String definitionJson, String tenantId) {
+        try (JobCancellationRegistry.Scope ignored = cancellation.enter(jobId)) {
+            transformAndFinalize(jobId, MANUAL_TRANSFORMATION_REQUEST, definitionJson, tenantId);
 
         } catch (Exception e) {
             handleError(jobId, e);
@@ -61,36 +84,47 @@ public class WorkflowOrchestrator {
     }
 
     // Common transformation and validation logic
-    private void transformAndFinalize(String jobId, String userRequest, String definitionJson) throws Exception {
+    private void transformAndFinalize(String jobId, String userRequest, String definitionJson, String tenantId) throws Exception {
         jobRepository.updateState(jobId, JobStatus.State.PROCESSING, "Step 2: Transforming list into Process Map...");
 
+        // Data modeling from the outline runs alongside; reconciled with the map in AsyncArtifactGenerator
+        speculativeDataModeler.start(jobId, userRequest, definitionJson);
+
         long startTransform = System.currentTimeMillis();
         ProcessResponse process = null;
         String lastError = null;
+        List<ProcessValidator.Violation> violations = List.of();
         int maxRetries = 3;
 
         for (int attempt = 1; attempt <= maxRetries; attempt++) {
+            cancellation.checkpoint(jobId); // No fixMap retries for an abandoned job
             try {
                 if (attempt == 1) {
-                    process = processArchitect.transformToMap(definitionJson);
+                    process = initialTransform(jobId, definitionJson, tenantId);
                 } else {
                     jobRepository.updateState(jobId, JobStatus.State.PROCESSING,
                             String.format("Auto-correcting structural errors... (Attempt %d/%d)", attempt, maxRetries));
 
-                    String invalidMapJson = objectMapper.writeValueAsString(process);
-                    process = processArchitect.fixMap(definitionJson, invalidMapJson, lastError);
+                    process = repairWithAgent(definitionJson, process, violations, lastError);
                 }
 
-                processValidator.validate(process);
+                process = validateOrRepair(process);
                 break;
 
             } catch (IllegalArgumentException e) {
+                if (e instanceof InvalidMapException invalidMap) {
+                    process = invalidMap.map;
+                    violations = invalidMap.violations;
+                } else {
+                    violations = List.of();
+                }
                 lastError = e.getMessage();
                 if (attempt == maxRetries) throw new RuntimeException("Failed to transform Process Map: " + lastError);
             }
         }
 
         long duration = System.currentTimeMillis() - startTransform;
+        cancellation.checkpoint(jobId);
 
         // [Key Change] Save artifact immediately upon process generation completion.
         // Explicitly update JobStatus with the process response BEFORE publishing the event.
@@ -104,7 +138,92 @@ public class WorkflowOrchestrator {
         eventPublisher.publishEvent(new ProcessGeneratedEvent(this, jobId, userRequest, process));
     }
 
+    // Large definitions are transformed in concurrent sections and stitched; the rest in one call,
+    // or as a race of K candidates for tenants that trade tokens for tail latency
+    private ProcessResponse initialTransform(String jobId, String definitionJson, String tenantId) throws Exception {
+        ProcessDefinition definition = objectMapper.readValue(definitionJson, ProcessDefinition.class);
+        if (chunkedProcessTransformer.shouldChunk(definition)) {
+            jobRepository.updateState(jobId, JobStatus.State.PROCESSING,
+                    String.format("Step 2: Transforming %d steps into Process Map in parallel sections...", definition.steps().size()));
+            return chunkedProcessTransformer.transform(jobId, definition);
+        }
+        int candidates = candidateRaceTransformer.candidatesFor(tenantId);
+        if (candidates > 1) {
+            jobRepository.updateState(jobId, JobStatus.State.PROCESSING,
+                    String.format("Step 2: Transforming list into Process Map (%d candidates in parallel)...", candidates));
+            return candidateRaceTransformer.transform(jobId, tenantId, definitionJson, candidates);
+        }
+        return streamingEnabled
+                ? streamingArtifactGenerator.transformToMap(jobId, definitionJson)
+                : processArchitect.transformToMap(definitionJson);
+    }
+
+    /**
+     * Mechanical errors are repaired locally; only residual errors are escalated to the LLM,
+     * which then receives the already repaired map.
+     */
+    private ProcessResponse validateOrRepair(ProcessResponse process) {
+        List<ProcessValidator.Violation> violations = processValidator.diagnose(process);
+        if (violations.isEmpty()) {
+            return process;
+        }
+        ProcessRepairer.Repair repair = processRepairer.repair(process);
+        if (repair.changed()) {
+            process = repair.process();
+            violations = processValidator.diagnose(process);
+            if (violations.isEmpty()) {
+                return process;
+            }
+        }
+        throw new InvalidMapException(process, violations);
+    }
+
+    /**
+     * Sends only the offending activities and their neighbours (plus a compact id -> label index and the
+     * definition steps they come from) to the repair agent and merges the patched nodes back. Process-level errors still go through a full fixMap.
+     */
+    private ProcessResponse repairWithAgent(String definitionJson, ProcessResponse process,
+                                            List<ProcessValidator.Violation> violations, String lastError) throws JsonProcessingException {
+        Set<String> affectedIds = violations.stream()
+                .map(ProcessValidator.Violation::activityId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        boolean processLevel = violations.isEmpty() || violations.stream().anyMatch(v -> v.activityId() == null);
+        if (process == null || process.activities() == null || processLevel) {
+            String invalidMapJson = objectMapper.writeValueAsString(process);
+            return processArchitect.fixMap(definitionJson, invalidMapJson, lastError);
+        }
+
+        Map<String, String> nodeIndex = new LinkedHashMap<>();
+        for (Activity activity : process.activities()) {
+            nodeIndex.put(activity.id(), activity.label());
+        }
+        List<Activity> subgraph = processRepairer.subgraph(process, affectedIds);
+        ProcessDefinition definition = objectMapper.readValue(definitionJson, ProcessDefinition.class);
+        ProcessResponse patch = processArchitect.repairSubgraph(
+                ProcessValidator.describe(violations),
+                objectMapper.writeValueAsString(processRepairer.definitionFor(definition, subgraph)),
+                objectMapper.writeValueAsString(nodeIndex),
+                objectMapper.writeValueAsString(subgraph));
+        return processRepairer.merge(process, patch);
+    }
+
+    // Carries the (locally repaired) invalid map and all of its violations to the next repair attempt
+    private static class InvalidMapException extends IllegalArgumentException {
+        final ProcessResponse map;
+        final List<ProcessValidator.Violation> violations;
+
+        InvalidMapException(ProcessResponse map, List<ProcessValidator.Violation> violations) {
+            super(ProcessValidator.describe(violations));
+            this.map = map;
+            this.violations = violations;
+        }
+    }
+
     private void handleError(String jobId, Exception e) {
+        if (cancellation.isCancelled(jobId)) {
+            return; // Cancelled or past its deadline; the job is already CANCELLED
+        }
         e.printStackTrace();
         jobRepository.updateState(jobId, JobStatus.State.FAILED, "Error occurred during operation: " + e.getMessage());
     }
@@ -0,0 +1,274 @@
+package com.example.aicopilot.store;
+
+import com.example.aicopilot.dto.JobInput;
+import com.example.aicopilot.dto.JobStatus;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Append-only JSON-lines log on local disk.
+ * - Appends only enqueue; a single writer thread commits them in groups (one write + one fsync per batch),
+ *   keeping only the newest snapshot per job within a batch so streamed partial updates collapse.
+ * - The log is compacted to the latest snapshot per job at startup and whenever it grows past a size threshold;
+ *   finished jobs older than the retention period are dropped on compaction.
+ * - A torn last line (crash mid-write) is ignored on recovery.
+ * - A failed commit is retried with exponential backoff (newer records join the retry); a batch is only dropped
+ *   after MAX_WRITE_ATTEMPTS consecutive failures.
+ */
+@Slf4j
+public class FileJobStore implements JobStore, AutoCloseable {
+
+    private static final String LOG_FILE = "jobs.log";
+    private static final int MAX_WRITE_ATTEMPTS = 8;
+    private static final long INITIAL_RETRY_BACKOFF_MILLIS = 100;
+    private static final long MAX_RETRY_BACKOFF_MILLIS = 5_000;
+
+    private final Path dir;
+    private final Path logFile;
+    private final ObjectMapper objectMapper;
+    private final Duration retention;
+    private final long compactThresholdBytes;
+    private final Duration groupCommitWindow;
+
+    private final BlockingQueue<LogRecord> queue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    private final Map<String, StoredJob> recovered;
+    private volatile boolean running = true;
+
+    private FileChannel channel;
+    private long logBytes;
+
+    /**
+     * One log line: either the job input or a status snapshot.
+     */
+    record LogRecord(String jobId, JobInput input, JobStatus status) {
+    }
+
+    public FileJobStore(Path dir, ObjectMapper objectMapper, Duration retention,
+                        long compactThresholdBytes, Duration groupCommitWindow) {
+        this.dir = dir;
+        this.logFile = dir.resolve(LOG_FILE);
+        this.objectMapper = objectMapper;
+        this.retention = retention;
+        this.compactThresholdBytes = compactThresholdBytes;
+        this.groupCommitWindow = groupCommitWindow;
+
+        try {
+            Files.createDirectories(dir);
+            this.recovered = compact();
+            openChannel();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Job store directory " + dir + " is not usable", e);
+        }
+
+        this.writer = new Thread(this::writeLoop, "job-store-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    @Override
+    public void appendInput(String jobId, JobInput input) {
+        queue.add(new LogRecord(jobId, input, null));
+    }
+
+    @Override
+    public void appendStatus(JobStatus status) {
+        queue.add(new LogRecord(status.jobId(), null, status));
+    }
+
+    @Override
+    public Map<String, StoredJob> recover() {
+        return recovered;
+    }
+
+    // ------------------------------------------------------------------
+    // Group commit
+    // ------------------------------------------------------------------
+
+    private void writeLoop() {
+        List<LogRecord> batch = new ArrayList<>();
+        while (running || !queue.isEmpty()) {
+            try {
+                LogRecord first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                if (running && !groupCommitWindow.isZero()) {
+                    Thread.sleep(groupCommitWindow.toMillis()); // Let concurrent updates join this commit
+                }
+                batch.add(first);
+                queue.drainTo(batch);
+                writeWithRetry(batch);
+            } catch (InterruptedException e) {
+                running = false;
+                if (!batch.isEmpty()) {
+                    log.error("Job store writer interrupted ({} records not written)", batch.size());
+                }
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    // Transient disk errors (full disk being cleaned up, NFS hiccup) must not silently lose finished jobs
+    private void writeWithRetry(List<LogRecord> batch) throws InterruptedException {
+        long backoff = INITIAL_RETRY_BACKOFF_MILLIS;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                if (!channel.isOpen()) {
+                    openChannel(); // A failed compaction may have left it closed
+                }
+                writeBatch(batch);
+                return;
+            } catch (IOException | RuntimeException e) {
+                if (attempt >= MAX_WRITE_ATTEMPTS) {
+                    log.error("Job store write failed after {} attempts ({} records lost): {}",
+                            attempt, batch.size(), e.getMessage());
+                    return;
+                }
+                log.warn("Job store write failed (attempt {}), retrying in {}ms: {}", attempt, backoff, e.getMessage());
+                Thread.sleep(backoff);
+                backoff = Math.min(backoff * 2, MAX_RETRY_BACKOFF_MILLIS);
+                queue.drainTo(batch); // Rewriting is idempotent: recovery keeps the newest version per job
+            }
+        }
+    }
+
+    private void writeBatch(List<LogRecord> batch) throws IOException {
+        // Inputs are kept as-is; for statuses only the newest version per job is worth writing
+        Map<String, LogRecord> latest = new LinkedHashMap<>();
+        for (LogRecord record : batch) {
+            if (record.input() != null) {
+                latest.put("input:" + record.jobId(), record);
+            } else {
+                latest.merge("status:" + record.jobId(), record,
+                        (a, b) -> b.status().version() >= a.status().version() ? b : a);
+            }
+        }
+
+        StringBuilder lines = new StringBuilder();
+        for (LogRecord record : latest.values()) {
+            lines.append(objectMapper.writeValueAsString(record)).append('\n');
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            logBytes += channel.write(buffer);
+        }
+        channel.force(false);
+
+        if (logBytes > compactThresholdBytes) {
+            channel.close();
+            try {
+                compact();
+            } finally {
+                openChannel();
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------
+    // Recovery / compaction (startup and writer thread only)
+    // ------------------------------------------------------------------
+
+    private Map<String, StoredJob> compact() throws IOException {
+        Map<String, StoredJob> jobs = readLog();
+        long now = System.currentTimeMillis();
+        jobs.values().removeIf(job -> job.status() == null || isExpired(job.status(), now));
+
+        Path tmp = Files.createTempFile(dir, LOG_FILE, ".tmp");
+        try (var out = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, StoredJob> job : jobs.entrySet()) {
+                if (job.getValue().input() != null) {
+                    out.write(objectMapper.writeValueAsString(new LogRecord(job.getKey(), job.getValue().input(), null)));
+                    out.newLine();
+                }
+                out.write(objectMapper.writeValueAsString(new LogRecord(job.getKey(), null, job.getValue().status())));
+                out.newLine();
+            }
+        }
+        try (FileChannel tmpChannel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+            tmpChannel.force(true);
+        }
+        Files.move(tmp, logFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return jobs;
+    }
+
+    private Map<String, StoredJob> readLog() throws IOException {
+        Map<String, StoredJob> jobs = new LinkedHashMap<>();
+        if (!Files.exists(logFile)) {
+            return jobs;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(logFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                LogRecord record;
+                try {
+                    record = objectMapper.readValue(line, LogRecord.class);
+                } catch (IOException e) {
+                    log.warn("Skipping unreadable job store record: {}", e.getMessage());
+                    continue;
+                }
+                StoredJob previous = jobs.get(record.jobId());
+                JobStatus previousStatus = previous != null ? previous.status() : null;
+                // Concurrent updates may be enqueued out of order; the highest version wins
+                boolean newer = record.status() != null
+                        && (previousStatus == null || record.status().version() >= previousStatus.version());
+                jobs.put(record.jobId(), new StoredJob(
+                        newer ? record.status() : previousStatus,
+                        record.input() != null ? record.input() : previous != null ? previous.input() : null));
+            }
+        }
+        return jobs;
+    }
+
+    private boolean isExpired(JobStatus status, long now) {
+        if (!status.state().isTerminal()) {
+            return false;
+        }
+        long finishedAt = status.startTime() + status.totalElapsedMillis();
+        return now - finishedAt > retention.toMillis();
+    }
+
+    private void openChannel() throws IOException {
+        channel = FileChannel.open(logFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        logBytes = channel.size();
+    }
+
+    /**
+     * Drains pending records before shutdown (inferred as the bean's destroy method).
+     */
+    @Override
+    public void close() {
+        running = false;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+            channel.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            log.warn("Failed to close job store: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.aicopilot.store;
+
+import com.example.aicopilot.dto.JobInput;
+import com.example.aicopilot.dto.JobStatus;
+
+import java.util.Map;
+
+/**
+ * Durable backing store for jobs (SPI behind JobRepository).
+ * Appends are called on the pipeline hot path, so implementations must not block on I/O there
+ * (queue + group commit); losing the last few milliseconds of updates on a crash is acceptable.
+ */
+public interface JobStore {
+
+    void appendInput(String jobId, JobInput input);
+
+    void appendStatus(JobStatus status);
+
+    /**
+     * @return the latest snapshot (and input) of every retained job, read once at startup
+     */
+    Map<String, StoredJob> recover();
+
+    record StoredJob(JobStatus status, JobInput input) {
+    }
+
+    /**
+     * Memory-only mode (copilot.jobs.store.enabled=false): nothing survives a restart.
+     */
+    JobStore NONE = new JobStore() {
+        @Override
+        public void appendInput(String jobId, JobInput input) {
+        }
+
+        @Override
+        public void appendStatus(JobStatus status) {
+        }
+
+        @Override
+        public Map<String, StoredJob> recover() {
+            return Map.of();
+        }
+    };
+}
@@ -0,0 +1,80 @@
+package com.example.aicopilot.service;
+
+import com.example.aicopilot.dto.analysis.GraphPatchRequest;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.List;
+import java.util.Random;
+
+import static com.example.aicopilot.service.AnalysisSessionTest.op;
+
+/**
+ * AnalysisSession 증분 분석 측정: 3000노드 그래프에서 패치 1건 처리 시간과 전체 재분석 시간을 비교합니다.
+ * 증분 결과가 전체 재분석과 같은지는 AnalysisSessionTest에서 확인합니다.
+ */
+public class AnalysisSessionCheck {
+
+	private static final ObjectMapper objectMapper = new ObjectMapper();
+	private static final GraphRuleEngine engine = new GraphRuleEngine();
+
+	public static void main(String[] args) throws Exception {
+		measure();
+		System.out.println("\n✅ 완료");
+		System.exit(0);
+	}
+
+	// 3000노드 순차 흐름: 중간 구간의 엣지 하나를 지웠다가(도달 불가 구간 발생) 다시 잇는 편집
+	private static void measure() throws Exception {
+		int size = 3_000;
+		AnalysisSessionTest.Editor editor = new AnalysisSessionTest.Editor(new Random(42), 0, false);
+		editor.chain(size);
+		String json = editor.snapshot();
+		AnalysisSession session = AnalysisSessionTest.open(json);
+
+		List<GraphPatchRequest.Operation> cut = List.of(op("remove", "/edges/e_chain_" + (size - 10), null));
+		ObjectNode edge = objectMapper.createObjectNode()
+				.put("id", "e_chain_" + (size - 10))
+				.put("source", "n" + (size - 11))
+				.put("target", "n" + (size - 10));
+		List<GraphPatchRequest.Operation> join = List.of(op("add", "/edges/e_chain_" + (size - 10), edge));
+		List<GraphPatchRequest.Operation> rename = List.of(op("replace", "/nodes/n1500/label", objectMapper.valueToTree("검토")));
+
+		System.out.println("편집\t\t\t평균(µs/op)\t재검사 노드");
+		time("엣지 삭제+재연결", () -> {
+			int rechecked = apply(session, cut);
+			return rechecked + apply(session, join);
+		});
+		time("라벨 변경\t", () -> apply(session, rename));
+		time("전체 재분석\t", () -> {
+			engine.analyze(GraphSnapshotReader.read(json).graph());
+			return size;
+		});
+		System.out.printf("패치 본문 %d bytes / 전체 스냅샷 %d bytes%n",
+				objectMapper.writeValueAsString(join).length(), json.length());
+	}
+
+	private static int apply(AnalysisSession session, List<GraphPatchRequest.Operation> ops) {
+		return session.apply(ops, Integer.MAX_VALUE, Integer.MAX_VALUE).rechecked();
+	}
+
+	private interface Work {
+		int run() throws Exception;
+	}
+
+	private static void time(String name, Work work) throws Exception {
+		long deadline = System.currentTimeMillis() + 1_000;
+		while (System.currentTimeMillis() < deadline) {
+			work.run();
+		}
+		int operations = 0;
+		int rechecked = 0;
+		long started = System.nanoTime();
+		deadline = System.currentTimeMillis() + 2_000;
+		while (System.currentTimeMillis() < deadline) {
+			rechecked = work.run();
+			operations++;
+		}
+		System.out.printf("%s\t%,12.1f\t%d%n", name, (System.nanoTime() - started) / 1_000.0 / operations, rechecked);
+	}
+}
@@ -0,0 +1,285 @@
+package com.example.aicopilot.service;
+
+import com.example.aicopilot.dto.analysis.AnalysisResult;
+import com.example.aicopilot.dto.analysis.AnalysisSessionState;
+import com.example.aicopilot.dto.analysis.GraphPatchRequest;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * AnalysisSession 증분 분석 검증.
+ * - 무작위 그래프에 무작위 편집(노드/엣지 추가·삭제, 라벨 변경, 이동)을 적용하면서 매 패치 후
+ *   세션의 findings가 전체 그래프를 GraphRuleEngine으로 다시 분석한 결과와 같은지(다중집합) 확인합니다.
+ * - 응답 delta(added/resolved)를 이전 findings에 적용하면 현재 findings가 되는지도 확인합니다.
+ * - 크기 제한, id 없는 엣지 추가 거부, 동시 open 시 max-sessions 유지.
+ * 처리 시간 측정은 AnalysisSessionCheck에서 합니다.
+ */
+class AnalysisSessionTest {
+
+	private static final int ROUNDS = 300;
+	private static final int PATCHES_PER_ROUND = 40;
+	private static final int UNLIMITED = Integer.MAX_VALUE;
+	private static final String[] TYPES = {"USER_TASK", "USER_TASK", "USER_TASK", "EXCLUSIVE_GATEWAY", "END", "START"};
+	private static final String[] EDGE_LABELS = {null, "Approved", "Rejected", "승인", "반려", "later"};
+
+	private static final ObjectMapper objectMapper = new ObjectMapper();
+	private static final GraphRuleEngine engine = new GraphRuleEngine();
+
+	@Test
+	void incrementalFindingsMatchFullAnalysisAfterEveryPatch() throws Exception {
+		for (int round = 0; round < ROUNDS; round++) {
+			Random random = new Random(round);
+			Editor editor = new Editor(random, 4 + random.nextInt(20), round % 7 == 0);
+			AnalysisSession session = open(editor.snapshot());
+			List<AnalysisResult> findings = session.findings();
+			assertSameFindings(session, findings, "round " + round + ": 초기 분석 결과가 다릅니다");
+
+			for (int p = 0; p < PATCHES_PER_ROUND; p++) {
+				List<GraphPatchRequest.Operation> ops = editor.randomPatch();
+				AnalysisSession.Delta delta = session.apply(ops, UNLIMITED, UNLIMITED);
+
+				List<AnalysisResult> expected = new ArrayList<>(findings);
+				delta.resolved().forEach(expected::remove);
+				expected.addAll(delta.added());
+				findings = session.findings();
+				String context = "round " + round + " patch " + p + ": " + objectMapper.writeValueAsString(ops);
+				assertSameFindings(session, findings, context);
+				assertTrue(sameMultiset(expected, findings), context + " - delta를 적용한 결과가 현재 findings와 다릅니다");
+			}
+		}
+	}
+
+	@Test
+	void addedEdgeWithoutIdIsRejected() throws Exception {
+		AnalysisSession session = open(chain(3));
+		ObjectNode edge = objectMapper.createObjectNode().put("source", "n2").put("target", "n0");
+
+		assertThrows(IllegalArgumentException.class,
+				() -> session.apply(List.of(op("add", "/edges/-", edge)), UNLIMITED, UNLIMITED));
+		assertEquals(0, session.version(), "거부된 패치는 버전을 올리지 않습니다");
+		assertEquals(2, session.edgeCount());
+	}
+
+	@Test
+	void patchGrowingPastTheLimitIsRejectedAsAWhole() throws Exception {
+		AnalysisSession session = open(chain(3));
+		List<GraphPatchRequest.Operation> grow = List.of(
+				op("add", "/nodes/n3", objectMapper.createObjectNode().put("type", "USER_TASK")),
+				op("add", "/edges/e3", objectMapper.createObjectNode().put("source", "n2").put("target", "n3")));
+
+		assertThrows(IllegalArgumentException.class, () -> session.apply(grow, 3, UNLIMITED));
+		assertThrows(IllegalArgumentException.class, () -> session.apply(grow, UNLIMITED, 2));
+		assertEquals(3, session.nodeCount());
+		assertEquals(2, session.edgeCount());
+
+		// 같은 패치에서 먼저 지우면 제한 안에 들어옵니다
+		List<GraphPatchRequest.Operation> replace = new ArrayList<>(List.of(op("remove", "/nodes/n2", null)));
+		replace.add(op("add", "/nodes/n3", objectMapper.createObjectNode().put("type", "END")));
+		replace.add(op("add", "/edges/e3", objectMapper.createObjectNode().put("source", "n1").put("target", "n3")));
+		session.apply(replace, 3, 2);
+		assertEquals(3, session.nodeCount());
+		assertEquals(2, session.edgeCount());
+	}
+
+	@Test
+	void serviceRejectsOversizedSnapshotsAndPatches() throws Exception {
+		AnalysisSessionService service = service(10, 3, 2, 2);
+		try {
+			assertThrows(IllegalArgumentException.class, () -> service.open(chain(4)), "노드 수 초과");
+			AnalysisSessionState state = service.open(chain(3));
+
+			GraphPatchRequest.Operation relabel = op("replace", "/nodes/n1/label", objectMapper.valueToTree("검토"));
+			assertThrows(IllegalArgumentException.class,
+					() -> service.patch(state.sessionId(), new GraphPatchRequest(null, List.of(relabel, relabel, relabel))),
+					"패치 연산 수 초과");
+			assertEquals(1, service.patch(state.sessionId(), new GraphPatchRequest(null, List.of(relabel))).version());
+		} finally {
+			service.shutdown();
+		}
+	}
+
+	@Test
+	void concurrentOpensNeverExceedMaxSessions() throws Exception {
+		int maxSessions = 4;
+		AnalysisSessionService service = service(maxSessions, UNLIMITED, UNLIMITED, UNLIMITED);
+		ExecutorService pool = Executors.newFixedThreadPool(8);
+		try {
+			String json = chain(5);
+			Set<String> opened = ConcurrentHashMap.newKeySet();
+			CountDownLatch start = new CountDownLatch(1);
+			for (int i = 0; i < 200; i++) {
+				pool.submit(() -> {
+					start.await();
+					opened.add(service.open(json).sessionId());
+					return null;
+				});
+			}
+			start.countDown();
+			pool.shutdown();
+			assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+
+			long live = opened.stream().filter(id -> service.get(id) != null).count();
+			assertEquals(200, opened.size());
+			assertEquals(maxSessions, live, "살아 있는 세션 수는 max-sessions를 넘지 않아야 합니다");
+		} finally {
+			pool.shutdownNow();
+			service.shutdown();
+		}
+	}
+
+	private static AnalysisSessionService service(int maxSessions, int maxNodes, int maxEdges, int maxPatchOps) {
+		return new AnalysisSessionService(objectMapper, new SimpleMeterRegistry(), Duration.ofMinutes(30),
+				maxSessions, maxNodes, maxEdges, maxPatchOps, Duration.ofMinutes(1));
+	}
+
+	static AnalysisSession open(String json) throws Exception {
+		JsonNode snapshot = objectMapper.readTree(json);
+		return new AnalysisSession("test", snapshot.get("nodes"), snapshot.get("edges"));
+	}
+
+	private static String chain(int size) throws Exception {
+		Editor editor = new Editor(new Random(size), 0, false);
+		editor.chain(size);
+		return editor.snapshot();
+	}
+
+	// 세션 findings == 전체 재분석 결과 (다중집합)
+	private static void assertSameFindings(AnalysisSession session, List<AnalysisResult> findings, String context) throws Exception {
+		List<AnalysisResult> full = engine.analyze(GraphSnapshotReader.read(session.graphJson(objectMapper)).graph());
+		assertTrue(sameMultiset(full, findings), context);
+	}
+
+	private static boolean sameMultiset(List<AnalysisResult> a, List<AnalysisResult> b) {
+		Map<AnalysisResult, Integer> counts = new HashMap<>();
+		a.forEach(result -> counts.merge(result, 1, Integer::sum));
+		b.forEach(result -> counts.merge(result, -1, Integer::sum));
+		return counts.values().stream().allMatch(count -> count == 0);
+	}
+
+	static GraphPatchRequest.Operation op(String op, String path, JsonNode value) {
+		return new GraphPatchRequest.Operation(op, path, value);
+	}
+
+	// 클라이언트 쪽 그래프 상태를 흉내 내며 유효한 무작위 편집을 만듭니다
+	static class Editor {
+		private final Random random;
+		private final List<String> nodes = new ArrayList<>();
+		private final Map<String, String[]> edges = new HashMap<>(); // id -> {source, target}
+		private final List<ObjectNode> nodeJson = new ArrayList<>();
+		private final List<ObjectNode> edgeJson = new ArrayList<>();
+		private final boolean noStart;
+		private int nextId;
+
+		Editor(Random random, int size, boolean noStart) {
+			this.random = random;
+			this.noStart = noStart;
+			for (int i = 0; i < size; i++) {
+				nodeJson.add(node("n" + nextId++, i == 0 && !noStart ? "START" : randomType()));
+			}
+			for (int i = 0; i < size * 3 / 2; i++) {
+				edgeJson.add(edge("e" + nextId++, random.nextInt(size), random.nextInt(size)));
+			}
+		}
+
+		void chain(int size) {
+			for (int i = 0; i < size; i++) {
+				nodeJson.add(node("n" + i, i == 0 ? "START" : i == size - 1 ? "END" : i % 10 == 5 ? "EXCLUSIVE_GATEWAY" : "USER_TASK"));
+				if (i > 0) {
+					ObjectNode edge = objectMapper.createObjectNode().put("id", "e_chain_" + i)
+							.put("source", "n" + (i - 1)).put("target", "n" + i);
+					edgeJson.add(edge);
+				}
+			}
+		}
+
+		String snapshot() throws Exception {
+			ObjectNode root = objectMapper.createObjectNode();
+			root.putArray("nodes").addAll(nodeJson);
+			root.putArray("edges").addAll(edgeJson);
+			return objectMapper.writeValueAsString(root);
+		}
+
+		private String randomType() {
+			String type = TYPES[random.nextInt(TYPES.length)];
+			return noStart && type.equals("START") ? "USER_TASK" : type;
+		}
+
+		private ObjectNode node(String id, String type) {
+			ObjectNode node = objectMapper.createObjectNode().put("id", id).put("type", type);
+			ObjectNode data = node.putObject("data");
+			if (random.nextInt(8) > 0) {
+				data.put("label", "단계 " + id);
+			}
+			data.put("swimlaneId", "lane_" + random.nextInt(3));
+			node.putObject("position").put("x", random.nextInt(1_000)).put("y", random.nextInt(1_000));
+			nodes.add(id);
+			return node;
+		}
+
+		private ObjectNode edge(String id, int source, int target) {
+			ObjectNode edge = objectMapper.createObjectNode().put("id", id)
+					.put("source", nodes.get(source)).put("target", nodes.get(target));
+			String label = EDGE_LABELS[random.nextInt(EDGE_LABELS.length)];
+			if (label != null) {
+				edge.put("label", label);
+			}
+			edges.put(id, new String[]{nodes.get(source), nodes.get(target)});
+			return edge;
+		}
+
+		List<GraphPatchRequest.Operation> randomPatch() {
+			List<GraphPatchRequest.Operation> ops = new ArrayList<>();
+			int count = 1 + random.nextInt(3);
+			for (int i = 0; i < count; i++) {
+				int choice = random.nextInt(10);
+				if (choice < 2 || nodes.isEmpty()) {
+					String id = "n" + nextId++;
+					ops.add(op("add", random.nextBoolean() ? "/nodes/" + id : "/nodes/-", node(id, randomType())));
+				} else if (choice < 5) {
+					String id = "e" + nextId++;
+					ops.add(op("add", "/edges/" + id, edge(id, random.nextInt(nodes.size()), random.nextInt(nodes.size()))));
+				} else if (choice < 7 && !edges.isEmpty()) {
+					String id = new ArrayList<>(edges.keySet()).get(random.nextInt(edges.size()));
+					edges.remove(id);
+					ops.add(op("remove", "/edges/" + id, null));
+				} else if (choice < 8) {
+					String id = nodes.remove(random.nextInt(nodes.size()));
+					edges.values().removeIf(ends -> ends[0].equals(id) || ends[1].equals(id));
+					ops.add(op("remove", "/nodes/" + id, null));
+				} else if (choice < 9) {
+					String id = nodes.get(random.nextInt(nodes.size()));
+					JsonNode label = random.nextInt(4) == 0 ? null : objectMapper.valueToTree("라벨 " + random.nextInt(5));
+					ops.add(op("replace", "/nodes/" + id + "/label", label));
+				} else if (!edges.isEmpty()) {
+					String id = new ArrayList<>(edges.keySet()).get(random.nextInt(edges.size()));
+					ops.add(op("replace", "/edges/" + id + "/label", objectMapper.valueToTree(EDGE_LABELS[1 + random.nextInt(4)])));
+				} else {
+					String id = nodes.get(random.nextInt(nodes.size()));
+					ops.add(op("replace", "/nodes/" + id + "/position",
+							objectMapper.createObjectNode().put("x", random.nextInt(1_000)).put("y", random.nextInt(1_000))));
+				}
+			}
+			return ops;
+		}
+	}
+}
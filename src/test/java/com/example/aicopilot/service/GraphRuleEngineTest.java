@@ -0,0 +1,192 @@
+package com.example.aicopilot.service;
+
+import com.example.aicopilot.dto.analysis.AnalysisResult;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * CsrGraph + GraphRuleEngine 규칙 검증: Tarjan SCC 분해, Gateway 분기 커버리지(LOGIC_GAP),
+ * 여러 레인을 오가는 순환(CROSS_LANE_LOOP)과 출구 없는 순환(NO_EXIT_LOOP).
+ */
+class GraphRuleEngineTest {
+
+	private final GraphRuleEngine engine = new GraphRuleEngine();
+
+	@Test
+	void tarjanGroupsEachCycleIntoOneComponent() {
+		// a -> b -> c -> a (순환), c -> d, d <-> e (순환), e -> f (단독)
+		CsrGraph graph = CsrGraph.builder()
+				.addNode("a", "USER_TASK", "A", null)
+				.addNode("b", "USER_TASK", "B", null)
+				.addNode("c", "USER_TASK", "C", null)
+				.addNode("d", "USER_TASK", "D", null)
+				.addNode("e", "USER_TASK", "E", null)
+				.addNode("f", "END", "F", null)
+				.addEdge("a", "b", null)
+				.addEdge("b", "c", null)
+				.addEdge("c", "a", null)
+				.addEdge("c", "d", null)
+				.addEdge("d", "e", null)
+				.addEdge("e", "d", null)
+				.addEdge("e", "f", null)
+				.build();
+
+		int[] comp = new int[graph.nodeCount()];
+		assertEquals(3, GraphRuleEngine.tarjan(graph, comp), "SCC 개수");
+		int a = graph.indexOf("a");
+		int d = graph.indexOf("d");
+		int f = graph.indexOf("f");
+		assertEquals(comp[a], comp[graph.indexOf("b")]);
+		assertEquals(comp[a], comp[graph.indexOf("c")]);
+		assertEquals(comp[d], comp[graph.indexOf("e")]);
+		assertNotEquals(comp[a], comp[d]);
+		assertNotEquals(comp[d], comp[f]);
+	}
+
+	@Test
+	void tarjanHandlesDeepChainsWithoutRecursion() {
+		int size = 200_000;
+		CsrGraph.Builder builder = CsrGraph.builder();
+		for (int i = 0; i < size; i++) {
+			builder.addNode("n" + i, "USER_TASK", "단계 " + i, null);
+			if (i > 0) {
+				builder.addEdge("n" + (i - 1), "n" + i, null);
+			}
+		}
+		builder.addEdge("n" + (size - 1), "n0", null); // 전체가 하나의 순환
+		CsrGraph graph = builder.build();
+
+		int[] comp = new int[graph.nodeCount()];
+		assertEquals(1, GraphRuleEngine.tarjan(graph, comp), "긴 순환은 SCC 하나여야 합니다");
+	}
+
+	@Test
+	void gatewayWithSinglePathIsLogicGap() {
+		List<AnalysisResult> results = engine.analyze(gateway("Approved"));
+		assertEquals(1, count(results, "LOGIC_GAP", "gw"));
+		assertTrue(message(results, "LOGIC_GAP").contains("하나뿐"));
+	}
+
+	@Test
+	void gatewayWithOnlyOneOutcomeIsLogicGap() {
+		List<AnalysisResult> approveOnly = engine.analyze(gateway("Approved", "승인"));
+		assertEquals(1, count(approveOnly, "LOGIC_GAP", "gw"));
+		assertTrue(message(approveOnly, "LOGIC_GAP").contains("반려 경로가 없습니다"));
+
+		List<AnalysisResult> rejectOnly = engine.analyze(gateway("Rejected", "반려"));
+		assertEquals(1, count(rejectOnly, "LOGIC_GAP", "gw"));
+		assertTrue(message(rejectOnly, "LOGIC_GAP").contains("승인 경로가 없습니다"));
+	}
+
+	@Test
+	void gatewayCoveringBothOutcomesOrWithDefaultPathIsFine() {
+		assertEquals(0, count(engine.analyze(gateway("Approved", "Rejected")), "LOGIC_GAP", "gw"));
+		assertEquals(0, count(engine.analyze(gateway(" 승인 ", "반려")), "LOGIC_GAP", "gw"), "라벨 공백/한글");
+		assertEquals(0, count(engine.analyze(gateway("Approved", null)), "LOGIC_GAP", "gw"), "라벨 없는 선은 기본 경로");
+	}
+
+	@Test
+	void loopAcrossLanesWithExitIsCrossLaneLoopOnly() {
+		// 요청(lane_a) -> 검토(lane_b) -> 반려 시 요청으로 복귀, 승인 시 종료
+		List<AnalysisResult> results = engine.analyze(CsrGraph.builder()
+				.addNode("start", "START", "시작", "lane_a")
+				.addNode("request", "USER_TASK", "요청", "lane_a")
+				.addNode("review", "USER_TASK", "검토", "lane_b")
+				.addNode("end", "END", "종료", "lane_b")
+				.addEdge("start", "request", null)
+				.addEdge("request", "review", null)
+				.addEdge("review", "request", "반려")
+				.addEdge("review", "end", "승인")
+				.build());
+
+		assertEquals(1, count(results, "CROSS_LANE_LOOP", "request"), "대표 노드는 노드 순서상 첫 구성원");
+		assertEquals(0, count(results, "NO_EXIT_LOOP", null));
+		assertTrue(message(results, "CROSS_LANE_LOOP").contains("요청"));
+		assertTrue(message(results, "CROSS_LANE_LOOP").contains("검토"));
+	}
+
+	@Test
+	void loopWithinOneLaneIsNotReported() {
+		List<AnalysisResult> results = engine.analyze(CsrGraph.builder()
+				.addNode("start", "START", "시작", "lane_a")
+				.addNode("draft", "USER_TASK", "작성", "lane_a")
+				.addNode("check", "USER_TASK", "확인", "lane_a")
+				.addNode("end", "END", "종료", "lane_a")
+				.addEdge("start", "draft", null)
+				.addEdge("draft", "check", null)
+				.addEdge("check", "draft", null)
+				.addEdge("check", "end", null)
+				.build());
+
+		assertEquals(0, count(results, "CROSS_LANE_LOOP", null));
+		assertEquals(0, count(results, "NO_EXIT_LOOP", null));
+	}
+
+	@Test
+	void loopWithoutExitAcrossLanesReportsBoth() {
+		List<AnalysisResult> results = engine.analyze(CsrGraph.builder()
+				.addNode("start", "START", "시작", "lane_a")
+				.addNode("a", "USER_TASK", "A", "lane_a")
+				.addNode("b", "USER_TASK", "B", "lane_b")
+				.addNode("end", "END", "종료", "lane_b")
+				.addEdge("start", "a", null)
+				.addEdge("a", "b", null)
+				.addEdge("b", "a", null)
+				.build());
+
+		assertEquals(1, count(results, "NO_EXIT_LOOP", "a"));
+		assertEquals(1, count(results, "CROSS_LANE_LOOP", "a"));
+		assertEquals(1, count(results, "DISCONNECTED_END", "end"));
+	}
+
+	@Test
+	void edgesToUnknownNodesAreDropped() {
+		CsrGraph graph = CsrGraph.builder()
+				.addEdge("a", "ghost", null) // 노드보다 먼저 와도 됨
+				.addNode("a", "START", "시작", null)
+				.addNode("a", "END", "중복", null) // 먼저 정의된 노드가 유지됨
+				.addEdge("a", null, null)
+				.build();
+
+		assertEquals(1, graph.nodeCount());
+		assertEquals(0, graph.edgeCount());
+		assertEquals(1, count(engine.analyze(graph), "DISCONNECTED_START", "a"));
+	}
+
+	// start -> review -> gw -> (라벨별 작업 노드) -> end
+	private static CsrGraph gateway(String... labels) {
+		CsrGraph.Builder builder = CsrGraph.builder()
+				.addNode("start", "START", "시작", null)
+				.addNode("review", "USER_TASK", "검토", null)
+				.addNode("gw", "EXCLUSIVE_GATEWAY", "결재", null)
+				.addNode("end", "END", "종료", null)
+				.addEdge("start", "review", null)
+				.addEdge("review", "gw", null);
+		for (int i = 0; i < labels.length; i++) {
+			builder.addNode("t" + i, "USER_TASK", "작업 " + i, null)
+					.addEdge("gw", "t" + i, labels[i])
+					.addEdge("t" + i, "end", null);
+		}
+		return builder.build();
+	}
+
+	private static long count(List<AnalysisResult> results, String type, String target) {
+		return results.stream()
+				.filter(result -> result.type().equals(type))
+				.filter(result -> target == null || target.equals(result.targetNodeId()))
+				.count();
+	}
+
+	private static String message(List<AnalysisResult> results, String type) {
+		return results.stream()
+				.filter(result -> result.type().equals(type))
+				.map(AnalysisResult::message)
+				.findFirst()
+				.orElse("");
+	}
+}
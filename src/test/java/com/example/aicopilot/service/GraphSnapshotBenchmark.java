@@ -0,0 +1,64 @@
+package com.example.aicopilot.service;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+/**
+ * 그래프 스냅샷 파싱 벤치마크: 기존 Map 왕복 방식 vs GraphSnapshotReader 스트리밍 방식.
+ * - 기존: Map 역직렬화 -> nodes/edges 재직렬화 -> List<Map> 재파싱 -> CsrGraph.fromSnapshot + GraphFingerprint.of
+ * - 본문: GraphSnapshotReader.read(body) 한 번 (/analyze, /analyze/stream 경로 - 프롬프트용 JSON은 본문에서 잘라냄)
+ * - DTO: 요청 DTO가 스냅샷을 원문 JSON으로 토큰 복사 -> 서비스에서 GraphSnapshotReader.read (/fix 경로)
+ * 세 방식의 결과가 같은지는 GraphSnapshotReaderTest에서 확인하며, 여기서는 크기별 평균 시간과 할당량만 비교합니다.
+ */
+public class GraphSnapshotBenchmark {
+
+	private static final int[] SIZES = {50, 300, 3_000};
+	private static final long WARMUP_MILLIS = 2_000;
+	private static final long MEASURE_MILLIS = 3_000;
+
+	private static final com.sun.management.ThreadMXBean threads =
+			(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+	private interface Parser {
+		GraphSnapshotReaderTest.Result parse(String json) throws Exception;
+	}
+
+	public static void main(String[] args) throws Exception {
+		System.out.println("노드 수\t방식\t\t평균(µs/op)\t할당(KB/op)");
+		for (int size : SIZES) {
+			String json = GraphSnapshotReaderTest.snapshot(size, new Random(size));
+			measure(size, "Map 왕복", json, GraphSnapshotReaderTest::mapRoundTrip);
+			measure(size, "본문\t", json, GraphSnapshotReaderTest::body);
+			measure(size, "DTO\t", json, GraphSnapshotReaderTest::dto);
+		}
+		System.out.println("\n✅ 완료");
+		System.exit(0);
+	}
+
+	private static void measure(int size, String name, String json, Parser parser) throws Exception {
+		run(json, parser, WARMUP_MILLIS);
+
+		long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+		long started = System.nanoTime();
+		long operations = run(json, parser, MEASURE_MILLIS);
+		long elapsed = System.nanoTime() - started;
+		long allocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+
+		System.out.printf("%d\t%s\t%,12.1f\t%,12.1f%n", size, name,
+				elapsed / 1_000.0 / operations, allocated / 1_024.0 / operations);
+	}
+
+	private static long run(String json, Parser parser, long millis) throws Exception {
+		long deadline = System.currentTimeMillis() + millis;
+		long operations = 0;
+		int sink = 0;
+		while (System.currentTimeMillis() < deadline) {
+			sink += parser.parse(json).graph().edgeCount();
+			operations++;
+		}
+		if (sink == 42) {
+			System.out.print("");
+		}
+		return operations;
+	}
+}
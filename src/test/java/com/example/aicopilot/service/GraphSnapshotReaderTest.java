@@ -0,0 +1,146 @@
+package com.example.aicopilot.service;
+
+import com.example.aicopilot.dto.analysis.FixGraphRequest;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * GraphSnapshotReader 검증: 기존 Map 왕복 방식(Map 역직렬화 -> nodes/edges 재직렬화 -> List<Map> 재파싱 ->
+ * CsrGraph.fromSnapshot + GraphFingerprint.of)과 노드/엣지, 지문, nodesJson/edgesJson이 같아야 합니다.
+ * - 본문: GraphSnapshotReader.read(body) (/analyze, /analyze/stream 경로)
+ * - DTO: 요청 DTO가 원문 JSON으로 받은 스냅샷을 서비스에서 GraphSnapshotReader.read (/fix 경로)
+ * 측정은 GraphSnapshotBenchmark에서 합니다.
+ */
+class GraphSnapshotReaderTest {
+
+	private static final TypeReference<Map<String, Object>> MAP = new TypeReference<>() {};
+	private static final TypeReference<List<Map<String, Object>>> LIST = new TypeReference<>() {};
+
+	private static final ObjectMapper objectMapper = new ObjectMapper();
+
+	record Result(CsrGraph graph, String fingerprint, String nodesJson, String edgesJson) {
+	}
+
+	@ParameterizedTest
+	@ValueSource(ints = {1, 50, 300, 3_000})
+	void bodyMatchesMapRoundTrip(int size) throws Exception {
+		String json = snapshot(size, new Random(size));
+		assertSame(mapRoundTrip(json), body(json));
+	}
+
+	@ParameterizedTest
+	@ValueSource(ints = {1, 50, 300})
+	void dtoMatchesMapRoundTrip(int size) throws Exception {
+		String json = snapshot(size, new Random(size));
+		assertSame(mapRoundTrip(json), dto(json));
+	}
+
+	@ParameterizedTest
+	@ValueSource(ints = {50, 300})
+	void movedAndReorderedNodesKeepTheFingerprint(int size) throws Exception {
+		Random random = new Random(size);
+		String json = snapshot(size, random);
+
+		Map<String, Object> body = objectMapper.readValue(json, MAP);
+		List<Map<String, Object>> nodes = objectMapper.convertValue(body.get("nodes"), LIST);
+		nodes.forEach(node -> node.put("position", Map.of("x", random.nextInt(2_000), "y", random.nextInt(2_000))));
+		Collections.shuffle(nodes, random);
+		body.put("nodes", nodes);
+
+		assertEquals(body(json).fingerprint(), body(objectMapper.writeValueAsString(body)).fingerprint(),
+				"위치 이동 + 배열 순서 변경은 같은 지문이어야 합니다");
+	}
+
+	// 기존 요청 경로: Spring(Map) -> CopilotController(재직렬화) -> WorkflowAnalyzerService(재파싱)
+	static Result mapRoundTrip(String json) throws Exception {
+		Map<String, Object> body = objectMapper.readValue(json, MAP);
+		String nodesJson = objectMapper.writeValueAsString(body.get("nodes"));
+		String edgesJson = objectMapper.writeValueAsString(body.get("edges"));
+		List<Map<String, Object>> nodes = objectMapper.readValue(nodesJson, LIST);
+		List<Map<String, Object>> edges = objectMapper.readValue(edgesJson, LIST);
+		return new Result(CsrGraph.fromSnapshot(nodes, edges), GraphFingerprint.of(nodes, edges), nodesJson, edgesJson);
+	}
+
+	static Result body(String json) throws Exception {
+		return result(GraphSnapshotReader.read(json));
+	}
+
+	static Result dto(String json) throws Exception {
+		FixGraphRequest request = objectMapper.readValue("{\"graphSnapshot\":" + json + "}", FixGraphRequest.class);
+		return result(GraphSnapshotReader.read(request.graphSnapshot()));
+	}
+
+	private static Result result(GraphSnapshot snapshot) {
+		return new Result(snapshot.graph(), snapshot.fingerprint(), snapshot.nodesJson(), snapshot.edgesJson());
+	}
+
+	private static void assertSame(Result expected, Result actual) {
+		assertEquals(expected.graph().nodeCount(), actual.graph().nodeCount(), "노드 수");
+		assertEquals(expected.graph().edgeCount(), actual.graph().edgeCount(), "엣지 수");
+		assertEquals(expected.fingerprint(), actual.fingerprint(), "지문");
+		assertEquals(expected.nodesJson(), actual.nodesJson(), "nodesJson");
+		assertEquals(expected.edgesJson(), actual.edgesJson(), "edgesJson");
+		for (int v = 0; v < expected.graph().nodeCount(); v++) {
+			assertEquals(expected.graph().id(v), actual.graph().id(v), "노드 순서");
+			assertEquals(expected.graph().kinds[v], actual.graph().kinds[v], "노드 종류");
+			assertEquals(expected.graph().lanes[v], actual.graph().lanes[v], "레인");
+		}
+	}
+
+	// ReactFlow 형태의 스냅샷: 레인 4개, 순차 흐름 + 일정 간격의 게이트웨이 분기, 뷰 상태 필드 포함
+	static String snapshot(int size, Random random) throws Exception {
+		List<Map<String, Object>> nodes = new ArrayList<>();
+		List<Map<String, Object>> edges = new ArrayList<>();
+		for (int i = 0; i < size; i++) {
+			String type = i == 0 ? "START" : i == size - 1 ? "END" : i % 10 == 5 ? "EXCLUSIVE_GATEWAY" : "USER_TASK";
+			Map<String, Object> data = new LinkedHashMap<>();
+			data.put("label", "Step  " + i + " review ");
+			data.put("swimlaneId", "lane_" + (i % 4));
+			data.put("description", "Reviews the request and forwards it to the next step " + i);
+			Map<String, Object> node = new LinkedHashMap<>();
+			node.put("id", "node_" + i);
+			node.put("type", type);
+			node.put("data", data);
+			node.put("position", Map.of("x", random.nextInt(2_000), "y", random.nextDouble() * 1_000));
+			node.put("width", 180);
+			node.put("height", 64);
+			node.put("selected", false);
+			nodes.add(node);
+
+			if (i > 0) {
+				edges.add(edge("edge_" + i, "node_" + (i - 1), "node_" + i, (i - 1) % 10 == 5 ? "Approved" : null));
+			}
+			if (i % 10 == 5 && i + 3 < size) {
+				edges.add(edge("edge_r" + i, "node_" + i, "node_" + (i + 3), "Rejected"));
+			}
+		}
+		Map<String, Object> body = new LinkedHashMap<>();
+		body.put("nodes", nodes);
+		body.put("edges", edges);
+		body.put("viewport", Map.of("x", 0, "y", 0, "zoom", 1));
+		return objectMapper.writeValueAsString(body);
+	}
+
+	private static Map<String, Object> edge(String id, String source, String target, String label) {
+		Map<String, Object> edge = new LinkedHashMap<>();
+		edge.put("id", id);
+		edge.put("source", source);
+		edge.put("target", target);
+		edge.put("type", "smoothstep");
+		if (label != null) {
+			edge.put("label", label);
+		}
+		return edge;
+	}
+}
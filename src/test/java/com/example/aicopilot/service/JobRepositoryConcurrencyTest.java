@@ -0,0 +1,87 @@
+package com.example.aicopilot.service;
+
+import com.example.aicopilot.dto.JobInput;
+import com.example.aicopilot.dto.JobStatus;
+import com.example.aicopilot.dto.dataEntities.DataEntitiesResponse;
+import com.example.aicopilot.dto.process.ProcessResponse;
+import com.example.aicopilot.event.JobUpdatedEvent;
+import com.example.aicopilot.store.JobStore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.RepeatedTest;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * JobRepository 동시성 검증: 여러 스레드가 같은 작업에 상태/아티팩트 갱신을 동시에 쏟아부은 뒤
+ * 갱신 누락이 없고(version == 전체 갱신 횟수), 발행된 version이 1..N 각각 정확히 한 번이며,
+ * 모든 스레드가 기록한 단계와 아티팩트가 남아 있는지 확인합니다.
+ */
+class JobRepositoryConcurrencyTest {
+
+	private static final int THREADS = 16;
+	private static final int UPDATES_PER_THREAD = 1_000;
+
+	@RepeatedTest(3)
+	void concurrentUpdatesAreNeverLost() throws InterruptedException {
+		Set<Long> publishedVersions = ConcurrentHashMap.newKeySet();
+		Set<Long> duplicates = ConcurrentHashMap.newKeySet();
+
+		JobCache cache = new JobCache(new ObjectMapper(), new SimpleMeterRegistry(),
+				Duration.ofHours(1), Long.MAX_VALUE, "", Duration.ofHours(1));
+		JobRepository repository = new JobRepository(cache, JobStore.NONE, event -> {
+			if (event instanceof JobUpdatedEvent updated && !publishedVersions.add(updated.getVersion())) {
+				duplicates.add(updated.getVersion());
+			}
+		});
+		String jobId = "stress";
+		repository.initJob(jobId, JobInput.quickStart("stress"));
+
+		ProcessResponse process = new ProcessResponse("p", "d", List.of(), List.of());
+		DataEntitiesResponse data = new DataEntitiesResponse(List.of(), List.of());
+
+		ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+		CountDownLatch start = new CountDownLatch(1);
+		for (int t = 0; t < THREADS; t++) {
+			int thread = t;
+			pool.execute(() -> {
+				try {
+					start.await();
+				} catch (InterruptedException e) {
+					return;
+				}
+				for (int i = 0; i < UPDATES_PER_THREAD; i++) {
+					switch (i % 4) {
+						case 0 -> repository.updateState(jobId, JobStatus.State.PROCESSING, "t" + thread + "-" + i);
+						case 1 -> repository.saveArtifact(jobId, "T" + thread + "-" + i, process, i);
+						case 2 -> repository.savePartialArtifact(jobId, data);
+						default -> repository.saveArtifact(jobId, "T" + thread + "-" + i, data, i);
+					}
+				}
+			});
+		}
+		start.countDown();
+		pool.shutdown();
+		assertTrue(pool.awaitTermination(5, TimeUnit.MINUTES), "갱신 스레드가 시간 안에 끝나지 않았습니다");
+
+		JobStatus result = repository.findById(jobId);
+		long expectedUpdates = (long) THREADS * UPDATES_PER_THREAD;
+		assertEquals(expectedUpdates, result.version(), "갱신 누락");
+		assertTrue(duplicates.isEmpty(), "중복 발행된 version: " + duplicates);
+		assertEquals(expectedUpdates + 1, publishedVersions.size(), "발행된 version 수 (init 포함)");
+		assertEquals(THREADS * (UPDATES_PER_THREAD / 2), result.stageDurations().size(), "기록된 단계 수");
+		assertNotNull(result.processResponse());
+		assertNotNull(result.dataEntitiesResponse());
+	}
+}